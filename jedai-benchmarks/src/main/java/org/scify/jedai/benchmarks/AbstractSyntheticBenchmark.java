@@ -0,0 +1,61 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.scify.jedai.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.scify.jedai.datamodel.EntityProfile;
+
+/**
+ * The common configuration of all suites: every benchmark runs over synthetic
+ * data, whose size and duplicate rate are set through the JMH parameters
+ * "noOfEntities" and "duplicateRate" (e.g., -p noOfEntities=100000).
+ *
+ * @author G.A.P. II
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public abstract class AbstractSyntheticBenchmark {
+
+    private final static long SEED = 42;
+
+    @Param({"10000"})
+    protected int noOfEntities;
+
+    @Param({"0.1"})
+    protected double duplicateRate;
+
+    protected List<List<EntityProfile>> getCleanCleanCollections() {
+        return new SyntheticEntityGenerator(duplicateRate, SEED).generateCleanCleanCollections(noOfEntities);
+    }
+
+    protected List<EntityProfile> getDirtyCollection() {
+        return new SyntheticEntityGenerator(duplicateRate, SEED).generateDirtyCollection(noOfEntities);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.scify.jedai.benchmarks;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.scify.jedai.blockbuilding.StandardBlocking;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+
+/**
+ *
+ * @author G.A.P. II
+ */
+public class BlockBuildingBenchmark extends AbstractSyntheticBenchmark {
+
+    private List<EntityProfile> profiles;
+
+    @Setup
+    public void setup() {
+        profiles = getDirtyCollection();
+    }
+
+    @Benchmark
+    public List<AbstractBlock> standardBlocking() {
+        return new StandardBlocking().getBlocks(profiles);
+    }
+}
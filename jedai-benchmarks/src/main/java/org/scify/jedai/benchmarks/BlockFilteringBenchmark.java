@@ -0,0 +1,44 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.scify.jedai.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.scify.jedai.blockbuilding.StandardBlocking;
+import org.scify.jedai.blockprocessing.blockcleaning.BlockFiltering;
+import org.scify.jedai.datamodel.AbstractBlock;
+
+/**
+ *
+ * @author G.A.P. II
+ */
+public class BlockFilteringBenchmark extends AbstractSyntheticBenchmark {
+
+    private List<AbstractBlock> blocks;
+
+    @Setup
+    public void setup() {
+        blocks = new StandardBlocking().getBlocks(getDirtyCollection());
+    }
+
+    @Benchmark
+    public List<AbstractBlock> blockFiltering() {
+        // Block Filtering sorts its input in place, so it gets a copy of the list
+        return new BlockFiltering().refineBlocks(new ArrayList<>(blocks));
+    }
+}
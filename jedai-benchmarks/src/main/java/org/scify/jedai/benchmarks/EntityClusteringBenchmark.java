@@ -0,0 +1,86 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.scify.jedai.benchmarks;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.scify.jedai.blockbuilding.StandardBlocking;
+import org.scify.jedai.blockprocessing.blockcleaning.BlockFiltering;
+import org.scify.jedai.blockprocessing.comparisoncleaning.CardinalityNodePruning;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.EquivalenceCluster;
+import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.entityclustering.IEntityClustering;
+import org.scify.jedai.entitymatching.ProfileMatcher;
+import org.scify.jedai.utilities.enumerations.EntityClusteringCcerMethod;
+import org.scify.jedai.utilities.enumerations.EntityClusteringDerMethod;
+
+/**
+ * Covers every implementation of IEntityClustering: the Dirty ER methods run
+ * over a single synthetic collection, Unique Mapping Clustering over two
+ * synthetic collections. The similarities are computed once, in the setup.
+ *
+ * @author G.A.P. II
+ */
+public class EntityClusteringBenchmark extends AbstractSyntheticBenchmark {
+
+    @Param({"CENTER_CLUSTERING", "CONNECTED_COMPONENTS_CLUSTERING", "CORRELATION_CLUSTERING", "CUT_CLUSTERING",
+        "MARKOV_CLUSTERING", "MERGE_CENTER_CLUSTERING", "RICOCHET_SR_CLUSTERING", "UNIQUE_MAPPING_CLUSTERING"})
+    private String method;
+
+    private boolean cleanCleanER;
+    private SimilarityPairs simPairs;
+
+    @Setup
+    public void setup() {
+        cleanCleanER = method.equals(EntityClusteringCcerMethod.UNIQUE_MAPPING_CLUSTERING.name());
+
+        final List<EntityProfile> profilesD1;
+        final List<EntityProfile> profilesD2;
+        if (cleanCleanER) {
+            final List<List<EntityProfile>> collections = getCleanCleanCollections();
+            profilesD1 = collections.get(0);
+            profilesD2 = collections.get(1);
+        } else {
+            profilesD1 = getDirtyCollection();
+            profilesD2 = null;
+        }
+
+        final List<AbstractBlock> blocks = new CardinalityNodePruning().refineBlocks(new BlockFiltering().refineBlocks(new StandardBlocking().getBlocks(profilesD1, profilesD2)));
+        simPairs = new ProfileMatcher().executeComparisons(blocks, profilesD1, profilesD2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        simPairs.close();
+    }
+
+    @Benchmark
+    public EquivalenceCluster[] entityClustering() {
+        return getClusteringMethod().getDuplicates(simPairs);
+    }
+
+    private IEntityClustering getClusteringMethod() {
+        if (cleanCleanER) {
+            return EntityClusteringCcerMethod.getDefaultConfiguration(EntityClusteringCcerMethod.valueOf(method));
+        }
+        return EntityClusteringDerMethod.getDefaultConfiguration(EntityClusteringDerMethod.valueOf(method));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.scify.jedai.benchmarks;
+
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.scify.jedai.blockbuilding.StandardBlocking;
+import org.scify.jedai.blockprocessing.blockcleaning.BlockFiltering;
+import org.scify.jedai.blockprocessing.comparisoncleaning.CardinalityNodePruning;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.entitymatching.ProfileMatcher;
+import org.scify.jedai.utilities.enumerations.RepresentationModel;
+import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+
+/**
+ * Runs Profile Matcher once per representation model (all of them, unless
+ * restricted through -p representationModel=...), using its default
+ * similarity metric. The time includes building the models of all entities.
+ *
+ * @author G.A.P. II
+ */
+public class EntityMatchingBenchmark extends AbstractSyntheticBenchmark {
+
+    @Param
+    private RepresentationModel representationModel;
+
+    private List<AbstractBlock> blocks;
+    private List<EntityProfile> profiles;
+
+    @Setup
+    public void setup() {
+        profiles = getDirtyCollection();
+        blocks = new CardinalityNodePruning().refineBlocks(new BlockFiltering().refineBlocks(new StandardBlocking().getBlocks(profiles)));
+    }
+
+    @Benchmark
+    public long profileMatcher() {
+        final ProfileMatcher matcher = new ProfileMatcher(representationModel, SimilarityMetric.getModelDefaultSimMetric(representationModel));
+        try (SimilarityPairs simPairs = matcher.executeComparisons(blocks, profiles)) {
+            return simPairs.getNoOfPairs();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.scify.jedai.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.scify.jedai.datamodel.Attribute;
+import org.scify.jedai.datamodel.EntityProfile;
+
+/**
+ * Generates reproducible entity collections of arbitrary size. Attribute values
+ * are drawn from a synthetic vocabulary with a skewed token distribution, so
+ * that blocks have realistic sizes, and duplicates are noisy copies of other
+ * profiles (dropped tokens and typos).
+ *
+ * @author G.A.P. II
+ */
+public class SyntheticEntityGenerator {
+
+    private final static int VOCABULARY_SIZE = 20000;
+    private final static String[] ATTRIBUTE_NAMES = {"name", "address", "description"};
+    private final static int[] MAX_TOKENS = {3, 4, 10};
+
+    private final double duplicateRate;
+    private final Random random;
+    private final String[] vocabulary;
+
+    public SyntheticEntityGenerator(double dRate, long seed) {
+        duplicateRate = dRate;
+        random = new Random(seed);
+        vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            vocabulary[i] = getRandomWord(3 + random.nextInt(8));
+        }
+    }
+
+    /**
+     * Returns a single collection of the given size, a portion of which
+     * (the duplicate rate) consists of noisy copies of other profiles in it.
+     */
+    public List<EntityProfile> generateDirtyCollection(int noOfEntities) {
+        final List<EntityProfile> profiles = new ArrayList<>(noOfEntities);
+        for (int i = 0; i < noOfEntities; i++) {
+            if (0 < i && random.nextDouble() < duplicateRate) {
+                profiles.add(getDuplicate("e" + i, profiles.get(random.nextInt(i))));
+            } else {
+                profiles.add(getRandomProfile("e" + i));
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Returns two duplicate-free collections of the given size; a portion of
+     * the second one (the duplicate rate) consists of noisy copies of profiles
+     * of the first one.
+     */
+    public List<List<EntityProfile>> generateCleanCleanCollections(int noOfEntities) {
+        final List<EntityProfile> profilesD1 = new ArrayList<>(noOfEntities);
+        for (int i = 0; i < noOfEntities; i++) {
+            profilesD1.add(getRandomProfile("a" + i));
+        }
+
+        final List<EntityProfile> profilesD2 = new ArrayList<>(noOfEntities);
+        for (int i = 0; i < noOfEntities; i++) {
+            if (random.nextDouble() < duplicateRate) {
+                profilesD2.add(getDuplicate("b" + i, profilesD1.get(i)));
+            } else {
+                profilesD2.add(getRandomProfile("b" + i));
+            }
+        }
+
+        final List<List<EntityProfile>> collections = new ArrayList<>(2);
+        collections.add(profilesD1);
+        collections.add(profilesD2);
+        return collections;
+    }
+
+    private EntityProfile getDuplicate(String url, EntityProfile original) {
+        final EntityProfile duplicate = new EntityProfile(url);
+        for (Attribute attribute : original.getAttributes()) {
+            final StringBuilder value = new StringBuilder();
+            for (String token : attribute.getValue().split(" ")) {
+                double noise = random.nextDouble();
+                if (noise < 0.1) { // dropped token
+                    continue;
+                }
+
+                if (noise < 0.25 && 1 < token.length()) { // typo
+                    final char[] characters = token.toCharArray();
+                    characters[random.nextInt(characters.length)] = (char) ('a' + random.nextInt(26));
+                    token = new String(characters);
+                }
+                value.append(token).append(" ");
+            }
+            duplicate.addAttribute(attribute.getName(), value.toString().trim());
+        }
+        return duplicate;
+    }
+
+    private EntityProfile getRandomProfile(String url) {
+        final EntityProfile profile = new EntityProfile(url);
+        for (int i = 0; i < ATTRIBUTE_NAMES.length; i++) {
+            int noOfTokens = 1 + random.nextInt(MAX_TOKENS[i]);
+            final StringBuilder value = new StringBuilder();
+            for (int j = 0; j < noOfTokens; j++) {
+                value.append(getRandomToken()).append(" ");
+            }
+            profile.addAttribute(ATTRIBUTE_NAMES[i], value.toString().trim());
+        }
+        return profile;
+    }
+
+    private String getRandomToken() {
+        // squaring a uniform variable favours the low ids, i.e., few tokens are very frequent
+        double skewed = random.nextDouble();
+        return vocabulary[(int) (skewed * skewed * VOCABULARY_SIZE)];
+    }
+
+    private String getRandomWord(int length) {
+        final char[] characters = new char[length];
+        for (int i = 0; i < length; i++) {
+            characters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(characters);
+    }
+}
@@ -19,20 +19,30 @@ import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.Attribute;
 import org.scify.jedai.datamodel.BilateralBlock;
 import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.EntityProfileStore;
 import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.datareader.entityreader.IEntityStreamReader;
+import org.scify.jedai.utilities.ParallelProcessing;
 
 import com.esotericsoftware.minlog.Log;
 
+import gnu.trove.impl.Constants;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntObjectMap;
 import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.IntFunction;
 
 /**
  *
@@ -40,17 +50,31 @@ import java.util.Set;
  */
 public abstract class AbstractBlockBuilding implements IBlockBuilding {
 
+    protected final static int NO_KEY_ID = -1;
+
+    // orders the keys by the first profile that contains them and then by their position in its keys
+    private final static Comparator<Map.Entry<String, KeyEntities>> FIRST_APPEARANCE = (entry1, entry2) -> {
+        final KeyEntities keyEntities1 = entry1.getValue();
+        final KeyEntities keyEntities2 = entry2.getValue();
+        int comparison = Integer.compare(keyEntities1.entityIds.get(0), keyEntities2.entityIds.get(0));
+        return comparison != 0 ? comparison : Integer.compare(keyEntities1.firstRank, keyEntities2.firstRank);
+    };
+
     protected double noOfEntitiesD1;
     protected double noOfEntitiesD2;
 
     protected List<AbstractBlock> blocks;
     protected List<EntityProfile> entityProfilesD1;
     protected List<EntityProfile> entityProfilesD2;
-    protected Map<String, TIntList> invertedIndexD1;
-    protected Map<String, TIntList> invertedIndexD2;
+    protected TIntObjectMap<TIntList> invertedIndexD1;
+    protected TIntObjectMap<TIntList> invertedIndexD2;
+    protected TObjectIntMap<String> keysDictionary;
     protected TObjectIntMap<String>[] schemaClusters;
 
+    protected int noOfThreads;
+
     public AbstractBlockBuilding() {
+        noOfThreads = 1;
     }
 
     protected void buildBlocks() {
@@ -92,102 +116,308 @@ public abstract class AbstractBlockBuilding implements IBlockBuilding {
 
         blocks = new ArrayList<>();
         schemaClusters = sClusters;
-        invertedIndexD1 = new HashMap<>();
+        keysDictionary = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_KEY_ID);
+        invertedIndexD1 = new TIntObjectHashMap<>();
         entityProfilesD1 = profilesD1;
         noOfEntitiesD1 = entityProfilesD1.size();
         if (profilesD2 != null) {
-            invertedIndexD2 = new HashMap<>();
+            invertedIndexD2 = new TIntObjectHashMap<>();
             entityProfilesD2 = profilesD2;
             noOfEntitiesD2 = entityProfilesD2.size();
+        } else {
+            invertedIndexD2 = null;
+            entityProfilesD2 = null;
+            noOfEntitiesD2 = 0;
         }
 
         buildBlocks();
         return readBlocks();
     }
 
+    /**
+     * Builds the blocks while the given readers stream their entity profiles,
+     * so that only the inverted indices are kept in memory, instead of all
+     * profiles. The second reader is null in the case of Dirty ER. The profiles
+     * are indexed sequentially and without schema clusters.
+     */
+    public List<AbstractBlock> getBlocks(IEntityStreamReader readerD1, IEntityStreamReader readerD2) {
+        Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
+
+        if (readerD1 == null) {
+            Log.error("First entity reader is null! The first argument should always stream entities.");
+            return null;
+        }
+
+        blocks = new ArrayList<>();
+        schemaClusters = null;
+        keysDictionary = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_KEY_ID);
+        entityProfilesD1 = null;
+        entityProfilesD2 = null;
+        invertedIndexD1 = new TIntObjectHashMap<>();
+        noOfEntitiesD1 = indexEntities(invertedIndexD1, readerD1);
+        if (readerD2 != null) {
+            invertedIndexD2 = new TIntObjectHashMap<>();
+            noOfEntitiesD2 = indexEntities(invertedIndexD2, readerD2);
+        } else {
+            invertedIndexD2 = null;
+            noOfEntitiesD2 = 0;
+        }
+
+        if (noOfEntitiesD1 < 0 || noOfEntitiesD2 < 0) {
+            Log.error("Entity profiles could not be streamed!");
+            return null;
+        }
+        return readBlocks();
+    }
+
     public double getBruteForceComparisons() {
-        if (entityProfilesD2 == null) {
+        if (invertedIndexD2 == null) {
             return noOfEntitiesD1 * (noOfEntitiesD1 - 1) / 2;
         }
         return noOfEntitiesD1 * noOfEntitiesD2;
     }
 
+    public int getNoOfThreads() {
+        return noOfThreads;
+    }
+
+    public void setNoOfThreads(int noOfThreads) {
+        if (noOfThreads < 1) {
+            Log.error("The number of threads should be a positive integer! Using a single thread instead.");
+            this.noOfThreads = 1;
+        } else {
+            this.noOfThreads = noOfThreads;
+        }
+    }
+
     public double getTotalNoOfEntities() {
-        if (entityProfilesD2 == null) {
+        if (invertedIndexD2 == null) {
             return noOfEntitiesD1;
         }
         return noOfEntitiesD1 + noOfEntitiesD2;
     }
 
-    protected void indexEntities(Map<String, TIntList> index, List<EntityProfile> entities) {
-        int counter = 0;
-        for (EntityProfile profile : entities) {
-            final Set<String> allKeys = new HashSet<>();
-            for (Attribute attribute : profile.getAttributes()) {
-                for (String key : getBlockingKeys(attribute.getValue().toLowerCase())) {
-                    String normalizedKey = key.trim();
-                    if (0 < normalizedKey.length()) {
-                        allKeys.add(normalizedKey);
-                    }
-                }
+    protected void addNormalizedKeys(String value, Set<String> allKeys) {
+        addNormalizedKeys(value, null, allKeys);
+    }
+
+    // the suffix, if any, is appended to every key, e.g., to denote its attribute cluster
+    protected void addNormalizedKeys(String value, String suffix, Set<String> allKeys) {
+        for (String key : getBlockingKeys(value.toLowerCase())) {
+            String normalizedKey = key.trim();
+            if (0 < normalizedKey.length()) {
+                allKeys.add(suffix == null ? normalizedKey : normalizedKey + suffix);
             }
+        }
+    }
 
-            for (String key : allKeys) {
-                TIntList entityList = index.get(key);
-                if (entityList == null) {
-                    entityList = new TIntArrayList();
-                    index.put(key, entityList);
-                }
-                entityList.add(counter);
+    protected Set<String> getBlockingKeys(EntityProfile profile) {
+        final Set<String> allKeys = new HashSet<>();
+        for (Attribute attribute : profile.getAttributes()) {
+            addNormalizedKeys(attribute.getValue(), allKeys);
+        }
+        return allKeys;
+    }
+
+    protected Set<String> getBlockingKeys(String[] attributeValues, int noOfAttributes) {
+        final Set<String> allKeys = new HashSet<>();
+        for (int i = 0; i < noOfAttributes; i++) {
+            addNormalizedKeys(attributeValues[i], allKeys);
+        }
+        return allKeys;
+    }
+
+    protected Set<String> getBlockingKeys(EntityProfile profile, TObjectIntMap<String> schemaClusters) {
+        final Set<String> allKeys = new HashSet<>();
+        for (Attribute attribute : profile.getAttributes()) {
+            int clusterId = schemaClusters.get(attribute.getName());
+            addNormalizedKeys(attribute.getValue(), CLUSTER_PREFIX + clusterId, allKeys);
+        }
+        return allKeys;
+    }
+
+    protected Set<String> getBlockingKeys(EntityProfileStore profiles, int profileId) {
+        final Set<String> allKeys = new HashSet<>();
+        int profileSize = profiles.getProfileSize(profileId);
+        for (int i = 0; i < profileSize; i++) {
+            addNormalizedKeys(profiles.getAttributeValue(profileId, i), allKeys);
+        }
+        return allKeys;
+    }
+
+    protected Set<String> getBlockingKeys(EntityProfileStore profiles, int profileId, TObjectIntMap<String> schemaClusters) {
+        final Set<String> allKeys = new HashSet<>();
+        int profileSize = profiles.getProfileSize(profileId);
+        for (int i = 0; i < profileSize; i++) {
+            int clusterId = schemaClusters.get(profiles.getAttributeName(profiles.getAttributeNameId(profileId, i)));
+            addNormalizedKeys(profiles.getAttributeValue(profileId, i), CLUSTER_PREFIX + clusterId, allKeys);
+        }
+        return allKeys;
+    }
+
+    protected int getKeyId(String key) {
+        int keyId = keysDictionary.putIfAbsent(key, keysDictionary.size());
+        if (keyId == NO_KEY_ID) {
+            return keysDictionary.size() - 1;
+        }
+        return keyId;
+    }
+
+    /**
+     * Returns the ids of all blocking keys in the alphabetical order of the
+     * keys; both the sorting and the encoding are done in parallel.
+     */
+    protected int[] getSortedKeyIds() {
+        final String[] sortedKeys = keysDictionary.keys(new String[keysDictionary.size()]);
+        if (1 < noOfThreads) {
+            Arrays.parallelSort(sortedKeys);
+        } else {
+            Arrays.sort(sortedKeys);
+        }
+
+        final int[] sortedKeyIds = new int[sortedKeys.length];
+        ParallelProcessing.processPartitions(noOfThreads, sortedKeys.length, (partitionId, start, end) -> {
+            for (int i = start; i < end; i++) {
+                sortedKeyIds[i] = keysDictionary.get(sortedKeys[i]);
             }
-            counter++;
+            return null;
+        });
+        return sortedKeyIds;
+    }
+
+    protected void indexEntities(TIntObjectMap<TIntList> index, List<EntityProfile> entities) {
+        if (entities instanceof EntityProfileStore) { // scan the flat attribute values without materializing profiles
+            final EntityProfileStore store = (EntityProfileStore) entities;
+            indexEntities(index, store.size(), (profileId) -> getBlockingKeys(store, profileId));
+            return;
+        }
+        indexEntities(index, entities.size(), (profileId) -> getBlockingKeys(entities.get(profileId)));
+    }
+
+    protected void indexEntities(TIntObjectMap<TIntList> index, List<EntityProfile> entities, TObjectIntMap<String> schemaClusters) {
+        if (entities instanceof EntityProfileStore) {
+            final EntityProfileStore store = (EntityProfileStore) entities;
+            indexEntities(index, store.size(), (profileId) -> getBlockingKeys(store, profileId, schemaClusters));
+            return;
         }
+        indexEntities(index, entities.size(), (profileId) -> getBlockingKeys(entities.get(profileId), schemaClusters));
     }
 
-    protected void indexEntities(Map<String, TIntList> index, List<EntityProfile> entities, TObjectIntMap<String> schemaClusters) {
-        int counter = 0;
-        for (EntityProfile profile : entities) {
-            final Set<String> allKeys = new HashSet<>();
-            for (Attribute attribute : profile.getAttributes()) {
-                int clusterId = schemaClusters.get(attribute.getName());
-                for (String key : getBlockingKeys(attribute.getValue().toLowerCase())) {
-                    String normalizedKey = key.trim();
-                    if (0 < normalizedKey.length()) {
-                        allKeys.add(normalizedKey + CLUSTER_PREFIX + clusterId);
+    protected int indexEntities(TIntObjectMap<TIntList> index, IEntityStreamReader reader) {
+        return reader.streamEntityProfiles((entityId, entityUrl, attributeIds, attributeValues, noOfAttributes)
+                -> addToIndex(index, getBlockingKeys(attributeValues, noOfAttributes), entityId));
+    }
+
+    protected void indexEntities(TIntObjectMap<TIntList> index, int noOfProfiles, IntFunction<Set<String>> profileKeys) {
+        if (noOfThreads <= 1) {
+            for (int profileId = 0; profileId < noOfProfiles; profileId++) {
+                addToIndex(index, profileKeys.apply(profileId), profileId);
+            }
+            return;
+        }
+
+        // every partition indexes a contiguous range of profiles and splits its keys into
+        // one shard per thread; the shards are then merged independently in partition order,
+        // so that every entity list ends up sorted exactly as in the sequential pass;
+        // only the final, distinct keys are encoded through the dictionary
+        final int noOfShards = noOfThreads;
+        final List<List<Map<String, KeyEntities>>> partialIndices = ParallelProcessing.processPartitions(noOfThreads, noOfProfiles, (partitionId, start, end) -> {
+            final List<Map<String, KeyEntities>> shards = new ArrayList<>(noOfShards);
+            for (int i = 0; i < noOfShards; i++) {
+                shards.add(new HashMap<>());
+            }
+
+            for (int profileId = start; profileId < end; profileId++) {
+                int rank = 0;
+                for (String key : profileKeys.apply(profileId)) {
+                    final Map<String, KeyEntities> shard = shards.get(getShardId(key, noOfShards));
+                    KeyEntities keyEntities = shard.get(key);
+                    if (keyEntities == null) {
+                        keyEntities = new KeyEntities(rank);
+                        shard.put(key, keyEntities);
                     }
+                    keyEntities.entityIds.add(profileId);
+                    rank++;
                 }
             }
+            return shards;
+        });
 
-            for (String key : allKeys) {
-                TIntList entityList = index.get(key);
-                if (entityList == null) {
-                    entityList = new TIntArrayList();
-                    index.put(key, entityList);
+        final List<List<Map.Entry<String, KeyEntities>>> mergedShards = ParallelProcessing.processPartitions(noOfThreads, noOfShards, (partitionId, start, end) -> {
+            final Map<String, KeyEntities> shard = new HashMap<>();
+            for (int shardId = start; shardId < end; shardId++) {
+                for (List<Map<String, KeyEntities>> partialIndex : partialIndices) {
+                    for (Map.Entry<String, KeyEntities> entry : partialIndex.get(shardId).entrySet()) {
+                        final KeyEntities keyEntities = shard.get(entry.getKey());
+                        if (keyEntities == null) {
+                            shard.put(entry.getKey(), entry.getValue());
+                        } else {
+                            keyEntities.entityIds.addAll(entry.getValue().entityIds);
+                        }
+                    }
                 }
-                entityList.add(counter);
             }
-            counter++;
+            return new ArrayList<>(shard.entrySet());
+        });
+
+        // the keys are encoded in the order of their first appearance, as in the sequential pass
+        int noOfKeys = 0;
+        for (List<Map.Entry<String, KeyEntities>> shard : mergedShards) {
+            noOfKeys += shard.size();
+        }
+        final List<Map.Entry<String, KeyEntities>> allKeys = new ArrayList<>(noOfKeys);
+        mergedShards.forEach(allKeys::addAll);
+        allKeys.sort(FIRST_APPEARANCE);
+
+        for (Map.Entry<String, KeyEntities> entry : allKeys) {
+            final int keyId = getKeyId(entry.getKey());
+            final TIntList entityList = index.get(keyId);
+            if (entityList == null) {
+                index.put(keyId, entry.getValue().entityIds);
+            } else {
+                entityList.addAll(entry.getValue().entityIds);
+            }
         }
     }
 
+    protected void addToIndex(TIntObjectMap<TIntList> index, Set<String> keys, int entityId) {
+        for (String key : keys) {
+            final int keyId = getKeyId(key);
+            TIntList entityList = index.get(keyId);
+            if (entityList == null) {
+                entityList = new TIntArrayList();
+                index.put(keyId, entityList);
+            }
+            entityList.add(entityId);
+        }
+    }
+
+    private static int getShardId(String key, int noOfShards) {
+        return (key.hashCode() & Integer.MAX_VALUE) % noOfShards;
+    }
+
     protected void parseIndex() {
-        invertedIndexD1.values().stream().filter((entityList) -> (1 < entityList.size())).forEachOrdered((entityList) -> {
-            blocks.add(new UnilateralBlock(entityList.toArray()));
+        invertedIndexD1.forEachValue((entityList) -> {
+            if (1 < entityList.size()) {
+                blocks.add(new UnilateralBlock(entityList.toArray()));
+            }
+            return true;
         });
     }
 
     protected void parseIndices() {
-        invertedIndexD1.entrySet().forEach((entry) -> {
-            final TIntList entityIdsD2 = invertedIndexD2.get(entry.getKey());
+        invertedIndexD1.forEachEntry((keyId, entityIdsD1) -> {
+            final TIntList entityIdsD2 = invertedIndexD2.get(keyId);
             if (entityIdsD2 != null && !entityIdsD2.isEmpty()) {
-                blocks.add(new BilateralBlock(entry.getValue().toArray(), entityIdsD2.toArray()));
+                blocks.add(new BilateralBlock(entityIdsD1.toArray(), entityIdsD2.toArray()));
             }
+            return true;
         });
     }
 
     //read blocks from the inverted index
     public List<AbstractBlock> readBlocks() {
-        if (entityProfilesD2 == null) { //Dirty ER
+        if (invertedIndexD2 == null) { //Dirty ER
             parseIndex();
         } else { // Clean-Clean ER
             parseIndices();
@@ -195,4 +425,19 @@ public abstract class AbstractBlockBuilding implements IBlockBuilding {
 
         return blocks;
     }
+
+    /**
+     * The entities of a blocking key in a partial index, along with the
+     * position of the key among those of its first profile.
+     */
+    private static class KeyEntities {
+
+        private final int firstRank;
+        private final TIntList entityIds;
+
+        KeyEntities(int rank) {
+            firstRank = rank;
+            entityIds = new TIntArrayList();
+        }
+    }
 }
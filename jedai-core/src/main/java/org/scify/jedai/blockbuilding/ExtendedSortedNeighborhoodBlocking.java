@@ -22,9 +22,6 @@ import gnu.trove.list.TIntList;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
 import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
@@ -47,6 +44,11 @@ public class ExtendedSortedNeighborhoodBlocking extends SortedNeighborhoodBlocki
         randomWindow = new IntRandomSearchConfiguration(10, 1);
     }
      
+    @Override
+    public String getMethodConfiguration() {
+        return getParameterName(0) + "=" + windowSize;
+    }
+
     @Override
     public String getMethodInfo() {
         return getMethodName() + ": it improves " + super.getMethodName() + " by sliding the window over the sorted list of blocking keys.";
@@ -57,6 +59,12 @@ public class ExtendedSortedNeighborhoodBlocking extends SortedNeighborhoodBlocki
         return "Extended Sorted Neighborhood Blocking";
     }
 
+    @Override
+    public String getMethodParameters() {
+        return getMethodName() + " involves a single parameter:\n"
+                + "1)" + getParameterDescription(0) + ".\n";
+    }
+
     @Override
     public JsonArray getParameterConfiguration() {
         final JsonObject obj1 = new JsonObject();
@@ -85,16 +93,14 @@ public class ExtendedSortedNeighborhoodBlocking extends SortedNeighborhoodBlocki
     
     @Override
     protected void parseIndex() {
-        final Set<String> blockingKeysSet = invertedIndexD1.keySet();
-        final String[] sortedTerms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
-        Arrays.sort(sortedTerms);
+        final int[] sortedKeyIds = getSortedKeyIds();
 
         //slide window over the sorted list of blocking keys
-        int upperLimit = sortedTerms.length - windowSize;
+        int upperLimit = sortedKeyIds.length - windowSize;
         for (int i = 0; i <= upperLimit; i++) {
             final TIntSet entityIds = new TIntHashSet();
             for (int j = 0; j < windowSize; j++) {
-                entityIds.addAll(invertedIndexD1.get(sortedTerms[i + j]));
+                entityIds.addAll(invertedIndexD1.get(sortedKeyIds[i + j]));
             }
 
             if (1 < entityIds.size()) {
@@ -105,24 +111,20 @@ public class ExtendedSortedNeighborhoodBlocking extends SortedNeighborhoodBlocki
 
     @Override
     protected void parseIndices() {
-        final Set<String> blockingKeysSet = new HashSet<>();
-        blockingKeysSet.addAll(invertedIndexD1.keySet());
-        blockingKeysSet.addAll(invertedIndexD2.keySet());
-        final String[] sortedTerms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
-        Arrays.sort(sortedTerms);
+        final int[] sortedKeyIds = getSortedKeyIds();
 
         //slide window over the sorted list of blocking keys
-        int upperLimit = sortedTerms.length - windowSize;
+        int upperLimit = sortedKeyIds.length - windowSize;
         for (int i = 0; i <= upperLimit; i++) {
             final TIntSet entityIds1 = new TIntHashSet();
             final TIntSet entityIds2 = new TIntHashSet();
             for (int j = 0; j < windowSize; j++) {
-                final TIntList d1Entities = invertedIndexD1.get(sortedTerms[i + j]);
+                final TIntList d1Entities = invertedIndexD1.get(sortedKeyIds[i + j]);
                 if (d1Entities != null) {
                     entityIds1.addAll(d1Entities);
                 }
 
-                final TIntList d2Entities = invertedIndexD2.get(sortedTerms[i + j]);
+                final TIntList d2Entities = invertedIndexD2.get(sortedKeyIds[i + j]);
                 if (d2Entities != null) {
                     entityIds2.addAll(d2Entities);
                 }
@@ -15,6 +15,11 @@
  */
 package org.scify.jedai.blockbuilding;
 
+import org.scify.jedai.utilities.datastructures.GeneralizedSuffixArray;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
 import java.util.HashSet;
 import java.util.Set;
 
@@ -22,6 +27,10 @@ import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
 
 /**
+ * Every substring of the minimum length is a prefix of some suffixes, which
+ * form an LCP interval in the suffix array of the tokens. All substrings that
+ * share the same interval yield blocks with the same entities, which are
+ * gathered only once per interval.
  *
  * @author gap2
  */
@@ -34,8 +43,68 @@ public class ExtendedSuffixArraysBlocking extends SuffixArraysBlocking {
         super(maxSize, minLength);
     }
 
+    /**
+     * Adds a block for every substring of the minimum length. The substrings
+     * occurring in a single suffix are handled first; then, the LCP intervals
+     * are traversed bottom-up and the ancestors of an oversized interval are
+     * skipped, since they contain all its entities.
+     */
+    @Override
+    protected void addSuffixBlocks(GeneralizedSuffixArray suffixArray, int[] keyIds) {
+        final int noOfSuffixes = suffixArray.size();
+        for (int i = 0; i < noOfSuffixes; i++) {
+            int parentLcp = Math.max(suffixArray.getLcp(i), i + 1 < noOfSuffixes ? suffixArray.getLcp(i + 1) : 0);
+            int noOfCopies = suffixArray.getSuffixLength(i) - Math.max(parentLcp, minimumSuffixLength - 1);
+            if (0 < noOfCopies) {
+                addBlocks(suffixArray, keyIds, i, i + 1, noOfCopies);
+            }
+        }
+
+        // the lcp value, the left bound and the oversized flag of every open interval
+        final TIntList lcpValues = new TIntArrayList();
+        final TIntList leftBounds = new TIntArrayList();
+        final TIntList oversizedFlags = new TIntArrayList();
+        lcpValues.add(0);
+        leftBounds.add(0);
+        oversizedFlags.add(0);
+        for (int i = 1; i <= noOfSuffixes; i++) {
+            int currentLcp = i < noOfSuffixes ? suffixArray.getLcp(i) : 0;
+            int leftBound = i - 1;
+            boolean oversizedChild = false;
+            while (currentLcp < lcpValues.get(lcpValues.size() - 1)) {
+                int top = lcpValues.size() - 1;
+                int lcp = lcpValues.removeAt(top);
+                leftBound = leftBounds.removeAt(top);
+                boolean oversized = oversizedFlags.removeAt(top) == 1;
+
+                int parentLcp = Math.max(currentLcp, lcpValues.get(top - 1));
+                int noOfCopies = lcp - Math.max(parentLcp, minimumSuffixLength - 1);
+                if (!oversized && 0 < noOfCopies) {
+                    oversized = !addBlocks(suffixArray, keyIds, leftBound, i, noOfCopies);
+                }
+
+                // the parent is either the enclosing interval or the one opened next
+                if (oversized && currentLcp <= lcpValues.get(top - 1)) {
+                    oversizedFlags.set(top - 1, 1);
+                } else if (oversized) {
+                    oversizedChild = true;
+                }
+            }
+
+            if (lcpValues.get(lcpValues.size() - 1) < currentLcp) {
+                lcpValues.add(currentLcp);
+                leftBounds.add(leftBound);
+                oversizedFlags.add(oversizedChild ? 1 : 0);
+            }
+        }
+    }
+
     @Override
     protected Set<String> getBlockingKeys(String attributeValue) {
+        if (tokensIndexed) {
+            return super.getBlockingKeys(attributeValue);
+        }
+
         final Set<String> suffixes = new HashSet<>();
         for (String token : getTokens(attributeValue)) {
             suffixes.addAll(getExtendedSuffixes(minimumSuffixLength, token));
@@ -15,68 +15,146 @@
  */
 package org.scify.jedai.blockbuilding;
 
-import info.debatty.java.lsh.MinHash;
-import java.util.HashSet;
-import java.util.Set;
-import org.scify.jedai.textmodels.ITextModel;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntObjectMap;
+import java.util.Arrays;
+import java.util.List;
+import org.scify.jedai.datamodel.Attribute;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datareader.entityreader.IEntityStreamReader;
 import org.scify.jedai.textmodels.MinHashUnigrams;
 
 /**
+ * Every hash function is a multiply-shift hash over the 32-bit term ids, so
+ * the signatures are computed over primitive values, without any boxing.
+ * The term ids are hashed straight from the tokens of every profile through
+ * MinHashUnigrams, so no text models or corpus statistics are built and the
+ * profiles can also be streamed. Without an order among the values of a
+ * band, multi-probing masks its first rows; every band is then indexed only
+ * through its sub-bands without one of these rows.
  *
  * @author GAP2
  */
 public class LSHMinHashBlocking extends LSHSuperBitBlocking {
 
-    protected MinHash minhash;
+    protected long[] increments;
+    protected long[] multipliers;
 
     public LSHMinHashBlocking() {
         this(5, 30);
     }
 
     public LSHMinHashBlocking(int bSize, int bandsNo) {
-        super();
+        this(bSize, bandsNo, 0);
+    }
 
-        bandSize = bSize;
-        bandsNumber = bandsNo;
+    public LSHMinHashBlocking(int bSize, int bandsNo, int probes) {
+        super(bSize, bandsNo, probes);
     }
 
     @Override
-    protected Set<String> getBlockingKeys(int datasetId, int profileId) {
-        final MinHashUnigrams model = (MinHashUnigrams) models[datasetId][profileId];
+    protected double getRowCollisionProbability(double similarity) {
+        return similarity; // the Jaccard similarity of the term sets
+    }
 
-        final Set<Integer> termIds = model.getTermIds();
-        int[] signature = minhash.signature(termIds);
+    @Override
+    protected SignatureProcessor getSignatureProcessor() {
+        return new MinHashProcessor();
+    }
 
-        final Set<String> allKeys = new HashSet<>();
-        for (int i = 0; i < signature.length - bandSize; i += bandSize) {
-            final StringBuilder band = new StringBuilder(Integer.toString(i));
-            for (int j = 0; j < bandSize; j++) {
-                band.append("-").append(signature[i + j]);
-            }
-            band.append("BND").append(i);
-            allKeys.add(band.toString());
-        }
-        return allKeys;
+    @Override
+    protected boolean hasFixedMasks() {
+        return true;
     }
 
     @Override
-    protected ITextModel getModel(String instanceName) {
-        return new MinHashUnigrams(instanceName);
+    protected int indexEntities(TIntObjectMap<TIntList> index, IEntityStreamReader reader) {
+        final long[] keys = new long[getNoOfKeysPerProfile()];
+        final MinHashProcessor processor = new MinHashProcessor();
+        return reader.streamEntityProfiles((entityId, entityUrl, attributeIds, attributeValues, noOfAttributes) -> {
+            processor.setBandKeys(processor.getSignature(attributeValues, noOfAttributes), keys, 0);
+            for (long key : keys) {
+                addToIndex(index, key, entityId);
+            }
+        });
     }
 
     @Override
     protected void initializeLshFunctions() {
-        System.out.println("Dimensionality\t:\t" + MinHashUnigrams.getCorpusDimensionality());
-        minhash = new MinHash(bandSize * bandsNumber, MinHashUnigrams.getCorpusDimensionality());
+        final int noOfFunctions = bandSize * bandsNumber;
+        increments = new long[noOfFunctions];
+        multipliers = new long[noOfFunctions];
+        for (int i = 0; i < noOfFunctions; i++) {
+            increments[i] = random.nextLong();
+            multipliers[i] = random.nextLong() | 1L;
+        }
     }
 
     @Override
-    protected void resetModel() {
-        MinHashUnigrams.resetGlobalValues(DATASET_1);
+    protected void initializeModels(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        models = null;
     }
 
     @Override
     public String getMethodName() {
         return "LSH MinHash Blocking";
     }
+
+    @Override
+    protected boolean requiresCorpusStatistics() {
+        return false;
+    }
+
+    protected class MinHashProcessor extends SignatureProcessor {
+
+        protected final long[] minima;
+        protected final TIntList tokenIds;
+
+        public MinHashProcessor() {
+            minima = new long[signature.length];
+            tokenIds = new TIntArrayList();
+        }
+
+        @Override
+        public int[] getSignature(int datasetId, int profileId) {
+            final EntityProfile profile = datasetId == DATASET_1 ? entityProfilesD1.get(profileId) : entityProfilesD2.get(profileId);
+            tokenIds.clear();
+            for (Attribute attribute : profile.getAttributes()) {
+                MinHashUnigrams.addTokenIds(attribute.getValue(), tokenIds);
+            }
+            return getSignature(MinHashUnigrams.getTermIds(tokenIds));
+        }
+
+        public int[] getSignature(String[] attributeValues, int noOfAttributes) {
+            tokenIds.clear();
+            for (int i = 0; i < noOfAttributes; i++) {
+                MinHashUnigrams.addTokenIds(attributeValues[i], tokenIds);
+            }
+            return getSignature(MinHashUnigrams.getTermIds(tokenIds));
+        }
+
+        @Override
+        protected double getStability(int row) {
+            return 0;
+        }
+
+        protected int[] getSignature(int[] termIds) {
+            Arrays.fill(minima, Long.MAX_VALUE);
+            for (int termId : termIds) {
+                long value = termId & 0xFFFFFFFFL;
+                for (int i = 0; i < minima.length; i++) {
+                    long hash = (multipliers[i] * value + increments[i]) >>> 32;
+                    if (hash < minima[i]) {
+                        minima[i] = hash;
+                    }
+                }
+            }
+
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = (int) minima[i];
+            }
+            return signature;
+        }
+    }
 }
@@ -15,12 +15,17 @@
  */
 package org.scify.jedai.blockbuilding;
 
+import com.esotericsoftware.minlog.Log;
+import gnu.trove.impl.Constants;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
-import info.debatty.java.lsh.SuperBit;
-import java.util.HashSet;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
@@ -29,42 +34,116 @@ import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.Attribute;
 import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datareader.entityreader.IEntityStreamReader;
+import org.scify.jedai.textmodels.CorpusStatistics;
 import org.scify.jedai.textmodels.ITextModel;
 import org.scify.jedai.textmodels.SuperBitUnigrams;
+import org.scify.jedai.utilities.ParallelProcessing;
 
 /**
+ * The signatures of all profiles are computed in parallel, with every thread
+ * reusing the primitive buffers of its own SignatureProcessor. Every band of a
+ * signature is hashed into a 64-bit key, which is encoded through a long-keyed
+ * dictionary into the inverted index.
+ *
+ * The hyperplanes are stored in a single array, with the coefficients of
+ * every term in consecutive positions, so that the signature of a profile is
+ * computed with a single pass over its sparse tf-idf vector. As in SuperBit,
+ * the hyperplanes of every band are orthonormalized.
+ *
+ * With multi-probe LSH, every band is also hashed with each of its least
+ * stable rows masked, so that entities whose bands differ only in such a row
+ * still share a block; fewer bands then achieve the same recall. With the
+ * automatic configuration, the band size and the number of bands are selected
+ * from a target similarity threshold and a budget of comparisons, trying the
+ * configurations in the order of their expected error. The comparisons of
+ * every configuration are estimated over the signatures of a sample of the
+ * profiles, which are computed only once, for the maximum number of hash
+ * functions; every configuration uses a prefix of them.
  *
  * @author GAP2
  */
 public class LSHSuperBitBlocking extends AbstractBlockBuilding {
 
-    protected boolean d1Indexed;
+    private final static int NO_MASKED_ROW = -1;
+    private final static int SAMPLE_SIZE = 1000;
+    private final static int SIMILARITY_STEPS = 100;
+    private final static long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private final static long PROBE_GAMMA = 0xC2B2AE3D27D4EB4FL;
 
+    protected boolean autoConfiguration;
     protected int bandSize;
     protected int bandsNumber;
+    protected int maxNoOfHashFunctions;
+    protected int noOfProbes;
+    protected double comparisonsBudget;
+    protected double similarityThreshold;
 
     protected final IntGridSearchConfiguration gridBndNumber;
     protected final IntGridSearchConfiguration gridBndSize;
+    protected final IntGridSearchConfiguration gridNoOfProbes;
     protected final IntRandomSearchConfiguration randomBndNumber;
     protected final IntRandomSearchConfiguration randomBndSize;
+    protected final IntRandomSearchConfiguration randomNoOfProbes;
 
-    protected SuperBit superbit;
+    protected float[] hyperplanes;
+    protected Random random;
+    protected CorpusStatistics corpusStatistics;
     protected ITextModel[][] models;
+    protected TLongIntMap bandsDictionary;
 
     public LSHSuperBitBlocking() {
         this(5, 30);
     }
 
     public LSHSuperBitBlocking(int bSize, int bandsNo) {
+        this(bSize, bandsNo, 0);
+    }
+
+    public LSHSuperBitBlocking(int bSize, int bandsNo, int probes) {
         super();
 
+        autoConfiguration = false;
         bandSize = bSize;
         bandsNumber = bandsNo;
+        noOfProbes = probes;
 
         gridBndNumber = new IntGridSearchConfiguration(100, 10, 10);
         gridBndSize = new IntGridSearchConfiguration(10, 2, 1);
+        gridNoOfProbes = new IntGridSearchConfiguration(3, 0, 1);
         randomBndNumber = new IntRandomSearchConfiguration(100, 10);
         randomBndSize = new IntRandomSearchConfiguration(10, 2);
+        randomNoOfProbes = new IntRandomSearchConfiguration(4, 0);
+        random = new Random();
+    }
+
+    protected void addToIndex(TIntObjectMap<TIntList> index, long bandKey, int entityId) {
+        int keyId = bandsDictionary.putIfAbsent(bandKey, bandsDictionary.size());
+        if (keyId == NO_KEY_ID) {
+            keyId = bandsDictionary.size() - 1;
+        }
+
+        TIntList entityList = index.get(keyId);
+        if (entityList == null) {
+            entityList = new TIntArrayList();
+            index.put(keyId, entityList);
+        }
+        entityList.add(entityId);
+    }
+
+    @Override
+    protected void buildBlocks() {
+        if (autoConfiguration) {
+            setBandConfiguration();
+        } else {
+            initializeLshFunctions();
+        }
+
+        bandsDictionary = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_KEY_ID, NO_KEY_ID);
+        indexBands(invertedIndexD1, DATASET_1);
+        if (invertedIndexD2 != null) {
+            indexBands(invertedIndexD2, DATASET_2);
+        }
     }
 
     protected ITextModel[] buildModels(List<EntityProfile> profiles) {
@@ -83,16 +162,20 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
 
     @Override
     public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
-        resetModel();
-        models = new ITextModel[2][];
-        models[DATASET_1] = buildModels(profilesD1);
-        if (profilesD2 != null) {
-            models[DATASET_2] = buildModels(profilesD2);
+        initializeModels(profilesD1, profilesD2);
+        return super.getBlocks(profilesD1, profilesD2);
+    }
+
+    @Override
+    public List<AbstractBlock> getBlocks(IEntityStreamReader readerD1, IEntityStreamReader readerD2) {
+        if (requiresCorpusStatistics()) {
+            Log.error("LSH needs the corpus statistics of all profiles before indexing them, so it cannot be applied to streamed profiles.");
+            throw new UnsupportedOperationException("LSH blocking does not support streamed entity profiles.");
         }
 
-        d1Indexed = false;
         initializeLshFunctions();
-        return super.getBlocks(profilesD1, profilesD2);
+        bandsDictionary = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_KEY_ID, NO_KEY_ID);
+        return super.getBlocks(readerD1, readerD2);
     }
 
     @Override
@@ -100,87 +183,406 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
         throw new UnsupportedOperationException("Not supported by LSH, because it uses global information, not local (i.e., not a mere attribute value).");
     }
 
-    protected Set<String> getBlockingKeys(int datasetId, int profileId) {
-        final SuperBitUnigrams model = (SuperBitUnigrams) models[datasetId][profileId];
-        boolean[] signatures = superbit.signature(model.getVector());
+    /**
+     * Returns the probability that two entities of the given similarity share
+     * a block, given the current band size, number of bands and probes.
+     */
+    protected double getCandidateProbability(double similarity) {
+        final double rowProbability = getRowCollisionProbability(similarity);
+        final int probedRows = getNoOfProbedRows();
+
+        // the bands are equal or differ in one of the probed rows; with fixed masks,
+        // this is also the probability of sharing one of the (b-1)-row sub-bands
+        double bandProbability = Math.pow(rowProbability, bandSize);
+        if (0 < probedRows) {
+            bandProbability += probedRows * Math.pow(rowProbability, bandSize - 1) * (1 - rowProbability);
+        }
+        return 1 - Math.pow(1 - Math.min(1, bandProbability), bandsNumber);
+    }
+
+    /**
+     * Returns the 64-bit hash of the given band of the signature; the band id
+     * is hashed, too, so that identical values in different bands do not
+     * collide. Unless it is NO_MASKED_ROW, the masked row is excluded from the
+     * hash and is encoded in its seed instead.
+     */
+    protected long getBandKey(int[] signature, int bandId, int maskedRow) {
+        long hash = mix64((bandId + 1) * GOLDEN_GAMMA);
+        if (maskedRow != NO_MASKED_ROW) {
+            hash = mix64(hash + (maskedRow + 1) * PROBE_GAMMA);
+        }
+
+        for (int i = bandId * bandSize; i < (bandId + 1) * bandSize; i++) {
+            if (i != maskedRow) {
+                hash = mix64(hash + (signature[i] & 0xFFFFFFFFL) * GOLDEN_GAMMA);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the keys of all bands of all profiles of the given dataset; those
+     * of profile i lie in the range [i * k, (i + 1) * k), where k is the
+     * number of keys per profile.
+     */
+    protected long[] getBandKeys(int datasetId) {
+        final int keysPerProfile = getNoOfKeysPerProfile();
+        final int noOfProfiles = (int) (datasetId == DATASET_1 ? noOfEntitiesD1 : noOfEntitiesD2);
+        final long[] bandKeys = new long[noOfProfiles * keysPerProfile];
+        ParallelProcessing.processPartitions(noOfThreads, noOfProfiles, (partitionId, start, end) -> {
+            final SignatureProcessor processor = getSignatureProcessor();
+            for (int profileId = start; profileId < end; profileId++) {
+                processor.setBandKeys(processor.getSignature(datasetId, profileId), bandKeys, profileId * keysPerProfile);
+            }
+            return null;
+        });
+        return bandKeys;
+    }
 
-        final Set<String> allKeys = new HashSet<>();
-        for (int i = 0; i < signatures.length - bandSize; i += bandSize) {
-            final StringBuilder band = new StringBuilder(Integer.toString(i));
-            for (int j = 0; j < bandSize; j++) {
-                band.append("-");
-                if (signatures[i + j]) {
-                    band.append("T");
-                } else {
-                    band.append("F");
+    /**
+     * Returns the estimated number of comparisons in the blocks of the current
+     * configuration, extrapolated from the blocks of the samples, whose
+     * signatures and projections are given per dataset.
+     */
+    protected double getEstimatedComparisons(int[][][] signatures, double[][][] projections) {
+        final long[] keys = new long[getNoOfKeysPerProfile()];
+        final SignatureProcessor processor = getSignatureProcessor();
+        final TLongIntMap[] keyFrequencies = new TLongIntMap[signatures.length];
+        for (int datasetId = 0; datasetId < signatures.length; datasetId++) {
+            keyFrequencies[datasetId] = new TLongIntHashMap();
+            for (int i = 0; i < signatures[datasetId].length; i++) {
+                System.arraycopy(projections[datasetId][i], 0, processor.projections, 0, processor.projections.length);
+                processor.setBandKeys(signatures[datasetId][i], keys, 0);
+                for (long key : keys) {
+                    keyFrequencies[datasetId].adjustOrPutValue(key, 1, 1);
                 }
             }
-            band.append("BND").append(i);
-            allKeys.add(band.toString());
         }
-        return allKeys;
+
+        double comparisons = 0;
+        if (signatures.length == 1) {
+            final double sampleSize = signatures[DATASET_1].length;
+            if (sampleSize < 2) {
+                return 0;
+            }
+
+            for (int frequency : keyFrequencies[DATASET_1].values()) {
+                comparisons += frequency * (frequency - 1.0) / 2.0;
+            }
+            return comparisons * noOfEntitiesD1 * (noOfEntitiesD1 - 1) / (sampleSize * (sampleSize - 1));
+        }
+
+        if (signatures[DATASET_1].length == 0 || signatures[DATASET_2].length == 0) {
+            return 0;
+        }
+
+        for (long key : keyFrequencies[DATASET_1].keys()) {
+            comparisons += keyFrequencies[DATASET_1].get(key) * (double) keyFrequencies[DATASET_2].get(key);
+        }
+        return comparisons * noOfEntitiesD1 * noOfEntitiesD2 / ((double) signatures[DATASET_1].length * signatures[DATASET_2].length);
     }
-    
+
     protected ITextModel getModel(String instanceName) {
-        return new SuperBitUnigrams(instanceName);
+        return new SuperBitUnigrams(instanceName, corpusStatistics);
+    }
+
+    protected int getNoOfKeysPerProfile() {
+        final int probedRows = getNoOfProbedRows();
+        return bandsNumber * (hasFixedMasks() && 0 < probedRows ? probedRows : 1 + probedRows);
+    }
+
+    // at least one row of every band remains unmasked
+    protected int getNoOfProbedRows() {
+        return Math.max(0, Math.min(noOfProbes, bandSize - 1));
     }
 
     @Override
     public int getNumberOfGridConfigurations() {
-        return gridBndSize.getNumberOfConfigurations() * gridBndNumber.getNumberOfConfigurations();
+        return gridBndSize.getNumberOfConfigurations() * gridBndNumber.getNumberOfConfigurations()
+                * gridNoOfProbes.getNumberOfConfigurations();
     }
 
-    @Override
-    protected void indexEntities(Map<String, TIntList> index, List<EntityProfile> entities) {
-        int datasetId = d1Indexed ? DATASET_2 : DATASET_1;
-        d1Indexed = true;
-
-        for (int profileId = 0; profileId < entities.size(); profileId++) {
-            for (String key : getBlockingKeys(datasetId, profileId)) {
-                TIntList entityList = index.get(key);
-                if (entityList == null) {
-                    entityList = new TIntArrayList();
-                    index.put(key, entityList);
-                }
-                entityList.add(profileId);
-            }
+    /**
+     * Returns the probability that two entities of the given similarity agree
+     * on a single hash function; for the random hyperplanes, the similarity is
+     * the cosine one.
+     */
+    protected double getRowCollisionProbability(double similarity) {
+        return 1 - Math.acos(similarity) / Math.PI;
+    }
+
+    /**
+     * Returns a random sample of the profile ids of the given dataset.
+     */
+    protected int[] getSample(int datasetId) {
+        final int noOfProfiles = (int) (datasetId == DATASET_1 ? noOfEntitiesD1 : noOfEntitiesD2);
+        final int[] profileIds = new int[noOfProfiles];
+        for (int i = 0; i < noOfProfiles; i++) {
+            profileIds[i] = i;
+        }
+
+        final int sampleSize = Math.min(SAMPLE_SIZE, noOfProfiles);
+        for (int i = 0; i < sampleSize; i++) { // partial Fisher-Yates shuffle
+            int j = i + random.nextInt(noOfProfiles - i);
+            int temp = profileIds[i];
+            profileIds[i] = profileIds[j];
+            profileIds[j] = temp;
+        }
+        return Arrays.copyOf(profileIds, sampleSize);
+    }
+
+    protected SignatureProcessor getSignatureProcessor() {
+        return new SignatureProcessor();
+    }
+
+    /**
+     * Returns true if the masked rows are the same for all signatures. Then,
+     * every pair that shares the key of a whole band shares all its probing
+     * keys, too, so only the latter are indexed.
+     */
+    protected boolean hasFixedMasks() {
+        return false;
+    }
+
+    protected void indexBands(TIntObjectMap<TIntList> index, int datasetId) {
+        final int keysPerProfile = getNoOfKeysPerProfile();
+        final long[] bandKeys = getBandKeys(datasetId);
+        for (int i = 0; i < bandKeys.length; i++) {
+            addToIndex(index, bandKeys[i], i / keysPerProfile);
+        }
+    }
+
+    protected void initializeModels(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        resetModel();
+        models = new ITextModel[2][];
+        models[DATASET_1] = buildModels(profilesD1);
+        if (profilesD2 != null) {
+            models[DATASET_2] = buildModels(profilesD2);
         }
+        Log.info("Dimensionality\t:\t" + corpusStatistics.getVocabularySize(DATASET_1));
     }
-    
+
+    /**
+     * Draws a random hyperplane for every hash function and orthonormalizes
+     * those of every band; the bands are generated in parallel, each with its
+     * own random generator.
+     */
     protected void initializeLshFunctions() {
-        System.out.println("Dimensionality\t:\t" + SuperBitUnigrams.getCorpusDimensionality());
-        superbit = new SuperBit(SuperBitUnigrams.getCorpusDimensionality(), bandsNumber, bandSize);
+        final int dimensionality = corpusStatistics.getVocabularySize(DATASET_1);
+
+        final int noOfFunctions = bandSize * bandsNumber;
+        if (Integer.MAX_VALUE - 8 < (long) dimensionality * noOfFunctions) {
+            Log.error("The hyperplanes of " + noOfFunctions + " hash functions over " + dimensionality + " dimensions exceed the maximum array size!");
+            throw new IllegalStateException("Too many hash functions for the given vocabulary.");
+        }
+
+        hyperplanes = new float[dimensionality * noOfFunctions];
+        final long[] seeds = new long[bandsNumber];
+        for (int i = 0; i < bandsNumber; i++) {
+            seeds[i] = random.nextLong();
+        }
+
+        final boolean orthogonalize = bandSize <= dimensionality;
+        ParallelProcessing.processPartitions(noOfThreads, bandsNumber, (partitionId, start, end) -> {
+            for (int bandId = start; bandId < end; bandId++) {
+                final Random bandRandom = new Random(seeds[bandId]);
+                for (int i = bandId * bandSize; i < (bandId + 1) * bandSize; i++) {
+                    for (int termId = 0; termId < dimensionality; termId++) {
+                        hyperplanes[termId * noOfFunctions + i] = (float) bandRandom.nextGaussian();
+                    }
+
+                    if (orthogonalize) { // Gram-Schmidt over the preceding hyperplanes of the band
+                        for (int j = bandId * bandSize; j < i; j++) {
+                            double product = 0;
+                            for (int termId = 0; termId < dimensionality; termId++) {
+                                product += hyperplanes[termId * noOfFunctions + i] * hyperplanes[termId * noOfFunctions + j];
+                            }
+                            for (int termId = 0; termId < dimensionality; termId++) {
+                                hyperplanes[termId * noOfFunctions + i] -= product * hyperplanes[termId * noOfFunctions + j];
+                            }
+                        }
+
+                        double norm = 0;
+                        for (int termId = 0; termId < dimensionality; termId++) {
+                            norm += hyperplanes[termId * noOfFunctions + i] * hyperplanes[termId * noOfFunctions + i];
+                        }
+                        norm = Math.sqrt(norm);
+                        for (int termId = 0; termId < dimensionality; termId++) {
+                            hyperplanes[termId * noOfFunctions + i] /= norm;
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    // the finalizer of SplitMix64
+    protected static long mix64(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
     }
-    
+
+    /**
+     * Returns true if the signatures depend on statistics over all profiles,
+     * which are then not amenable to streaming.
+     */
+    protected boolean requiresCorpusStatistics() {
+        return true;
+    }
+
     protected void resetModel() {
-        SuperBitUnigrams.resetGlobalValues(DATASET_1);
+        corpusStatistics = new CorpusStatistics();
+    }
+
+    /**
+     * Enables the automatic configuration, which replaces the band size and
+     * the number of bands whenever blocks are built from lists of profiles.
+     * Among all configurations of up to the given number of hash functions,
+     * those minimizing the sum of false positive and false negative
+     * probabilities around the similarity threshold are tried in turn, until
+     * the estimated number of comparisons fits in the budget. The number of
+     * probes remains the given one.
+     */
+    public void setAutoConfiguration(double threshold, double budget, int maxHashFunctions) {
+        autoConfiguration = true;
+        comparisonsBudget = budget;
+        maxNoOfHashFunctions = maxHashFunctions;
+        similarityThreshold = threshold;
+    }
+
+    /**
+     * Selects the band size and the number of bands of the automatic
+     * configuration and initializes the corresponding LSH functions.
+     */
+    protected void setBandConfiguration() {
+        // rank all configurations by the probabilities of false positives and negatives
+        final List<double[]> configurations = new ArrayList<>();
+        for (int rows = 1; rows <= maxNoOfHashFunctions; rows++) {
+            for (int bands = 1; bands <= maxNoOfHashFunctions / rows; bands++) {
+                bandSize = rows;
+                bandsNumber = bands;
+
+                double falseNegatives = 0;
+                double falsePositives = 0;
+                for (int i = 0; i < SIMILARITY_STEPS; i++) {
+                    double similarity = (i + 0.5) / SIMILARITY_STEPS;
+                    double probability = getCandidateProbability(similarity);
+                    if (similarity < similarityThreshold) {
+                        falsePositives += probability;
+                    } else {
+                        falseNegatives += 1 - probability;
+                    }
+                }
+                configurations.add(new double[]{(falseNegatives + falsePositives) / SIMILARITY_STEPS, rows, bands});
+            }
+        }
+        configurations.sort((c1, c2) -> c1[0] != c2[0] ? Double.compare(c1[0], c2[0]) : Double.compare(c1[1] * c1[2], c2[1] * c2[2]));
+
+        // the sample signatures over the maximum number of functions; with single-row bands,
+        // no hyperplanes are orthogonalized, but this hardly affects the estimated comparisons
+        bandSize = 1;
+        bandsNumber = maxNoOfHashFunctions;
+        initializeLshFunctions();
+
+        final int noOfDatasets = invertedIndexD2 == null ? 1 : 2;
+        final int[][][] signatures = new int[noOfDatasets][][];
+        final double[][][] projections = new double[noOfDatasets][][];
+        final SignatureProcessor processor = getSignatureProcessor();
+        for (int datasetId = 0; datasetId < noOfDatasets; datasetId++) {
+            final int[] sample = getSample(datasetId);
+            signatures[datasetId] = new int[sample.length][];
+            projections[datasetId] = new double[sample.length][];
+            for (int i = 0; i < sample.length; i++) {
+                signatures[datasetId][i] = processor.getSignature(datasetId, sample[i]).clone();
+                projections[datasetId][i] = processor.projections.clone();
+            }
+        }
+
+        // the first configuration within the budget, or the one with the fewest comparisons;
+        // for a given band size, more bands yield more comparisons, so they are skipped once
+        // fewer bands exceed the budget
+        final int[] exceedingBands = new int[maxNoOfHashFunctions + 1];
+        Arrays.fill(exceedingBands, Integer.MAX_VALUE);
+        double[] selected = null;
+        double minComparisons = Double.MAX_VALUE;
+        for (double[] configuration : configurations) {
+            final int rows = (int) configuration[1];
+            final int bands = (int) configuration[2];
+            if (exceedingBands[rows] <= bands) {
+                continue;
+            }
+
+            bandSize = rows;
+            bandsNumber = bands;
+            double comparisons = getEstimatedComparisons(signatures, projections);
+            if (comparisons <= comparisonsBudget) {
+                Log.info("Selected band size " + bandSize + " and " + bandsNumber + " bands with " + comparisons + " estimated comparisons.");
+                initializeLshFunctions();
+                return;
+            }
+
+            exceedingBands[rows] = bands;
+            if (comparisons < minComparisons) {
+                minComparisons = comparisons;
+                selected = configuration;
+            }
+        }
+
+        if (selected == null) {
+            Log.error("No band configuration is possible with " + maxNoOfHashFunctions + " hash functions!");
+            throw new IllegalStateException("The maximum number of hash functions should be positive.");
+        }
+
+        Log.info("No band configuration fits the budget of comparisons; the one with the fewest estimated comparisons (" + minComparisons + ") is selected.");
+        bandSize = (int) selected[1];
+        bandsNumber = (int) selected[2];
+        initializeLshFunctions();
     }
 
     @Override
     public void setNextRandomConfiguration() {
+        autoConfiguration = false;
         bandSize = (Integer) randomBndSize.getNextRandomValue();
         bandsNumber = (Integer) randomBndNumber.getNextRandomValue();
+        noOfProbes = (Integer) randomNoOfProbes.getNextRandomValue();
     }
 
     @Override
     public void setNumberedGridConfiguration(int iterationNumber) {
-        int bandSizeIteration = iterationNumber / gridBndNumber.getNumberOfConfigurations();
+        autoConfiguration = false;
+        int secondStepConfs = gridBndNumber.getNumberOfConfigurations() * gridNoOfProbes.getNumberOfConfigurations();
+        int bandSizeIteration = iterationNumber / secondStepConfs;
         bandSize = (Integer) gridBndSize.getNumberedValue(bandSizeIteration);
 
-        int msLengthIteration = iterationNumber % gridBndNumber.getNumberOfConfigurations();
+        int remainingIterations = iterationNumber % secondStepConfs;
+        int msLengthIteration = remainingIterations / gridNoOfProbes.getNumberOfConfigurations();
         bandsNumber = (Integer) gridBndNumber.getNumberedValue(msLengthIteration);
+
+        int probesIteration = remainingIterations % gridNoOfProbes.getNumberOfConfigurations();
+        noOfProbes = (Integer) gridNoOfProbes.getNumberedValue(probesIteration);
     }
 
     @Override
     public void setNumberedRandomConfiguration(int iterationNumber) {
+        autoConfiguration = false;
         bandSize = (Integer) randomBndSize.getNumberedRandom(iterationNumber);
         bandsNumber = (Integer) randomBndNumber.getNumberedRandom(iterationNumber);
+        noOfProbes = (Integer) randomNoOfProbes.getNumberedRandom(iterationNumber);
     }
 
     @Override
     public String getMethodConfiguration() {
-        return getParameterName(0) + "=" + bandSize + ",\t"
-                + getParameterName(1) + "=" + bandsNumber;
+        final String configuration = getParameterName(0) + "=" + bandSize + ",\t"
+                + getParameterName(1) + "=" + bandsNumber + ",\t"
+                + getParameterName(2) + "=" + noOfProbes;
+        if (!autoConfiguration) {
+            return configuration;
+        }
+        return configuration + ",\tAutomatic configuration (Similarity threshold=" + similarityThreshold + ",\t"
+                + "Comparisons budget=" + comparisonsBudget + ",\t"
+                + "Maximum number of hash functions=" + maxNoOfHashFunctions + ")";
     }
 
     @Override
@@ -195,9 +597,10 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
 
     @Override
     public String getMethodParameters() {
-        return getMethodName() + " involves two parameters:\n"
+        return getMethodName() + " involves three parameters:\n"
                 + "1)" + getParameterDescription(0) + ".\n"
-                + "2)" + getParameterDescription(1) + ".";
+                + "2)" + getParameterDescription(1) + ".\n"
+                + "3)" + getParameterDescription(2) + ".";
     }
 
     @Override
@@ -220,9 +623,19 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
         obj2.put("stepValue", "10");
         obj2.put("description", getParameterDescription(1));
 
+        final JsonObject obj3 = new JsonObject();
+        obj3.put("class", "java.lang.Integer");
+        obj3.put("name", getParameterName(2));
+        obj3.put("defaultValue", "0");
+        obj3.put("minValue", "0");
+        obj3.put("maxValue", "3");
+        obj3.put("stepValue", "1");
+        obj3.put("description", getParameterDescription(2));
+
         final JsonArray array = new JsonArray();
         array.add(obj1);
         array.add(obj2);
+        array.add(obj3);
         return array;
     }
 
@@ -233,6 +646,9 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
                 return "The " + getParameterName(0) + " determines the number of hash functions comprising every band.";
             case 1:
                 return "The " + getParameterName(1) + " determines the number of bands, i.e., blocking keys, per entity.";
+            case 2:
+                return "The " + getParameterName(2) + " determines the number of rows per band that are masked in additional blocking keys, "
+                        + "so that entities differing in one of them are still co-occurring.";
             default:
                 return "invalid parameter id";
         }
@@ -245,8 +661,85 @@ public class LSHSuperBitBlocking extends AbstractBlockBuilding {
                 return "Band size";
             case 1:
                 return "Number of bands";
+            case 2:
+                return "Number of probes";
             default:
                 return "invalid parameter id";
         }
     }
+
+    /**
+     * Computes the signatures of the profiles processed by a single thread.
+     */
+    protected class SignatureProcessor {
+
+        protected final double[] projections;
+        protected final int[] probedRows;
+        protected final int[] signature;
+
+        public SignatureProcessor() {
+            projections = new double[bandSize * bandsNumber];
+            probedRows = new int[getNoOfProbedRows()];
+            signature = new int[bandSize * bandsNumber];
+        }
+
+        /**
+         * Returns the signature of the given profile in a buffer that is
+         * reused by the next call.
+         */
+        public int[] getSignature(int datasetId, int profileId) {
+            ((SuperBitUnigrams) models[datasetId][profileId]).project(hyperplanes, projections);
+            for (int i = 0; i < signature.length; i++) {
+                signature[i] = 0 <= projections[i] ? 1 : 0;
+            }
+            return signature;
+        }
+
+        /**
+         * Returns how unlikely the given row of the last signature is to flip;
+         * the hyperplanes closest to the profile are the least stable ones.
+         */
+        protected double getStability(int row) {
+            return Math.abs(projections[row]);
+        }
+
+        /**
+         * Stores the keys of all bands of the given signature from the given
+         * offset on; every band key is followed by its probing keys. With
+         * fixed masks, the band key is redundant and is omitted.
+         */
+        public void setBandKeys(int[] signature, long[] keys, int offset) {
+            final boolean skipBandKey = hasFixedMasks() && 0 < probedRows.length;
+            for (int bandId = 0; bandId < bandsNumber; bandId++) {
+                if (!skipBandKey) {
+                    keys[offset++] = getBandKey(signature, bandId, NO_MASKED_ROW);
+                }
+                if (0 < probedRows.length) {
+                    setProbedRows(bandId);
+                    for (int row : probedRows) {
+                        keys[offset++] = getBandKey(signature, bandId, row);
+                    }
+                }
+            }
+        }
+
+        // keeps the least stable rows of the band sorted, breaking ties in favor of the first rows
+        protected void setProbedRows(int bandId) {
+            int noOfSelected = 0;
+            for (int row = bandId * bandSize; row < (bandId + 1) * bandSize; row++) {
+                final double stability = getStability(row);
+                int position = noOfSelected < probedRows.length ? noOfSelected++ : probedRows.length;
+                while (0 < position && stability < getStability(probedRows[position - 1])) {
+                    if (position < probedRows.length) {
+                        probedRows[position] = probedRows[position - 1];
+                    }
+                    position--;
+                }
+
+                if (position < probedRows.length) {
+                    probedRows[position] = row;
+                }
+            }
+        }
+    }
 }
@@ -16,18 +16,17 @@
 package org.scify.jedai.blockbuilding;
 
 import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.DecomposedBlock;
 import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.utilities.ParallelProcessing;
+
+import com.esotericsoftware.minlog.Log;
 
-import gnu.trove.iterator.TIntIterator;
 import gnu.trove.list.TIntList;
-import gnu.trove.list.array.TIntArrayList;
-import gnu.trove.set.TIntSet;
-import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
-import java.util.Set;
 
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
@@ -35,11 +34,24 @@ import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
 
 /**
+ * The sorted list of entities is stored in a single int array and the
+ * distinct entities of every window are detected through an array of markers,
+ * instead of a hash set per window.
+ *
+ * Alternatively, the windows are not turned into blocks; instead, all pairs
+ * of entities that co-occur in at least one window are generated in parallel
+ * as packed longs, deduplicated through a sort and returned as a
+ * single DecomposedBlock without any redundant comparison.
+ *
+ * The grid and random search configurations involve only the window size;
+ * the decomposed output is intentionally kept fixed, as it changes how the
+ * distinct comparisons are represented, but not which ones are returned.
  *
  * @author gap2
  */
 public class SortedNeighborhoodBlocking extends StandardBlocking {
 
+    protected boolean decomposedOutput;
     protected int windowSize;
     
     protected IntGridSearchConfiguration gridWindow;
@@ -51,7 +63,17 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
     }
     
      public SortedNeighborhoodBlocking(int w) {
+        this(w, false);
+    }
+
+    /**
+     * @param w the size of the window
+     * @param decomposed true if the distinct comparisons of all windows are to
+     * be returned as a single DecomposedBlock
+     */
+    public SortedNeighborhoodBlocking(int w, boolean decomposed) {
         super();
+        decomposedOutput = decomposed;
         windowSize = w;
         
         random = new Random();
@@ -60,7 +82,8 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
 
     @Override
     public String getMethodConfiguration() {
-        return getParameterName(0) + "=" + windowSize;
+        return getParameterName(0) + "=" + windowSize + ",\t"
+                + getParameterName(1) + "=" + decomposedOutput;
     }
 
     @Override
@@ -77,35 +100,138 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
 
     @Override
     public String getMethodParameters() {
-        return getMethodName() + " involves a single parameter:\n"
-                + "1)" + getParameterDescription(0) + ".\n";
+        return getMethodName() + " involves two parameters:\n"
+                + "1)" + getParameterDescription(0) + ".\n"
+                + "2)" + getParameterDescription(1) + ".";
     }
     
-    protected int[] getMixedSortedEntities(String[] sortedTerms) {
-        int datasetLimit = entityProfilesD1.size();
-        final TIntList sortedEntityIds = new TIntArrayList();
+    protected void addWindowComparisons(int[] sortedEntityIds) {
+        final boolean cleanCleanER = invertedIndexD2 != null;
+        final int datasetLimit = (int) noOfEntitiesD1;
+        final int noOfPositions = sortedEntityIds.length;
+        if (noOfPositions < windowSize) {
+            return;
+        }
 
-        for (String blockingKey : sortedTerms) {
-            final TIntList sortedIds = new TIntArrayList();
-            final TIntList d1EntityIds = invertedIndexD1.get(blockingKey);
+        // count the comparisons starting at every partition, then fill them in at the resulting offsets
+        final int[] limits = ParallelProcessing.getPartitionLimits(noOfPositions, noOfThreads);
+        final List<Long> partitionSizes = ParallelProcessing.processPartitions(noOfThreads, limits, (partitionId, start, end) -> {
+            long counter = 0;
+            for (int i = start; i < end; i++) {
+                for (int j = i + 1; j < Math.min(i + windowSize, noOfPositions); j++) {
+                    if (0 <= getPairKey(sortedEntityIds[i], sortedEntityIds[j], cleanCleanER, datasetLimit)) {
+                        counter++;
+                    }
+                }
+            }
+            return counter;
+        });
+
+        final long[] offsets = new long[limits.length];
+        for (int i = 0; i < partitionSizes.size(); i++) {
+            offsets[i + 1] = offsets[i] + partitionSizes.get(i);
+        }
+        if (Integer.MAX_VALUE - 8 < offsets[offsets.length - 1]) {
+            Log.error("The " + offsets[offsets.length - 1] + " comparisons of all windows exceed the maximum array size!");
+            throw new IllegalStateException("Too many comparisons for a decomposed block.");
+        }
+
+        final long[] pairKeys = new long[(int) offsets[offsets.length - 1]];
+        ParallelProcessing.processPartitions(noOfThreads, limits, (partitionId, start, end) -> {
+            int index = (int) offsets[partitionId];
+            for (int i = start; i < end; i++) {
+                for (int j = i + 1; j < Math.min(i + windowSize, noOfPositions); j++) {
+                    long pairKey = getPairKey(sortedEntityIds[i], sortedEntityIds[j], cleanCleanER, datasetLimit);
+                    if (0 <= pairKey) {
+                        pairKeys[index++] = pairKey;
+                    }
+                }
+            }
+            return null;
+        });
+
+        // remove the redundant comparisons
+        if (1 < noOfThreads) {
+            Arrays.parallelSort(pairKeys);
+        } else {
+            Arrays.sort(pairKeys);
+        }
+        int noOfComparisons = 0;
+        for (int i = 0; i < pairKeys.length; i++) {
+            if (i == 0 || pairKeys[i] != pairKeys[i - 1]) {
+                pairKeys[noOfComparisons++] = pairKeys[i];
+            }
+        }
+
+        if (noOfComparisons == 0) {
+            return;
+        }
+
+        final int[] entityIds1 = new int[noOfComparisons];
+        final int[] entityIds2 = new int[noOfComparisons];
+        ParallelProcessing.processPartitions(noOfThreads, noOfComparisons, (partitionId, start, end) -> {
+            for (int i = start; i < end; i++) {
+                entityIds1[i] = (int) (pairKeys[i] >>> 32);
+                entityIds2[i] = (int) pairKeys[i];
+            }
+            return null;
+        });
+        blocks.add(new DecomposedBlock(cleanCleanER, entityIds1, entityIds2));
+    }
+
+    protected int[] getMixedSortedEntities(int[] sortedKeyIds) {
+        int datasetLimit = (int) noOfEntitiesD1;
+        int noOfAssignments = 0;
+        for (int keyId : sortedKeyIds) {
+            noOfAssignments += getSize(invertedIndexD1.get(keyId)) + getSize(invertedIndexD2.get(keyId));
+        }
+
+        int index = 0;
+        final int[] sortedEntityIds = new int[noOfAssignments];
+        for (int keyId : sortedKeyIds) {
+            final int start = index;
+            final TIntList d1EntityIds = invertedIndexD1.get(keyId);
             if (d1EntityIds != null) {
-                sortedIds.addAll(d1EntityIds);
+                d1EntityIds.toArray(sortedEntityIds, 0, index, d1EntityIds.size());
+                index += d1EntityIds.size();
             }
 
-            final TIntList d2EntityIds = invertedIndexD2.get(blockingKey);
+            final TIntList d2EntityIds = invertedIndexD2.get(keyId);
             if (d2EntityIds != null) {
-                for (TIntIterator iterator = d2EntityIds.iterator(); iterator.hasNext();) {
-                    sortedIds.add(datasetLimit + iterator.next());
+                for (int i = 0; i < d2EntityIds.size(); i++) {
+                    sortedEntityIds[index++] = datasetLimit + d2EntityIds.get(i);
                 }
             }
 
-            sortedIds.shuffle(random);
-            sortedEntityIds.addAll(sortedIds);
+            shuffle(sortedEntityIds, start, index);
+        }
+
+        return sortedEntityIds;
+    }
+
+    /**
+     * Returns the comparison of the given entities packed into a long, with
+     * the smaller or the Dataset 1 entity in the upper half, or -1 if they
+     * are not comparable.
+     */
+    protected static long getPairKey(int entityId1, int entityId2, boolean cleanCleanER, int datasetLimit) {
+        if (!cleanCleanER) {
+            if (entityId1 == entityId2) {
+                return -1;
+            }
+            return ((long) Math.min(entityId1, entityId2) << 32) | Math.max(entityId1, entityId2);
         }
 
-        return sortedEntityIds.toArray();
+        if ((entityId1 < datasetLimit) == (entityId2 < datasetLimit)) {
+            return -1;
+        }
+        if (entityId1 < datasetLimit) {
+            return ((long) entityId1 << 32) | (entityId2 - datasetLimit);
+        }
+        return ((long) entityId2 << 32) | (entityId1 - datasetLimit);
     }
 
+    // the decomposed output is not part of the search space (see the class comment)
     @Override
     public int getNumberOfGridConfigurations() {
         return gridWindow.getNumberOfConfigurations();
@@ -122,8 +248,18 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
         obj1.put("stepValue", "1");
         obj1.put("description", getParameterDescription(0));
 
+        final JsonObject obj2 = new JsonObject();
+        obj2.put("class", "java.lang.Boolean");
+        obj2.put("name", getParameterName(1));
+        obj2.put("defaultValue", "false");
+        obj2.put("minValue", "-");
+        obj2.put("maxValue", "-");
+        obj2.put("stepValue", "-");
+        obj2.put("description", getParameterDescription(1));
+
         final JsonArray array = new JsonArray();
         array.add(obj1);
+        array.add(obj2);
         return array;
     }
 
@@ -132,6 +268,9 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
         switch (parameterId) {
             case 0:
                 return "The " + getParameterName(0) + " determines the fixed size of the window that slides over the sorted list of entities.";
+            case 1:
+                return "The " + getParameterName(1) + " determines whether the distinct comparisons of all windows are returned "
+                        + "as a single decomposed block instead of one block per window.";
             default:
                 return "invalid parameter id";
         }
@@ -142,76 +281,113 @@ public class SortedNeighborhoodBlocking extends StandardBlocking {
         switch (parameterId) {
             case 0:
                 return "Window Size";
+            case 1:
+                return "Decomposed Output";
             default:
                 return "invalid parameter id";
         }
     }
     
-    protected int[] getSortedEntities(String[] sortedTerms) {
-        final TIntList sortedEntityIds = new TIntArrayList();
+    private static int getSize(TIntList entityIds) {
+        return entityIds == null ? 0 : entityIds.size();
+    }
+
+    protected int[] getSortedEntities(int[] sortedKeyIds) {
+        int noOfAssignments = 0;
+        for (int keyId : sortedKeyIds) {
+            noOfAssignments += invertedIndexD1.get(keyId).size();
+        }
 
-        for (String blockingKey : sortedTerms) {
-            final TIntList sortedIds = invertedIndexD1.get(blockingKey);
+        int index = 0;
+        final int[] sortedEntityIds = new int[noOfAssignments];
+        for (int keyId : sortedKeyIds) {
+            final TIntList sortedIds = invertedIndexD1.get(keyId);
             sortedIds.shuffle(random);
-            sortedEntityIds.addAll(sortedIds);
+            sortedIds.toArray(sortedEntityIds, 0, index, sortedIds.size());
+            index += sortedIds.size();
         }
 
-        return sortedEntityIds.toArray();
+        return sortedEntityIds;
     }
     
     @Override
     protected void parseIndex() {
-        final Set<String> blockingKeysSet = invertedIndexD1.keySet();
-        final String[] sortedTerms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
-        Arrays.sort(sortedTerms);
-
-        final int[] allEntityIds = getSortedEntities(sortedTerms);
+        final int[] allEntityIds = getSortedEntities(getSortedKeyIds());
+        if (decomposedOutput) {
+            addWindowComparisons(allEntityIds);
+            return;
+        }
 
-        //slide window over the sorted list of entity ids
+        //slide window over the sorted list of entity ids; an entity is new to window i if its marker differs from i
+        final int[] entityIds = new int[windowSize];
+        final int[] markers = new int[(int) noOfEntitiesD1];
+        Arrays.fill(markers, -1);
         int upperLimit = allEntityIds.length - windowSize;
         for (int i = 0; i <= upperLimit; i++) {
-            final TIntSet entityIds = new TIntHashSet();
+            int noOfEntities = 0;
             for (int j = 0; j < windowSize; j++) {
-                entityIds.add(allEntityIds[i + j]);
+                int entityId = allEntityIds[i + j];
+                if (markers[entityId] != i) {
+                    markers[entityId] = i;
+                    entityIds[noOfEntities++] = entityId;
+                }
             }
 
-            if (1 < entityIds.size()) {
-                blocks.add(new UnilateralBlock(entityIds.toArray()));
+            if (1 < noOfEntities) {
+                blocks.add(new UnilateralBlock(Arrays.copyOf(entityIds, noOfEntities)));
             }
         }
     }
     
     @Override
     protected void parseIndices() {
-        final Set<String> blockingKeysSet = new HashSet<>();
-        blockingKeysSet.addAll(invertedIndexD1.keySet());
-        blockingKeysSet.addAll(invertedIndexD2.keySet());
-        
-        final String[] sortedTerms = blockingKeysSet.toArray(new String[blockingKeysSet.size()]);
-        Arrays.sort(sortedTerms);
+        final int[] allEntityIds = getMixedSortedEntities(getSortedKeyIds());
 
-        final int[] allEntityIds = getMixedSortedEntities(sortedTerms);
+        int datasetLimit = (int) noOfEntitiesD1;
+        if (decomposedOutput) {
+            addWindowComparisons(allEntityIds);
+            return;
+        }
 
-        int datasetLimit = entityProfilesD1.size();
         //slide window over the sorted list of entity ids
+        final int[] entityIds1 = new int[windowSize];
+        final int[] entityIds2 = new int[windowSize];
+        final int[] markers = new int[(int) (noOfEntitiesD1 + noOfEntitiesD2)];
+        Arrays.fill(markers, -1);
         int upperLimit = allEntityIds.length - windowSize;
         for (int i = 0; i <= upperLimit; i++) {
-            final TIntSet entityIds1 = new TIntHashSet();
-            final TIntSet entityIds2 = new TIntHashSet();
+            int noOfEntities1 = 0;
+            int noOfEntities2 = 0;
             for (int j = 0; j < windowSize; j++) {
-                if (allEntityIds[i + j] < datasetLimit) {
-                    entityIds1.add(allEntityIds[i + j]);
+                int entityId = allEntityIds[i + j];
+                if (markers[entityId] == i) {
+                    continue;
+                }
+
+                markers[entityId] = i;
+                if (entityId < datasetLimit) {
+                    entityIds1[noOfEntities1++] = entityId;
                 } else {
-                    entityIds2.add(allEntityIds[i + j] - datasetLimit);
+                    entityIds2[noOfEntities2++] = entityId - datasetLimit;
                 }
             }
 
-            if (!entityIds1.isEmpty() && !entityIds2.isEmpty()) {
-                blocks.add(new BilateralBlock(entityIds1.toArray(), entityIds2.toArray()));
+            if (0 < noOfEntities1 && 0 < noOfEntities2) {
+                blocks.add(new BilateralBlock(Arrays.copyOf(entityIds1, noOfEntities1), Arrays.copyOf(entityIds2, noOfEntities2)));
             }
         }
     }
     
+    // Fisher-Yates shuffle of the given range
+    protected void shuffle(int[] entityIds, int start, int end) {
+        for (int i = end - start - 1; 0 < i; i--) {
+            int j = start + random.nextInt(i + 1);
+            int temp = entityIds[start + i];
+            entityIds[start + i] = entityIds[j];
+            entityIds[j] = temp;
+        }
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         windowSize = (Integer) randomWindow.getNextRandomValue();
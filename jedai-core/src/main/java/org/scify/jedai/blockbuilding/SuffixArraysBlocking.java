@@ -16,8 +16,15 @@
 package org.scify.jedai.blockbuilding;
 
 import org.scify.jedai.datamodel.AbstractBlock;
-import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.datareader.entityreader.IEntityStreamReader;
+import org.scify.jedai.utilities.datastructures.GeneralizedSuffixArray;
 
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -29,14 +36,26 @@ import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
 
 /**
+ * Unless schema clusters are used or the profiles are streamed, the entities
+ * are indexed by their tokens and the suffixes are never materialized:
+ * instead, a suffix array is built over the distinct tokens and every block
+ * stems from the tokens whose sorted suffixes share a common prefix. The
+ * maximum block size is checked while the entities of every block are
+ * gathered, so oversized blocks are abandoned early.
  *
  * @author gap2
  */
 public class SuffixArraysBlocking extends StandardBlocking {
 
+    protected boolean tokensIndexed;
     protected int maximumBlockSize;
     protected int minimumSuffixLength;
 
+    protected int blockCounter;
+    protected int[] entityMarkers; // the last block of every entity, with those of Dataset 2 shifted
+    protected TIntList blockEntitiesD1;
+    protected TIntList blockEntitiesD2;
+
     protected final IntGridSearchConfiguration gridMBSize;
     protected final IntGridSearchConfiguration gridMSLength;
     protected final IntRandomSearchConfiguration randomMBSize;
@@ -57,10 +76,149 @@ public class SuffixArraysBlocking extends StandardBlocking {
         randomMSLength = new IntRandomSearchConfiguration(6, 2);
     }
 
+    /**
+     * Adds the given number of blocks with the entities of the tokens of the
+     * suffixes in the given range, unless the block is invalid or oversized;
+     * without a suffix array, the range refers to the key ids directly.
+     *
+     * @return false if the block exceeds the maximum block size
+     */
+    protected boolean addBlocks(GeneralizedSuffixArray suffixArray, int[] keyIds, int start, int end, int noOfCopies) {
+        blockCounter++;
+        blockEntitiesD1.clear();
+        blockEntitiesD2.clear();
+        for (int i = start; i < end; i++) {
+            int keyId = keyIds[suffixArray == null ? i : suffixArray.getTokenId(i)];
+            if (!addEntities(invertedIndexD1.get(keyId), blockEntitiesD1, 0)) {
+                return false;
+            }
+            if (invertedIndexD2 != null && !addEntities(invertedIndexD2.get(keyId), blockEntitiesD2, (int) noOfEntitiesD1)) {
+                return false;
+            }
+        }
+
+        // the blocks of different keys with the same entities share their arrays
+        if (invertedIndexD2 == null) {
+            if (blockEntitiesD1.size() < 2) {
+                return true;
+            }
+
+            blockEntitiesD1.sort();
+            final int[] entityIds = blockEntitiesD1.toArray();
+            for (int i = 0; i < noOfCopies; i++) {
+                blocks.add(new UnilateralBlock(entityIds));
+            }
+        } else {
+            if (blockEntitiesD1.isEmpty() || blockEntitiesD2.isEmpty()) {
+                return true;
+            }
+
+            blockEntitiesD1.sort();
+            blockEntitiesD2.sort();
+            final int[] entityIds1 = blockEntitiesD1.toArray();
+            final int[] entityIds2 = blockEntitiesD2.toArray();
+            for (int i = 0; i < noOfCopies; i++) {
+                blocks.add(new BilateralBlock(entityIds1, entityIds2));
+            }
+        }
+        return true;
+    }
+
+    private boolean addEntities(TIntList entityIds, TIntList blockEntities, int shift) {
+        if (entityIds == null) {
+            return true;
+        }
+
+        for (int i = 0; i < entityIds.size(); i++) {
+            int entityId = entityIds.get(i);
+            if (entityMarkers[shift + entityId] != blockCounter) {
+                entityMarkers[shift + entityId] = blockCounter;
+                blockEntities.add(entityId);
+                if (maximumBlockSize < blockEntitiesD1.size() + blockEntitiesD2.size()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a block for every suffix of the minimum length that is shared by
+     * several tokens; equal suffixes are adjacent in the suffix array.
+     */
+    protected void addSuffixBlocks(GeneralizedSuffixArray suffixArray, int[] keyIds) {
+        int start = 0;
+        while (start < suffixArray.size()) {
+            int length = suffixArray.getSuffixLength(start);
+            int end = start + 1;
+            while (end < suffixArray.size() && suffixArray.getLcp(end) == length && suffixArray.getSuffixLength(end) == length) {
+                end++;
+            }
+
+            if (minimumSuffixLength <= length) {
+                addBlocks(suffixArray, keyIds, start, end, 1);
+            }
+            start = end;
+        }
+    }
+
+    @Override
+    protected void buildBlocks() {
+        tokensIndexed = schemaClusters == null;
+        super.buildBlocks();
+    }
+
     @Override
-    public List<AbstractBlock> getBlocks(List<EntityProfile> profilesD1,
-            List<EntityProfile> profilesD2) {
-        final List<AbstractBlock> purgedBlocks = super.getBlocks(profilesD1, profilesD2);
+    public List<AbstractBlock> getBlocks(IEntityStreamReader readerD1, IEntityStreamReader readerD2) {
+        tokensIndexed = false;
+        return super.getBlocks(readerD1, readerD2);
+    }
+
+    /**
+     * Builds the blocks from the inverted index of tokens: the tokens shorter
+     * than the minimum suffix length are blocking keys on their own, while
+     * the rest form the suffix array.
+     */
+    protected void parseTokenIndex() {
+        int noOfLongTokens = 0;
+        int noOfShortTokens = 0;
+        final String[] tokens = keysDictionary.keys(new String[keysDictionary.size()]);
+        final int[] longKeyIds = new int[tokens.length];
+        final int[] shortKeyIds = new int[tokens.length];
+        for (String token : tokens) {
+            int keyId = keysDictionary.get(token);
+            if (token.length() < minimumSuffixLength) {
+                shortKeyIds[noOfShortTokens++] = keyId;
+            } else {
+                tokens[noOfLongTokens] = token;
+                longKeyIds[noOfLongTokens++] = keyId;
+            }
+        }
+
+        blockCounter = 0;
+        blockEntitiesD1 = new TIntArrayList();
+        blockEntitiesD2 = new TIntArrayList();
+        entityMarkers = new int[(int) (noOfEntitiesD1 + noOfEntitiesD2)];
+        for (int i = 0; i < noOfShortTokens; i++) {
+            addBlocks(null, shortKeyIds, i, i + 1, 1);
+        }
+
+        final GeneralizedSuffixArray suffixArray = new GeneralizedSuffixArray(Arrays.copyOf(tokens, noOfLongTokens));
+        addSuffixBlocks(suffixArray, longKeyIds);
+
+        entityMarkers = null;
+        blockEntitiesD1 = null;
+        blockEntitiesD2 = null;
+    }
+
+    @Override
+    public List<AbstractBlock> readBlocks() {
+        if (tokensIndexed) {
+            parseTokenIndex();
+            return blocks;
+        }
+
+        final List<AbstractBlock> purgedBlocks = super.readBlocks();
         final Iterator<AbstractBlock> blocksIterator = purgedBlocks.iterator();
         while (blocksIterator.hasNext()) {
             if (maximumBlockSize < blocksIterator.next().getTotalBlockAssignments()) {
@@ -72,6 +230,10 @@ public class SuffixArraysBlocking extends StandardBlocking {
 
     @Override
     protected Set<String> getBlockingKeys(String attributeValue) {
+        if (tokensIndexed) {
+            return super.getBlockingKeys(attributeValue);
+        }
+
         final Set<String> suffixes = new HashSet<>();
         for (String token : getTokens(attributeValue)) {
             suffixes.addAll(getSuffixes(minimumSuffixLength, token));
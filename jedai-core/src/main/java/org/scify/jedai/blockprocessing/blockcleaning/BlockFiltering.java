@@ -19,6 +19,7 @@ import org.scify.jedai.blockprocessing.AbstractBlockProcessing;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
 import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.utilities.ParallelProcessing;
 import org.scify.jedai.utilities.comparators.IncBlockCardinalityComparator;
 import com.esotericsoftware.minlog.Log;
 import gnu.trove.iterator.TIntIterator;
@@ -26,8 +27,10 @@ import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
@@ -35,6 +38,10 @@ import org.scify.jedai.configuration.gridsearch.DblGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.DblRandomSearchConfiguration;
 
 /**
+ * Block Filtering retains every entity in a subset of its smallest blocks: the
+ * blocks are sorted in increasing cardinality and every entity is placed only
+ * in the first blocks that contain it, up to the Filtering Ratio of the total
+ * number of its blocks. Blocks left with no comparison are discarded.
  *
  * @author gap2
  */
@@ -44,6 +51,7 @@ public class BlockFiltering extends AbstractBlockProcessing {
 
     protected int entitiesD1;
     protected int entitiesD2;
+    protected int noOfThreads;
     protected int[] counterD1;
     protected int[] counterD2;
     protected int[] limitsD1;
@@ -58,43 +66,75 @@ public class BlockFiltering extends AbstractBlockProcessing {
 
     public BlockFiltering(double r) {
         ratio = r;
+        noOfThreads = 1;
 
         gridRatio = new DblGridSearchConfiguration(1.0, 0.025, 0.025);
         randomRatio = new DblRandomSearchConfiguration(1.0, 0.01);
     }
 
+    // every thread finds the maximum entity ids in a range of blocks
     protected void countEntities(List<AbstractBlock> blocks) {
-        entitiesD1 = Integer.MIN_VALUE;
-        entitiesD2 = Integer.MIN_VALUE;
-        if (blocks.get(0) instanceof BilateralBlock) {
-            for (AbstractBlock block : blocks) {
-                final BilateralBlock bilBlock = (BilateralBlock) block;
-                for (int id1 : bilBlock.getIndex1Entities()) {
-                    if (entitiesD1 < id1 + 1) {
-                        entitiesD1 = id1 + 1;
+        final boolean bilateral = blocks.get(0) instanceof BilateralBlock;
+        final List<int[]> partialCounts = ParallelProcessing.processPartitions(noOfThreads, blocks.size(), (partitionId, start, end) -> {
+            int maxD1 = Integer.MIN_VALUE;
+            int maxD2 = Integer.MIN_VALUE;
+            for (int i = start; i < end; i++) {
+                if (bilateral) {
+                    final BilateralBlock bilBlock = (BilateralBlock) blocks.get(i);
+                    for (int id1 : bilBlock.getIndex1Entities()) {
+                        if (maxD1 < id1 + 1) {
+                            maxD1 = id1 + 1;
+                        }
                     }
-                }
-                for (int id2 : bilBlock.getIndex2Entities()) {
-                    if (entitiesD2 < id2 + 1) {
-                        entitiesD2 = id2 + 1;
+                    for (int id2 : bilBlock.getIndex2Entities()) {
+                        if (maxD2 < id2 + 1) {
+                            maxD2 = id2 + 1;
+                        }
                     }
-                }
-            }
-        } else if (blocks.get(0) instanceof UnilateralBlock) {
-            for (AbstractBlock block : blocks) {
-                final UnilateralBlock uniBlock = (UnilateralBlock) block;
-                for (int id : uniBlock.getEntities()) {
-                    if (entitiesD1 < id + 1) {
-                        entitiesD1 = id + 1;
+                } else {
+                    final UnilateralBlock uniBlock = (UnilateralBlock) blocks.get(i);
+                    for (int id : uniBlock.getEntities()) {
+                        if (maxD1 < id + 1) {
+                            maxD1 = id + 1;
+                        }
                     }
                 }
             }
+            return new int[]{maxD1, maxD2};
+        });
+
+        entitiesD1 = Integer.MIN_VALUE;
+        entitiesD2 = Integer.MIN_VALUE;
+        for (int[] counts : partialCounts) {
+            entitiesD1 = Math.max(entitiesD1, counts[0]);
+            entitiesD2 = Math.max(entitiesD2, counts[1]);
         }
     }
 
     protected void getBilateralLimits(List<AbstractBlock> blocks) {
         limitsD1 = new int[entitiesD1];
         limitsD2 = new int[entitiesD2];
+        if (1 < noOfThreads) {
+            final AtomicIntegerArray countersD1 = new AtomicIntegerArray(entitiesD1);
+            final AtomicIntegerArray countersD2 = new AtomicIntegerArray(entitiesD2);
+            ParallelProcessing.processPartitions(noOfThreads, blocks.size(), (partitionId, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    final BilateralBlock bilBlock = (BilateralBlock) blocks.get(i);
+                    for (int id1 : bilBlock.getIndex1Entities()) {
+                        countersD1.incrementAndGet(id1);
+                    }
+
+                    for (int id2 : bilBlock.getIndex2Entities()) {
+                        countersD2.incrementAndGet(id2);
+                    }
+                }
+                return null;
+            });
+            setLimits(limitsD1, countersD1);
+            setLimits(limitsD2, countersD2);
+            return;
+        }
+
         for (AbstractBlock block : blocks) {
             final BilateralBlock bilBlock = (BilateralBlock) block;
             for (int id1 : bilBlock.getIndex1Entities()) {
@@ -114,6 +154,10 @@ public class BlockFiltering extends AbstractBlockProcessing {
         }
     }
 
+    /**
+     * With multiple threads, the blocks of every entity are counted in atomic
+     * histograms, which are turned into limits by a parallel pass.
+     */
     protected void getLimits(List<AbstractBlock> blocks) {
         if (blocks.get(0) instanceof BilateralBlock) {
             getBilateralLimits(blocks);
@@ -143,6 +187,10 @@ public class BlockFiltering extends AbstractBlockProcessing {
                 + "1)" + getParameterDescription(0) + ".\n";
     }
 
+    public int getNoOfThreads() {
+        return noOfThreads;
+    }
+
     @Override
     public int getNumberOfGridConfigurations() {
         return gridRatio.getNumberOfConfigurations();
@@ -188,6 +236,20 @@ public class BlockFiltering extends AbstractBlockProcessing {
     protected void getUnilateralLimits(List<AbstractBlock> blocks) {
         limitsD1 = new int[entitiesD1];
         limitsD2 = null;
+        if (1 < noOfThreads) {
+            final AtomicIntegerArray countersD1 = new AtomicIntegerArray(entitiesD1);
+            ParallelProcessing.processPartitions(noOfThreads, blocks.size(), (partitionId, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    for (int id : ((UnilateralBlock) blocks.get(i)).getEntities()) {
+                        countersD1.incrementAndGet(id);
+                    }
+                }
+                return null;
+            });
+            setLimits(limitsD1, countersD1);
+            return;
+        }
+
         for (AbstractBlock block : blocks) {
             final UnilateralBlock uniBlock = (UnilateralBlock) block;
             for (int id : uniBlock.getEntities()) {
@@ -253,6 +315,11 @@ public class BlockFiltering extends AbstractBlockProcessing {
         return newBlocks;
     }
 
+    /**
+     * Retains every entity in its smallest blocks. This pass depends on the
+     * blocks that survived before the current one, so it is always
+     * sequential and the output does not depend on the number of threads.
+     */
     protected List<AbstractBlock> restructureBlocks(List<AbstractBlock> blocks) {
         if (blocks.get(0) instanceof BilateralBlock) {
             return restructureBilateraBlocks(blocks);
@@ -283,11 +350,29 @@ public class BlockFiltering extends AbstractBlockProcessing {
         return newBlocks;
     }
 
+    protected void setLimits(int[] limits, AtomicIntegerArray counters) {
+        ParallelProcessing.processPartitions(noOfThreads, limits.length, (partitionId, start, end) -> {
+            for (int i = start; i < end; i++) {
+                limits[i] = (int) Math.round(ratio * counters.get(i));
+            }
+            return null;
+        });
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         ratio = (Double) randomRatio.getNextRandomValue();
     }
 
+    public void setNoOfThreads(int noOfThreads) {
+        if (noOfThreads < 1) {
+            Log.error("The number of threads should be a positive integer! Using a single thread instead.");
+            this.noOfThreads = 1;
+        } else {
+            this.noOfThreads = noOfThreads;
+        }
+    }
+
     @Override
     public void setNumberedGridConfiguration(int iterationNumber) {
         ratio = (Double) gridRatio.getNumberedValue(iterationNumber);
@@ -298,7 +383,21 @@ public class BlockFiltering extends AbstractBlockProcessing {
         ratio = (Double) randomRatio.getNumberedRandom(iterationNumber);
     }
 
+    /**
+     * Sorts the blocks in increasing cardinality. With multiple threads, an
+     * ArrayList is sorted through Arrays.parallelSort, which is stable like
+     * Collections.sort, so blocks of equal cardinality retain their order.
+     */
     protected void sortBlocks(List<AbstractBlock> blocks) {
-        Collections.sort(blocks, new IncBlockCardinalityComparator());
+        if (noOfThreads <= 1 || !(blocks instanceof ArrayList)) { // other lists, e.g., memory-mapped ones, sort themselves
+            Collections.sort(blocks, new IncBlockCardinalityComparator());
+            return;
+        }
+
+        final AbstractBlock[] sortedBlocks = blocks.toArray(new AbstractBlock[blocks.size()]);
+        Arrays.parallelSort(sortedBlocks, new IncBlockCardinalityComparator());
+        for (int i = 0; i < sortedBlocks.length; i++) {
+            blocks.set(i, sortedBlocks[i]);
+        }
     }
 }
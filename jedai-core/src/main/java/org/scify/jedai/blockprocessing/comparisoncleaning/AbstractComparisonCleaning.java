@@ -43,6 +43,7 @@ public abstract class AbstractComparisonCleaning implements IBlockProcessing {
     protected int datasetLimit;
     protected int noOfBlocks;
     protected int noOfEntities;
+    protected int noOfThreads;
 
     protected EntityIndex entityIndex;
     protected BilateralBlock[] bBlocks;
@@ -51,6 +52,7 @@ public abstract class AbstractComparisonCleaning implements IBlockProcessing {
 
     public AbstractComparisonCleaning() {
         validEntities = new TIntHashSet();
+        noOfThreads = 1;
     }
 
     protected void addDecomposedBlock(int entityId, TIntCollection neighbors, List<AbstractBlock> newBlocks) {
@@ -75,11 +77,15 @@ public abstract class AbstractComparisonCleaning implements IBlockProcessing {
     
     protected abstract List<AbstractBlock> applyMainProcessing();
 
+    public int getNoOfThreads() {
+        return noOfThreads;
+    }
+
     @Override
     public List<AbstractBlock> refineBlocks(List<AbstractBlock> blocks) {
         Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
         
-        entityIndex = new EntityIndex(blocks);
+        entityIndex = new EntityIndex(blocks, noOfThreads);
         
         cleanCleanER = entityIndex.isCleanCleanER();
         datasetLimit = entityIndex.getDatasetLimit();
@@ -99,4 +105,13 @@ public abstract class AbstractComparisonCleaning implements IBlockProcessing {
         }
         return array;
     }
+
+    public void setNoOfThreads(int noOfThreads) {
+        if (noOfThreads < 1) {
+            Log.error("The number of threads should be a positive integer! Using a single thread instead.");
+            this.noOfThreads = 1;
+        } else {
+            this.noOfThreads = noOfThreads;
+        }
+    }
 }
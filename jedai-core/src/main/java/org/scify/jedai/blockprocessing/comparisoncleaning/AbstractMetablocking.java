@@ -19,6 +19,7 @@ import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
 import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.utilities.ParallelProcessing;
 import org.scify.jedai.utilities.enumerations.WeightingScheme;
 
 import gnu.trove.list.TIntList;
@@ -26,6 +27,7 @@ import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.jena.atlas.json.JsonArray;
@@ -39,22 +41,15 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
     
     protected boolean nodeCentric;
 
-    protected int[] flags;
-
     protected double threshold;
     protected double blockAssingments;
     protected double distinctComparisons;
     protected double[] comparisonsPerEntity;
-    protected double[] counters;
 
-    protected final TIntList neighbors;
-    protected final TIntList retainedNeighbors;
     protected WeightingScheme weightingScheme;
 
     public AbstractMetablocking(WeightingScheme wScheme) {
         super();
-        neighbors = new TIntArrayList();
-        retainedNeighbors = new TIntArrayList();
         weightingScheme = wScheme;
     }
 
@@ -64,12 +59,6 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
 
     @Override
     protected List<AbstractBlock> applyMainProcessing() {
-        counters = new double[noOfEntities];
-        flags = new int[noOfEntities];
-        for (int i = 0; i < noOfEntities; i++) {
-            flags[i] = -1;
-        }
-
         blockAssingments = 0;
         if (cleanCleanER) {
             for (BilateralBlock bBlock : bBlocks) {
@@ -91,8 +80,6 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
 
     protected void freeMemory() {
         bBlocks = null;
-        flags = null;
-        counters = null;
         uBlocks = null;
     }
 
@@ -165,72 +152,131 @@ public abstract class AbstractMetablocking extends AbstractComparisonCleaning {
         }
     }
 
-    protected double getWeight(int entityId, int neighborId) {
+    protected double getWeight(int entityId, int neighborId, double counter) {
         switch (weightingScheme) {
             case ARCS:
-                return counters[neighborId];
+                return counter;
             case CBS:
-                return counters[neighborId];
+                return counter;
             case ECBS:
-                return counters[neighborId] * Math.log10(noOfBlocks / entityIndex.getNoOfEntityBlocks(entityId, 0)) * Math.log10(noOfBlocks / entityIndex.getNoOfEntityBlocks(neighborId, 0));
+                return counter * Math.log10(noOfBlocks / entityIndex.getNoOfEntityBlocks(entityId, 0)) * Math.log10(noOfBlocks / entityIndex.getNoOfEntityBlocks(neighborId, 0));
             case JS:
-                return counters[neighborId] / (entityIndex.getNoOfEntityBlocks(entityId, 0) + entityIndex.getNoOfEntityBlocks(neighborId, 0) - counters[neighborId]);
+                return counter / (entityIndex.getNoOfEntityBlocks(entityId, 0) + entityIndex.getNoOfEntityBlocks(neighborId, 0) - counter);
             case EJS:
-                double probability = counters[neighborId] / (entityIndex.getNoOfEntityBlocks(entityId, 0) + entityIndex.getNoOfEntityBlocks(neighborId, 0) - counters[neighborId]);
+                double probability = counter / (entityIndex.getNoOfEntityBlocks(entityId, 0) + entityIndex.getNoOfEntityBlocks(neighborId, 0) - counter);
                 return probability * Math.log10(distinctComparisons / comparisonsPerEntity[entityId]) * Math.log10(distinctComparisons / comparisonsPerEntity[neighborId]);
         }
         return -1;
     }
 
-    protected void setNormalizedNeighborEntities(int blockIndex, int entityId) {
-        neighbors.clear();
-        if (cleanCleanER) {
-            if (entityId < datasetLimit) {
-                for (int originalId : bBlocks[blockIndex].getIndex2Entities()) {
-                    neighbors.add(originalId + datasetLimit);
-                }
-            } else {
-                for (int originalId : bBlocks[blockIndex].getIndex1Entities()) {
-                    neighbors.add(originalId);
-                }
-            }
-        } else {
-            if (!nodeCentric) {
-                for (int neighborId : uBlocks[blockIndex].getEntities()) {
-                    if (neighborId < entityId) {
-                        neighbors.add(neighborId);
+    protected void setStatistics() {
+        comparisonsPerEntity = new double[noOfEntities];
+        final List<Double> partialComparisons = ParallelProcessing.processPartitions(noOfThreads, noOfEntities, (partitionId, start, end) -> {
+            double comparisons = 0;
+            final TIntSet distinctNeighbors = new TIntHashSet();
+            for (int i = start; i < end; i++) {
+                final int[] blockIds = entityIndex.getBlockIds();
+                final int blocksEnd = entityIndex.getEntityBlocksEnd(i);
+                final int blocksStart = entityIndex.getEntityBlocksStart(i);
+                if (blocksStart != blocksEnd) {
+                    distinctNeighbors.clear();
+                    for (int j = blocksStart; j < blocksEnd; j++) {
+                        int blockIndex = blockIds[j];
+                        for (int neighborId : getNeighborEntities(blockIndex, i)) {
+                            distinctNeighbors.add(neighborId);
+                        }
                     }
-                }
-            } else {
-                for (int neighborId : uBlocks[blockIndex].getEntities()) {
-                    if (neighborId != entityId) {
-                        neighbors.add(neighborId);
+                    comparisonsPerEntity[i] = distinctNeighbors.size();
+                    if (!cleanCleanER) {
+                        comparisonsPerEntity[i]--;
                     }
+                    comparisons += comparisonsPerEntity[i];
                 }
             }
+            return comparisons;
+        });
+
+        distinctComparisons = 0;
+        for (double comparisons : partialComparisons) {
+            distinctComparisons += comparisons;
         }
+        distinctComparisons /= 2;
     }
 
-    protected void setStatistics() {
-        distinctComparisons = 0;
-        comparisonsPerEntity = new double[noOfEntities];
-        final TIntSet distinctNeighbors = new TIntHashSet();
-        for (int i = 0; i < noOfEntities; i++) {
-            final int[] associatedBlocks = entityIndex.getEntityBlocks(i, 0);
-            if (associatedBlocks.length != 0) {
-                distinctNeighbors.clear();
-                for (int blockIndex : associatedBlocks) {
-                    for (int neighborId : getNeighborEntities(blockIndex, i)) {
-                        distinctNeighbors.add(neighborId);
+    /**
+     * Holds the scratch state for traversing the neighborhood of one entity
+     * at a time, so that disjoint ranges of entities can be processed by
+     * separate threads. A new instance should be used for every pass over
+     * the blocking graph.
+     */
+    protected class EntityProcessor {
+
+        protected final int[] flags;
+        protected final double[] counters;
+        protected final TIntList retainedNeighbors;
+        protected final TIntList validEntities;
+
+        public EntityProcessor() {
+            flags = new int[noOfEntities];
+            Arrays.fill(flags, -1);
+            counters = new double[noOfEntities];
+            retainedNeighbors = new TIntArrayList();
+            validEntities = new TIntArrayList();
+        }
+
+        public double getTotalWeight(int entityId) {
+            double totalWeight = 0;
+            for (int i = 0; i < validEntities.size(); i++) {
+                totalWeight += getWeight(entityId, validEntities.get(i));
+            }
+            return totalWeight;
+        }
+
+        public double getWeight(int entityId, int neighborId) {
+            return AbstractMetablocking.this.getWeight(entityId, neighborId, counters[neighborId]);
+        }
+
+        public void processEntity(int entityId) {
+            validEntities.clear();
+            final int[] blockIds = entityIndex.getBlockIds();
+            final int blocksEnd = entityIndex.getEntityBlocksEnd(entityId);
+            final int blocksStart = entityIndex.getEntityBlocksStart(entityId);
+            if (blocksStart == blocksEnd) {
+                return;
+            }
+
+            final boolean arcsWeights = weightingScheme.equals(WeightingScheme.ARCS);
+            for (int j = blocksStart; j < blocksEnd; j++) {
+                int blockIndex = blockIds[j];
+                if (cleanCleanER) {
+                    double increment = arcsWeights ? 1 / bBlocks[blockIndex].getNoOfComparisons() : 1;
+                    if (entityId < datasetLimit) {
+                        for (int originalId : bBlocks[blockIndex].getIndex2Entities()) {
+                            updateCounter(entityId, originalId + datasetLimit, increment);
+                        }
+                    } else {
+                        for (int originalId : bBlocks[blockIndex].getIndex1Entities()) {
+                            updateCounter(entityId, originalId, increment);
+                        }
+                    }
+                } else {
+                    double increment = arcsWeights ? 1 / uBlocks[blockIndex].getNoOfComparisons() : 1;
+                    for (int neighborId : uBlocks[blockIndex].getEntities()) {
+                        if (nodeCentric ? neighborId != entityId : neighborId < entityId) {
+                            updateCounter(entityId, neighborId, increment);
+                        }
                     }
                 }
-                comparisonsPerEntity[i] = distinctNeighbors.size();
-                if (!cleanCleanER) {
-                    comparisonsPerEntity[i]--;
-                }
-                distinctComparisons += comparisonsPerEntity[i];
             }
         }
-        distinctComparisons /= 2;
+
+        protected void updateCounter(int entityId, int neighborId, double increment) {
+            if (flags[neighborId] != entityId) {
+                counters[neighborId] = 0;
+                flags[neighborId] = entityId;
+                validEntities.add(neighborId);
+            }
+            counters[neighborId] += increment;
+        }
     }
 }
@@ -146,18 +146,11 @@ public class CanopyClustering extends CardinalityNodePruning {
 
         excludedEntities = new TIntHashSet();
         nearestEntities = new TIntSet[noOfEntities];
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            while (iterator.hasNext()) {
-                int currentId = iterator.next();
-                processArcsEntity(currentId);
-                verifyValidEntities(currentId);
-            }
-        } else {
-            while (iterator.hasNext()) {
-                int currentId = iterator.next();
-                processEntity(currentId);
-                verifyValidEntities(currentId);
-            }
+        final EntityProcessor processor = new EntityProcessor();
+        while (iterator.hasNext()) {
+            int currentId = iterator.next();
+            processor.processEntity(currentId);
+            verifyValidEntities(processor, currentId);
         }
 
         return retainValidComparisons();
@@ -167,17 +160,17 @@ public class CanopyClustering extends CardinalityNodePruning {
     protected void setThreshold() {
     }
 
-    @Override
-    protected void verifyValidEntities(int entityId) {
+    protected void verifyValidEntities(EntityProcessor processor, int entityId) {
+        final TIntList validEntities = processor.validEntities;
         nearestEntities[entityId] = new TIntHashSet();
-        for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
-            int neighborId = tIterator.next();
+        for (int i = 0; i < validEntities.size(); i++) {
+            int neighborId = validEntities.get(i);
             if (excludedEntities.contains(neighborId)) {
                 System.out.println("Excluded!!!");
                 continue;
             }
 
-            double weight = getWeight(entityId, neighborId);
+            double weight = processor.getWeight(entityId, neighborId);
             if (inclusiveThreshold < weight) {
                 if (exclusiveThreshold < weight) {
                     System.out.println(weight);
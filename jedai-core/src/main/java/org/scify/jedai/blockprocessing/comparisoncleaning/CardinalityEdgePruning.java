@@ -18,26 +18,29 @@ package org.scify.jedai.blockprocessing.comparisoncleaning;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.DecomposedBlock;
-import org.scify.jedai.utilities.comparators.IncComparisonWeightComparator;
+import org.scify.jedai.utilities.ParallelProcessing;
+import org.scify.jedai.utilities.datastructures.BoundedMinHeap;
 import org.scify.jedai.utilities.enumerations.WeightingScheme;
 import com.esotericsoftware.minlog.Log;
-import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.TIntList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
 
 /**
+ * Every thread collects the top-K edges of a range of entities in a primitive
+ * bounded heap, with each comparison packed into a long; the local heaps are
+ * then merged into the global top-K. Equal weights are broken in favor of the
+ * smaller comparison, so the output does not depend on the number of threads.
  *
  * @author gap2
  */
 public class CardinalityEdgePruning extends WeightedEdgePruning {
 
     protected double minimumWeight;
-    protected Queue<Comparison> topKEdges;
 
     public CardinalityEdgePruning() {
         super(WeightingScheme.ARCS);
@@ -81,24 +84,42 @@ public class CardinalityEdgePruning extends WeightedEdgePruning {
 
     @Override
     protected List<AbstractBlock> pruneEdges() {
-        minimumWeight = Double.MIN_VALUE;
-        topKEdges = new PriorityQueue<>((int) (2 * threshold), new IncComparisonWeightComparator());
-
-        int limit = cleanCleanER ? datasetLimit : noOfEntities;
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < limit; i++) {
-                processArcsEntity(i);
-                verifyValidEntities(i);
-            }
-        } else {
-            for (int i = 0; i < limit; i++) {
-                processEntity(i);
-                verifyValidEntities(i);
+        final int k = (int) threshold;
+        final int limit = cleanCleanER ? datasetLimit : noOfEntities;
+        final List<BoundedMinHeap> partialTopK = ParallelProcessing.processPartitions(noOfThreads, limit, (partitionId, start, end) -> {
+            final EntityProcessor processor = new EntityProcessor();
+            final BoundedMinHeap topK = new BoundedMinHeap(k);
+            for (int i = start; i < end; i++) {
+                processor.processEntity(i);
+                verifyValidEntities(processor, i, topK);
             }
+            return topK;
+        });
+
+        // the global top-K edges are among the local ones
+        final BoundedMinHeap topK = partialTopK.get(0);
+        for (int i = 1; i < partialTopK.size(); i++) {
+            topK.merge(partialTopK.get(i));
+        }
+        minimumWeight = topK.getMinimumWeight();
+
+        final long[] comparisons = new long[topK.size()];
+        for (int i = 0; i < comparisons.length; i++) {
+            comparisons[i] = topK.getKey(i);
+        }
+        Arrays.sort(comparisons);
+
+        final int[] entityIds1 = new int[comparisons.length];
+        final int[] entityIds2 = new int[comparisons.length];
+        for (int i = 0; i < comparisons.length; i++) {
+            entityIds1[i] = (int) (comparisons[i] >>> 32);
+            entityIds2[i] = (int) comparisons[i];
         }
 
         final List<AbstractBlock> newBlocks = new ArrayList<>();
-        addDecomposedBlock(topKEdges, newBlocks);
+        if (0 < comparisons.length) {
+            newBlocks.add(new DecomposedBlock(cleanCleanER, entityIds1, entityIds2));
+        }
         return newBlocks;
     }
 
@@ -109,19 +130,23 @@ public class CardinalityEdgePruning extends WeightedEdgePruning {
         Log.info(getMethodName() + " Threshold \t:\t" + threshold);
     }
 
-    protected void verifyValidEntities(int entityId) {
-        for (TIntIterator iterator = validEntities.iterator(); iterator.hasNext();) {
-            int neighborId = iterator.next();
-            double weight = getWeight(entityId, neighborId);
-            if (!(weight < minimumWeight)) {
-                final Comparison comparison = getComparison(entityId, neighborId);
-                comparison.setUtilityMeasure(weight);
-                topKEdges.add(comparison);
-                if (threshold < topKEdges.size()) {
-                    final Comparison lastComparison = topKEdges.poll();
-                    minimumWeight = lastComparison.getUtilityMeasure();
-                }
+    protected void verifyValidEntities(EntityProcessor processor, int entityId, BoundedMinHeap topK) {
+        final TIntList validEntities = processor.validEntities;
+        for (int i = 0; i < validEntities.size(); i++) {
+            int neighborId = validEntities.get(i);
+            double weight = processor.getWeight(entityId, neighborId);
+            if (weight < Double.MIN_VALUE || (topK.isFull() && weight < topK.getMinimumWeight())) {
+                continue;
+            }
+
+            // the entity ids of the comparison, packed into a single key
+            final long comparison;
+            if (!cleanCleanER) {
+                comparison = ((long) Math.min(entityId, neighborId) << 32) | Math.max(entityId, neighborId);
+            } else {
+                comparison = ((long) entityId << 32) | (neighborId - datasetLimit);
             }
+            topK.offer(comparison, weight);
         }
     }
 }
@@ -17,20 +17,32 @@ package org.scify.jedai.blockprocessing.comparisoncleaning;
 
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.Comparison;
-import org.scify.jedai.utilities.comparators.IncComparisonWeightComparator;
+import org.scify.jedai.datamodel.DecomposedBlock;
+import org.scify.jedai.utilities.ParallelProcessing;
+import org.scify.jedai.utilities.datastructures.BoundedMinHeap;
 import org.scify.jedai.utilities.enumerations.WeightingScheme;
 
 import com.esotericsoftware.minlog.Log;
 
 import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.TIntSet;
-import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.PriorityQueue;
 
 /**
+ * The top-k neighbors of every entity are selected by separate threads, each
+ * with a primitive bounded heap, and are stored in a compressed sparse row
+ * layout: the neighbors of entity i lie in topKNeighbors, in the range
+ * [topKOffsets[i], topKOffsets[i+1]), sorted by id. The retained comparisons
+ * are then derived in parallel, too. Equal weights are broken in favor of the
+ * smaller neighbor id, so the output does not depend on the number of threads.
+ *
+ * The subclasses that select neighbors one entity at a time, in random order,
+ * store them in nearestEntities instead.
  *
  * @author gap2
  */
@@ -38,6 +50,8 @@ public class CardinalityNodePruning extends CardinalityEdgePruning {
 
     protected int firstId;
     protected int lastId;
+    protected int[] topKNeighbors;
+    protected int[] topKOffsets;
     protected TIntSet[] nearestEntities;
 
     public CardinalityNodePruning() {
@@ -61,12 +75,42 @@ public class CardinalityNodePruning extends CardinalityEdgePruning {
         return "Cardinality Node Pruning";
     }
 
-    protected boolean isValidComparison(int entityId, int neighborId) {
-        if (nearestEntities[neighborId] == null) {
-            return true;
+    protected void addRetainedComparisons(int entityId, TIntList neighborIds, List<AbstractBlock> newBlocks) {
+        if (neighborIds.isEmpty()) {
+            return;
         }
 
-        if (nearestEntities[neighborId].contains(entityId)) {
+        final int[] entityIds1 = new int[neighborIds.size()];
+        final int[] entityIds2 = new int[neighborIds.size()];
+        for (int i = 0; i < neighborIds.size(); i++) {
+            int neighborId = neighborIds.get(i);
+            if (!cleanCleanER) {
+                entityIds1[i] = Math.min(entityId, neighborId);
+                entityIds2[i] = Math.max(entityId, neighborId);
+            } else if (entityId < datasetLimit) {
+                entityIds1[i] = entityId;
+                entityIds2[i] = neighborId - datasetLimit;
+            } else {
+                entityIds1[i] = neighborId;
+                entityIds2[i] = entityId - datasetLimit;
+            }
+        }
+        newBlocks.add(new DecomposedBlock(cleanCleanER, entityIds1, entityIds2));
+    }
+
+    /**
+     * Returns whether the candidate is among the top-k neighbors of the given
+     * entity.
+     */
+    protected boolean isNearestEntity(int entityId, int candidateId) {
+        if (nearestEntities != null) {
+            return nearestEntities[entityId] != null && nearestEntities[entityId].contains(candidateId);
+        }
+        return 0 <= Arrays.binarySearch(topKNeighbors, topKOffsets[entityId], topKOffsets[entityId + 1], candidateId);
+    }
+
+    protected boolean isValidComparison(int entityId, int neighborId) {
+        if (isNearestEntity(neighborId, entityId)) {
             return entityId < neighborId;
         }
 
@@ -75,21 +119,32 @@ public class CardinalityNodePruning extends CardinalityEdgePruning {
 
     @Override
     protected List<AbstractBlock> pruneEdges() {
-        nearestEntities = new TIntSet[noOfEntities];
-        topKEdges = new PriorityQueue<>((int) (2 * threshold), new IncComparisonWeightComparator());
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < noOfEntities; i++) {
-                processArcsEntity(i);
-                verifyValidEntities(i);
-            }
-        } else {
-            for (int i = 0; i < noOfEntities; i++) {
-                processEntity(i);
-                verifyValidEntities(i);
+        nearestEntities = null;
+        setTopKNeighbors();
+        return retainTopKComparisons();
+    }
+
+    protected List<AbstractBlock> retainTopKComparisons() {
+        final List<List<AbstractBlock>> partialBlocks = ParallelProcessing.processPartitions(noOfThreads, noOfEntities, (partitionId, start, end) -> {
+            final List<AbstractBlock> newBlocks = new ArrayList<>();
+            final TIntList retainedNeighbors = new TIntArrayList();
+            for (int i = start; i < end; i++) {
+                retainedNeighbors.clear();
+                for (int j = topKOffsets[i]; j < topKOffsets[i + 1]; j++) {
+                    if (isValidComparison(i, topKNeighbors[j])) {
+                        retainedNeighbors.add(topKNeighbors[j]);
+                    }
+                }
+                addRetainedComparisons(i, retainedNeighbors, newBlocks);
             }
-        }
+            return newBlocks;
+        });
 
-        return retainValidComparisons();
+        final List<AbstractBlock> newBlocks = new ArrayList<>();
+        partialBlocks.forEach((blocks) -> {
+            newBlocks.addAll(blocks);
+        });
+        return newBlocks;
     }
 
     protected List<AbstractBlock> retainValidComparisons() {
@@ -111,6 +166,52 @@ public class CardinalityNodePruning extends CardinalityEdgePruning {
         return newBlocks;
     }
 
+    /**
+     * Every thread selects the top-k neighbors of a contiguous range of
+     * entities, so its output forms a contiguous part of the flat array.
+     */
+    protected void setTopKNeighbors() {
+        final int k = (int) threshold;
+        final int[] limits = ParallelProcessing.getPartitionLimits(noOfEntities, noOfThreads);
+        topKOffsets = new int[noOfEntities + 1];
+        final List<TIntList> partialNeighbors = ParallelProcessing.processPartitions(noOfThreads, limits, (partitionId, start, end) -> {
+            final EntityProcessor processor = new EntityProcessor();
+            final BoundedMinHeap topK = new BoundedMinHeap(k);
+            final int[] sortedNeighbors = new int[k];
+            final TIntList neighborIds = new TIntArrayList();
+            for (int i = start; i < end; i++) {
+                processor.processEntity(i);
+                topK.clear();
+                for (int j = 0; j < processor.validEntities.size(); j++) {
+                    int neighborId = processor.validEntities.get(j);
+                    double weight = processor.getWeight(i, neighborId);
+                    if (!(weight < Double.MIN_VALUE)) {
+                        topK.offer(neighborId, weight);
+                    }
+                }
+
+                for (int j = 0; j < topK.size(); j++) {
+                    sortedNeighbors[j] = (int) topK.getKey(j);
+                }
+                Arrays.sort(sortedNeighbors, 0, topK.size());
+                neighborIds.add(sortedNeighbors, 0, topK.size());
+                topKOffsets[i + 1] = topK.size();
+            }
+            return neighborIds;
+        });
+
+        topKOffsets[0] = 0;
+        for (int i = 0; i < noOfEntities; i++) {
+            topKOffsets[i + 1] += topKOffsets[i];
+        }
+
+        topKNeighbors = new int[topKOffsets[noOfEntities]];
+        for (int i = 0; i < partialNeighbors.size(); i++) {
+            final TIntList neighborIds = partialNeighbors.get(i);
+            neighborIds.toArray(topKNeighbors, 0, topKOffsets[limits[i]], neighborIds.size());
+        }
+    }
+
     protected void setLimits() {
         firstId = 0;
         lastId = noOfEntities;
@@ -121,32 +222,4 @@ public class CardinalityNodePruning extends CardinalityEdgePruning {
         threshold = Math.max(1, blockAssingments / noOfEntities);
         Log.info(getMethodName() + " Threshold \t:\t" + threshold);
     }
-
-    @Override
-    protected void verifyValidEntities(int entityId) {
-        if (validEntities.isEmpty()) {
-            return;
-        }
-
-        topKEdges.clear();
-        minimumWeight = Double.MIN_VALUE;
-        for (TIntIterator iterator = validEntities.iterator(); iterator.hasNext();) {
-            int neighborId = iterator.next();
-            double weight = getWeight(entityId, neighborId);
-            if (!(weight < minimumWeight)) {
-                final Comparison comparison = new Comparison(cleanCleanER, -1, neighborId);
-                comparison.setUtilityMeasure(weight);
-                topKEdges.add(comparison);
-                if (threshold < topKEdges.size()) {
-                    Comparison lastComparison = topKEdges.poll();
-                    minimumWeight = lastComparison.getUtilityMeasure();
-                }
-            }
-        }
-
-        nearestEntities[entityId] = new TIntHashSet();
-        for (Comparison comparison : topKEdges) {
-            nearestEntities[entityId].add(comparison.getEntityId2());
-        }
-    }
 }
@@ -86,10 +86,13 @@ public class ComparisonPropagation extends AbstractComparisonCleaning {
 
     private void processBilateralBlocks(List<AbstractBlock> newBlocks) {
         for (int i = 0; i < datasetLimit; i++) {
-            final int[] associatedBlocks = entityIndex.getEntityBlocks(i, 0);
-            if (associatedBlocks.length != 0) {
+            final int[] blockIds = entityIndex.getBlockIds();
+            final int blocksEnd = entityIndex.getEntityBlocksEnd(i);
+            final int blocksStart = entityIndex.getEntityBlocksStart(i);
+            if (blocksStart != blocksEnd) {
                 validEntities.clear();
-                for (int blockIndex : associatedBlocks) {
+                for (int j = blocksStart; j < blocksEnd; j++) {
+                    int blockIndex = blockIds[j];
                     for (int neighborId : bBlocks[blockIndex].getIndex2Entities()) {
                         validEntities.add(neighborId);
                     }
@@ -101,10 +104,13 @@ public class ComparisonPropagation extends AbstractComparisonCleaning {
 
     private void processUnilateralBlocks(List<AbstractBlock> newBlocks) {
         for (int i = 0; i < noOfEntities; i++) {
-            final int[] associatedBlocks = entityIndex.getEntityBlocks(i, 0);
-            if (associatedBlocks.length != 0) {
+            final int[] blockIds = entityIndex.getBlockIds();
+            final int blocksEnd = entityIndex.getEntityBlocksEnd(i);
+            final int blocksStart = entityIndex.getEntityBlocksStart(i);
+            if (blocksStart != blocksEnd) {
                 validEntities.clear();
-                for (int blockIndex : associatedBlocks) {
+                for (int j = blocksStart; j < blocksEnd; j++) {
+                    int blockIndex = blockIds[j];
                     for (int neighborId : uBlocks[blockIndex].getEntities()) {
                         if (neighborId < i) {
                             validEntities.add(neighborId);
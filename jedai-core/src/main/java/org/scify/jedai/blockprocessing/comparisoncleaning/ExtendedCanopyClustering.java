@@ -29,6 +29,7 @@ import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Random;
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
@@ -43,6 +44,7 @@ public class ExtendedCanopyClustering extends CardinalityNodePruning {
     protected final int inclusiveThreshold;
     protected final int exclusiveThreshold;
     protected TIntSet excludedEntities;
+    protected Queue<Comparison> topKEdges;
     
     public ExtendedCanopyClustering() {
         this(10, 1, WeightingScheme.ARCS);
@@ -132,18 +134,11 @@ public class ExtendedCanopyClustering extends CardinalityNodePruning {
         excludedEntities = new TIntHashSet();
         nearestEntities = new TIntSet[noOfEntities];
         topKEdges = new PriorityQueue<>((int) (2 * inclusiveThreshold), new IncComparisonWeightComparator());
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            while (iterator.hasNext()) {
-                int currentId = iterator.next();
-                processArcsEntity(currentId);
-                verifyValidEntities(currentId);
-            }
-        } else {
-            while (iterator.hasNext()) {
-                int currentId = iterator.next();
-                processEntity(currentId);
-                verifyValidEntities(currentId);
-            }
+        final EntityProcessor processor = new EntityProcessor();
+        while (iterator.hasNext()) {
+            int currentId = iterator.next();
+            processor.processEntity(currentId);
+            verifyValidEntities(processor, currentId);
         }
 
         return retainValidComparisons();
@@ -153,21 +148,21 @@ public class ExtendedCanopyClustering extends CardinalityNodePruning {
     protected void setThreshold() { // not needed for this method
     }
 
-    @Override
-    protected void verifyValidEntities(int entityId) {
+    protected void verifyValidEntities(EntityProcessor processor, int entityId) {
+        final TIntList validEntities = processor.validEntities;
         if (validEntities.isEmpty()) {
             return;
         }
 
         topKEdges.clear();
         minimumWeight = Double.MIN_VALUE;
-        for (TIntIterator iterator = validEntities.iterator(); iterator.hasNext();) {
-            int neighborId = iterator.next();
+        for (int i = 0; i < validEntities.size(); i++) {
+            int neighborId = validEntities.get(i);
             if (excludedEntities.contains(neighborId)) {
                 continue;
             }
             
-            double weight = getWeight(entityId, neighborId);
+            double weight = processor.getWeight(entityId, neighborId);
             if (!(weight < minimumWeight)) {
                 final Comparison comparison = new Comparison(cleanCleanER, -1, neighborId);
                 comparison.setUtilityMeasure(weight);
@@ -45,11 +45,7 @@ public class ReciprocalCardinalityNodePruning extends CardinalityNodePruning {
 
     @Override
     protected boolean isValidComparison(int entityId, int neighborId) {
-        if (nearestEntities[neighborId] == null) {
-            return false;
-        }
-
-        if (nearestEntities[neighborId].contains(entityId)) {
+        if (isNearestEntity(neighborId, entityId)) {
             return entityId < neighborId;
         }
 
@@ -45,8 +45,8 @@ public class ReciprocalWeightedNodePruning extends WeightedNodePruning {
     }
 
     @Override
-    protected boolean isValidComparison(int entityId, int neighborId) {
-        double weight = getWeight(entityId, neighborId);
+    protected boolean isValidComparison(EntityProcessor processor, int entityId, int neighborId) {
+        double weight = processor.getWeight(entityId, neighborId);
         boolean inNeighborhood1 = averageWeight[entityId] <= weight;
         boolean inNeighborhood2 = averageWeight[neighborId] <= weight;
         
@@ -19,12 +19,13 @@ import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.utilities.enumerations.WeightingScheme;
 
 import com.esotericsoftware.minlog.Log;
-import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.TIntList;
 
 import java.util.ArrayList;
 import java.util.List;
 import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
+import org.scify.jedai.utilities.ParallelProcessing;
 
 /**
  *
@@ -70,66 +71,26 @@ public class WeightedEdgePruning extends AbstractMetablocking {
         return gridWScheme.getNumberOfConfigurations();
     }
 
-    protected void processArcsEntity(int entityId) {
-        validEntities.clear();
-        final int[] associatedBlocks = entityIndex.getEntityBlocks(entityId, 0);
-        if (associatedBlocks.length == 0) {
-            return;
-        }
-
-        for (int blockIndex : associatedBlocks) {
-            double blockComparisons = cleanCleanER ? bBlocks[blockIndex].getNoOfComparisons() : uBlocks[blockIndex].getNoOfComparisons();
-            setNormalizedNeighborEntities(blockIndex, entityId);
-            for (TIntIterator tIterator = neighbors.iterator(); tIterator.hasNext();) {
-                int neighborId = tIterator.next();
-                if (flags[neighborId] != entityId) {
-                    counters[neighborId] = 0;
-                    flags[neighborId] = entityId;
-                }
-
-                counters[neighborId] += 1 / blockComparisons;
-                validEntities.add(neighborId);
-            }
-        }
+    @Override
+    protected List<AbstractBlock> pruneEdges() {
+        return pruneEdges(cleanCleanER ? datasetLimit : noOfEntities);
     }
 
-    protected void processEntity(int entityId) {
-        validEntities.clear();
-        final int[] associatedBlocks = entityIndex.getEntityBlocks(entityId, 0);
-        if (associatedBlocks.length == 0) {
-            return;
-        }
-
-        for (int blockIndex : associatedBlocks) {
-            setNormalizedNeighborEntities(blockIndex, entityId);
-            for (TIntIterator tIterator = neighbors.iterator(); tIterator.hasNext();) {
-                int neighborId = tIterator.next();
-                if (flags[neighborId] != entityId) {
-                    counters[neighborId] = 0;
-                    flags[neighborId] = entityId;
-                }
-
-                counters[neighborId]++;
-                validEntities.add(neighborId);
+    protected List<AbstractBlock> pruneEdges(int noOfProcessedEntities) {
+        final List<List<AbstractBlock>> partialBlocks = ParallelProcessing.processPartitions(noOfThreads, noOfProcessedEntities, (partitionId, start, end) -> {
+            final EntityProcessor processor = new EntityProcessor();
+            final List<AbstractBlock> newBlocks = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                processor.processEntity(i);
+                verifyValidEntities(processor, i, newBlocks);
             }
-        }
-    }
+            return newBlocks;
+        });
 
-    @Override
-    protected List<AbstractBlock> pruneEdges() {
-        List<AbstractBlock> newBlocks = new ArrayList<>();
-        int limit = cleanCleanER ? datasetLimit : noOfEntities;
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < limit; i++) {
-                processArcsEntity(i);
-                verifyValidEntities(i, newBlocks);
-            }
-        } else {
-            for (int i = 0; i < limit; i++) {
-                processEntity(i);
-                verifyValidEntities(i, newBlocks);
-            }
-        }
+        final List<AbstractBlock> newBlocks = new ArrayList<>();
+        partialBlocks.forEach((blocks) -> {
+            newBlocks.addAll(blocks);
+        });
         return newBlocks;
     }
 
@@ -153,40 +114,40 @@ public class WeightedEdgePruning extends AbstractMetablocking {
     
     @Override
     protected void setThreshold() {
-        noOfEdges = 0;
-        threshold = 0;
-
         int limit = cleanCleanER ? datasetLimit : noOfEntities;
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < limit; i++) {
-                processArcsEntity(i);
-                updateThreshold(i);
-            }
-        } else {
-            for (int i = 0; i < limit; i++) {
-                processEntity(i);
-                updateThreshold(i);
+        final List<double[]> partialSums = ParallelProcessing.processPartitions(noOfThreads, limit, (partitionId, start, end) -> {
+            final EntityProcessor processor = new EntityProcessor();
+            final double[] sums = new double[2]; // total edge weight, number of edges
+            for (int i = start; i < end; i++) {
+                processor.processEntity(i);
+                sums[1] += processor.validEntities.size();
+                for (int j = 0; j < processor.validEntities.size(); j++) {
+                    sums[0] += processor.getWeight(i, processor.validEntities.get(j));
+                }
             }
-        }
+            return sums;
+        });
 
+        noOfEdges = 0;
+        threshold = 0;
+        for (double[] sums : partialSums) {
+            threshold += sums[0];
+            noOfEdges += sums[1];
+        }
         threshold /= noOfEdges;
 
         Log.info("Edge Pruning Weight Threshold\t:\t" + threshold);
     }
 
-    protected void updateThreshold(int entityId) {
-        noOfEdges += validEntities.size();
-        for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
-            threshold += getWeight(entityId, tIterator.next());
-        }
-    }
-
-    protected void verifyValidEntities(int entityId, List<AbstractBlock> newBlocks) {
+    protected void verifyValidEntities(EntityProcessor processor, int entityId, List<AbstractBlock> newBlocks) {
+        final TIntList retainedNeighbors = processor.retainedNeighbors;
+        final TIntList validEntities = processor.validEntities;
+        
         retainedNeighbors.clear();
         if (!cleanCleanER) {
-            for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
-                int neighborId = tIterator.next();
-                double weight = getWeight(entityId, neighborId);
+            for (int i = 0; i < validEntities.size(); i++) {
+                int neighborId = validEntities.get(i);
+                double weight = processor.getWeight(entityId, neighborId);
                 if (threshold <= weight) {
                     retainedNeighbors.add(neighborId);
                 }
@@ -194,18 +155,18 @@ public class WeightedEdgePruning extends AbstractMetablocking {
             addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
         } else {
             if (entityId < datasetLimit) {
-                for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
-                    int neighborId = tIterator.next();
-                    double weight = getWeight(entityId, neighborId);
+                for (int i = 0; i < validEntities.size(); i++) {
+                    int neighborId = validEntities.get(i);
+                    double weight = processor.getWeight(entityId, neighborId);
                     if (threshold <= weight) {
                         retainedNeighbors.add(neighborId - datasetLimit);
                     }
                 }
                 addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
             } else {
-                for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
-                    int neighborId = tIterator.next();
-                    double weight = getWeight(entityId, neighborId);
+                for (int i = 0; i < validEntities.size(); i++) {
+                    int neighborId = validEntities.get(i);
+                    double weight = processor.getWeight(entityId, neighborId);
                     if (threshold <= weight) {
                         retainedNeighbors.add(neighborId);
                     }
@@ -17,9 +17,10 @@ package org.scify.jedai.blockprocessing.comparisoncleaning;
 
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.utilities.enumerations.WeightingScheme;
-import gnu.trove.iterator.TIntIterator;
+import org.scify.jedai.utilities.ParallelProcessing;
+
+import gnu.trove.list.TIntList;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -53,8 +54,8 @@ public class WeightedNodePruning extends WeightedEdgePruning {
         return "Weighted Node Pruning";
     }
 
-    protected boolean isValidComparison(int entityId, int neighborId) {
-        double weight = getWeight(entityId, neighborId);
+    protected boolean isValidComparison(EntityProcessor processor, int entityId, int neighborId) {
+        double weight = processor.getWeight(entityId, neighborId);
         boolean inNeighborhood1 = averageWeight[entityId] <= weight;
         boolean inNeighborhood2 = averageWeight[neighborId] <= weight;
 
@@ -67,19 +68,7 @@ public class WeightedNodePruning extends WeightedEdgePruning {
 
     @Override
     protected List<AbstractBlock> pruneEdges() {
-        final List<AbstractBlock> newBlocks = new ArrayList<>();
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < noOfEntities; i++) {
-                processArcsEntity(i);
-                verifyValidEntities(i, newBlocks);
-            }
-        } else {
-            for (int i = 0; i < noOfEntities; i++) {
-                processEntity(i);
-                verifyValidEntities(i, newBlocks);
-            }
-        }
-        return newBlocks;
+        return pruneEdges(noOfEntities);
     }
 
     protected void setLimits() {
@@ -90,53 +79,43 @@ public class WeightedNodePruning extends WeightedEdgePruning {
     @Override
     protected void setThreshold() {
         averageWeight = new double[noOfEntities];
-        if (weightingScheme.equals(WeightingScheme.ARCS)) {
-            for (int i = 0; i < noOfEntities; i++) {
-                processArcsEntity(i);
-                setThreshold(i);
-                averageWeight[i] = threshold;
-            }
-        } else {
-            for (int i = 0; i < noOfEntities; i++) {
-                processEntity(i);
-                setThreshold(i);
-                averageWeight[i] = threshold;
+        ParallelProcessing.processPartitions(noOfThreads, noOfEntities, (partitionId, start, end) -> {
+            final EntityProcessor processor = new EntityProcessor();
+            for (int i = start; i < end; i++) {
+                processor.processEntity(i);
+                averageWeight[i] = processor.getTotalWeight(i) / processor.validEntities.size();
             }
-        }
-    }
-
-    protected void setThreshold(int entityId) {
-        threshold = 0;
-        for (TIntIterator iterator = validEntities.iterator(); iterator.hasNext();) {
-            threshold += getWeight(entityId, iterator.next());
-        }
-        threshold /= validEntities.size();
+            return null;
+        });
     }
 
     @Override
-    protected void verifyValidEntities(int entityId, List<AbstractBlock> newBlocks) {
+    protected void verifyValidEntities(EntityProcessor processor, int entityId, List<AbstractBlock> newBlocks) {
+        final TIntList retainedNeighbors = processor.retainedNeighbors;
+        final TIntList validEntities = processor.validEntities;
+
         retainedNeighbors.clear();
         if (!cleanCleanER) {
-            for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
-                int neighborId = tIterator.next();
-                if (isValidComparison(entityId, neighborId)) {
+            for (int i = 0; i < validEntities.size(); i++) {
+                int neighborId = validEntities.get(i);
+                if (isValidComparison(processor, entityId, neighborId)) {
                     retainedNeighbors.add(neighborId);
                 }
             }
             addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
         } else {
             if (entityId < datasetLimit) {
-                for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
-                    int neighborId = tIterator.next();
-                    if (isValidComparison(entityId, neighborId)) {
+                for (int i = 0; i < validEntities.size(); i++) {
+                    int neighborId = validEntities.get(i);
+                    if (isValidComparison(processor, entityId, neighborId)) {
                         retainedNeighbors.add(neighborId - datasetLimit);
                     }
                 }
                 addDecomposedBlock(entityId, retainedNeighbors, newBlocks);
             } else {
-                for (TIntIterator tIterator = validEntities.iterator(); tIterator.hasNext();) {
-                    int neighborId = tIterator.next();
-                    if (isValidComparison(entityId, neighborId)) {
+                for (int i = 0; i < validEntities.size(); i++) {
+                    int neighborId = validEntities.get(i);
+                    if (isValidComparison(processor, entityId, neighborId)) {
                         retainedNeighbors.add(neighborId);
                     }
                 }
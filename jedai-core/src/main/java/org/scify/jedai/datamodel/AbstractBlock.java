@@ -38,6 +38,14 @@ public abstract class AbstractBlock implements Serializable {
         utilityMeasure = -1;
     }
     
+    /**
+     * Passes all comparisons of the block to the consumer, in the same order as
+     * the ComparisonIterator, but without creating a Comparison object for each
+     * of them. It should be preferred whenever the comparisons are processed in
+     * a single pass.
+     */
+    public abstract void forEachComparison(IComparisonConsumer consumer);
+
     public int getBlockIndex() {
         return blockIndex;
     }
@@ -60,16 +68,12 @@ public abstract class AbstractBlock implements Serializable {
     
     public List<Comparison> getComparisons() {
         final List<Comparison> comparisonsList = new ArrayList<>();
-
-        final ComparisonIterator iterator = getComparisonIterator();
-        while (iterator.hasNext()) {
-            Comparison comparison = iterator.next();
-            comparisonsList.add(comparison);
-        }
-        
+        final boolean cleanCleanER = isCleanCleanER();
+        forEachComparison((entityId1, entityId2) -> comparisonsList.add(new Comparison(cleanCleanER, entityId1, entityId2)));
         return comparisonsList;
     }
     
     public abstract double getTotalBlockAssignments();
+    public abstract boolean isCleanCleanER();
     public abstract void setUtilityMeasure();
 }
\ No newline at end of file
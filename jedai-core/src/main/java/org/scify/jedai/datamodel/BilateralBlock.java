@@ -56,6 +56,15 @@ public class BilateralBlock extends AbstractBlock implements Serializable {
         return true;
     }
 
+    @Override
+    public void forEachComparison(IComparisonConsumer consumer) {
+        for (int entityId1 : index1Entities) {
+            for (int entityId2 : index2Entities) {
+                consumer.accept(entityId1, entityId2);
+            }
+        }
+    }
+
     public int[] getIndex1Entities() {
         return index1Entities;
     }
@@ -77,6 +86,11 @@ public class BilateralBlock extends AbstractBlock implements Serializable {
         return hash;
     }
     
+    @Override
+    public boolean isCleanCleanER() {
+        return true;
+    }
+
     @Override
     public void setUtilityMeasure() {
         utilityMeasure = 1.0/Math.max(index1Entities.length, index2Entities.length);
@@ -44,6 +44,13 @@ public class DecomposedBlock extends AbstractBlock {
         blockIndices = null;
     }
     
+    @Override
+    public void forEachComparison(IComparisonConsumer consumer) {
+        for (int i = 0; i < entities1.length; i++) {
+            consumer.accept(entities1[i], entities2[i]);
+        }
+    }
+
     public int[] getBlockIndices() {
         return blockIndices;
     }
@@ -56,6 +63,7 @@ public class DecomposedBlock extends AbstractBlock {
         return entities2;
     }
     
+    @Override
     public boolean isCleanCleanER() {
         return cleanCleanER;
     }
@@ -37,6 +37,15 @@ public class EntityProfile implements Serializable {
         attributes = new HashSet();
     }
 
+    /**
+     * Wraps an existing set of attributes, e.g., a read-only view over the
+     * flat storage of EntityProfileStore.
+     */
+    protected EntityProfile(String url, Set<Attribute> attributeSet) {
+        entityUrl = url;
+        attributes = attributeSet;
+    }
+
     public void addAttribute(String propertyName, String propertyValue) {
         attributes.add(new Attribute(propertyName, propertyValue));
     }
@@ -0,0 +1,259 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.datamodel;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import org.scify.jedai.utilities.Constants;
+
+/**
+ * A columnar store of entity profiles. Attribute names are kept once in a
+ * dictionary, while all entity urls and attribute values are concatenated in
+ * a single UTF-8 buffer that is addressed by offsets. Thus, every attribute
+ * costs two ints and its encoded text, instead of an Attribute object, two
+ * Strings and a HashSet entry.
+ *
+ * The store is a List of EntityProfiles, so it can be passed to every method
+ * that takes profiles as input. Every retrieved profile is a read-only view
+ * whose attributes are decoded on the fly; methods that scan the attributes
+ * of many profiles should rather use getProfileSize, getAttributeNameId and
+ * getAttributeValue.
+ *
+ * @author G.A.P. II
+ */
+public class EntityProfileStore extends AbstractList<EntityProfile> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 4398543627341862305L;
+
+    private final static int INITIAL_CAPACITY = 1024;
+    private final static int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+    private final static int NO_NAME_ID = -1;
+
+    private int noOfAttributes;
+    private int noOfNames;
+    private int noOfProfiles;
+    private int textSize;
+
+    private byte[] text;
+    private int[] attributeNameIds;
+    private int[] firstAttributes; // the first attribute of each profile, plus the end of the last one
+    private int[] textEnds; // the end of every url and attribute value, with each url preceding its attributes
+    private String[] names;
+    private final TObjectIntMap<String> namesDictionary;
+
+    public EntityProfileStore() {
+        noOfAttributes = 0;
+        noOfNames = 0;
+        noOfProfiles = 0;
+        textSize = 0;
+
+        text = new byte[16 * INITIAL_CAPACITY];
+        attributeNameIds = new int[INITIAL_CAPACITY];
+        firstAttributes = new int[INITIAL_CAPACITY + 1];
+        textEnds = new int[2 * INITIAL_CAPACITY];
+        names = new String[16];
+        namesDictionary = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, NO_NAME_ID);
+    }
+
+    public EntityProfileStore(Collection<EntityProfile> profiles) {
+        this();
+        for (EntityProfile profile : profiles) {
+            add(profile);
+        }
+        trimToSize();
+    }
+
+    /**
+     * Copies the given profile into the store.
+     */
+    @Override
+    public boolean add(EntityProfile profile) {
+        addProfile(profile.getEntityUrl());
+        for (Attribute attribute : profile.getAttributes()) {
+            addAttribute(attribute.getName(), attribute.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Adds an attribute to the last profile of the store. Unlike EntityProfile,
+     * identical name-value pairs are not merged.
+     */
+    public void addAttribute(String name, String value) {
+        if (noOfProfiles == 0) {
+            throw new IllegalStateException("No profile has been added to the store!");
+        }
+
+        int nameId = namesDictionary.get(name);
+        if (nameId == NO_NAME_ID) {
+            nameId = noOfNames++;
+            if (names.length == nameId) {
+                names = Arrays.copyOf(names, getNewCapacity(nameId));
+            }
+            names[nameId] = name;
+            namesDictionary.put(name, nameId);
+        }
+
+        if (attributeNameIds.length == noOfAttributes) {
+            attributeNameIds = Arrays.copyOf(attributeNameIds, getNewCapacity(noOfAttributes));
+        }
+        attributeNameIds[noOfAttributes++] = nameId;
+        firstAttributes[noOfProfiles] = noOfAttributes;
+        appendText(value);
+    }
+
+    /**
+     * Starts a new profile; its attributes are added through addAttribute.
+     */
+    public void addProfile(String entityUrl) {
+        if (firstAttributes.length == noOfProfiles + 1) {
+            firstAttributes = Arrays.copyOf(firstAttributes, getNewCapacity(noOfProfiles) + 1);
+        }
+        firstAttributes[noOfProfiles] = noOfAttributes;
+        firstAttributes[++noOfProfiles] = noOfAttributes;
+        appendText(entityUrl);
+    }
+
+    private void appendText(String value) {
+        final byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        if (MAX_BUFFER_SIZE - textSize < bytes.length) {
+            throw new IllegalStateException("The text of the entity profiles exceeds the capacity of the store!");
+        }
+        if (text.length < textSize + bytes.length) {
+            long newLength = Math.max(2L * text.length, textSize + bytes.length);
+            text = Arrays.copyOf(text, (int) Math.min(newLength, MAX_BUFFER_SIZE));
+        }
+        System.arraycopy(bytes, 0, text, textSize, bytes.length);
+        textSize += bytes.length;
+
+        final int textId = noOfAttributes + noOfProfiles - 1;
+        if (textEnds.length == textId) {
+            textEnds = Arrays.copyOf(textEnds, getNewCapacity(textId));
+        }
+        textEnds[textId] = textSize;
+    }
+
+    private String decodeText(int textId) {
+        final int start = textId == 0 ? 0 : textEnds[textId - 1];
+        return new String(text, start, textEnds[textId] - start, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public EntityProfile get(int profileId) {
+        if (profileId < 0 || noOfProfiles <= profileId) {
+            throw new IndexOutOfBoundsException("Profile id : " + profileId + ", size : " + noOfProfiles);
+        }
+        return new EntityProfile(getEntityUrl(profileId), new AttributesView(profileId));
+    }
+
+    public String getAttributeName(int nameId) {
+        return names[nameId];
+    }
+
+    /**
+     * Returns the dictionary id of the name of the index-th attribute of the
+     * given profile.
+     */
+    public int getAttributeNameId(int profileId, int index) {
+        return attributeNameIds[firstAttributes[profileId] + index];
+    }
+
+    public String getAttributeValue(int profileId, int index) {
+        final int attributeId = firstAttributes[profileId] + index;
+        return decodeText(attributeId + profileId + 1);
+    }
+
+    public String getEntityUrl(int profileId) {
+        return decodeText(firstAttributes[profileId] + profileId);
+    }
+
+    private int getNewCapacity(int currentSize) {
+        return Math.max(INITIAL_CAPACITY, 2 * currentSize);
+    }
+
+    public int getNoOfAttributeNames() {
+        return noOfNames;
+    }
+
+    public int getProfileSize(int profileId) {
+        return firstAttributes[profileId + 1] - firstAttributes[profileId];
+    }
+
+    @Override
+    public int size() {
+        return noOfProfiles;
+    }
+
+    /**
+     * Releases the spare capacity of the internal arrays; to be called once
+     * all profiles have been added.
+     */
+    public void trimToSize() {
+        text = Arrays.copyOf(text, textSize);
+        attributeNameIds = Arrays.copyOf(attributeNameIds, noOfAttributes);
+        firstAttributes = Arrays.copyOf(firstAttributes, noOfProfiles + 1);
+        textEnds = Arrays.copyOf(textEnds, noOfAttributes + noOfProfiles);
+        names = Arrays.copyOf(names, noOfNames);
+    }
+
+    private class AttributesView extends AbstractSet<Attribute> {
+
+        private final int profileId;
+
+        AttributesView(int id) {
+            profileId = id;
+        }
+
+        @Override
+        public Iterator<Attribute> iterator() {
+            return new Iterator<Attribute>() {
+
+                private int index = 0;
+                private final int size = getProfileSize(profileId);
+
+                @Override
+                public boolean hasNext() {
+                    return index < size;
+                }
+
+                @Override
+                public Attribute next() {
+                    if (size <= index) {
+                        throw new NoSuchElementException();
+                    }
+                    final Attribute attribute = new Attribute(names[getAttributeNameId(profileId, index)], getAttributeValue(profileId, index));
+                    index++;
+                    return attribute;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return getProfileSize(profileId);
+        }
+    }
+}
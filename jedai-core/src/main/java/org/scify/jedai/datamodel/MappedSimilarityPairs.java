@@ -0,0 +1,333 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.datamodel;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Similarity pairs that are stored in a file, which is memory-mapped in
+ * segments of fixed size, one record per comparison: two int entity ids and
+ * a double or a float similarity (16 or 12 bytes). The records live outside
+ * the Java heap, in the page cache, so the number of comparisons is bounded
+ * only by the available disk space. The records are preceded by a header
+ * with the type of the pairs and their number, which is written by close();
+ * a closed file can be reopened for reading through open(File). When
+ * serialized, the pairs are copied into an in-memory SimilarityPairs.
+ *
+ * @author G.A.P. II
+ */
+public class MappedSimilarityPairs extends SimilarityPairs {
+
+    private final static int HEADER_SIZE = 24;
+    private final static int MAGIC_NUMBER = 0x4A534D50;
+    private final static int CLEAN_CLEAN_ER_FLAG = 1;
+    private final static int FLOAT_SIMILARITIES_FLAG = 2;
+    private final static long SEGMENT_SIZE = 1L << 28;
+
+    private final boolean readOnly;
+    private final boolean temporaryFile;
+    private final int pairsPerSegment;
+    private final int recordSize;
+    private final File mappedFile;
+    private transient FileChannel channel;
+    private transient List<MappedByteBuffer> segments;
+
+    public MappedSimilarityPairs(boolean ccer) {
+        this(ccer, false);
+    }
+
+    public MappedSimilarityPairs(boolean ccer, boolean storeFloats) {
+        this(ccer, createTemporaryFile(), true, storeFloats);
+    }
+
+    /**
+     * Stores the pairs in the given file, which should be new or empty; the
+     * file is kept after close(), so that it can be reopened.
+     */
+    public MappedSimilarityPairs(boolean ccer, File file) {
+        this(ccer, file, false, false);
+    }
+
+    public MappedSimilarityPairs(boolean ccer, File file, boolean storeFloats) {
+        this(ccer, file, false, storeFloats);
+    }
+
+    private MappedSimilarityPairs(boolean ccer, File file, boolean tempFile, boolean storeFloats) {
+        super(ccer, 0, storeFloats);
+        if (!tempFile && 0 < file.length()) {
+            Log.error("The mapped file of similarity pairs is not empty : " + file.getAbsolutePath());
+            throw new IllegalArgumentException("Existing pairs files should be opened with MappedSimilarityPairs.open");
+        }
+
+        mappedFile = file;
+        readOnly = false;
+        temporaryFile = tempFile;
+        recordSize = storeFloats ? 12 : 16;
+        pairsPerSegment = (int) (SEGMENT_SIZE / recordSize);
+        segments = new ArrayList<>();
+        try {
+            channel = new RandomAccessFile(mappedFile, "rw").getChannel();
+            writeHeader();
+        } catch (IOException ex) {
+            Log.error("Error in creating the mapped file of similarity pairs", ex);
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private MappedSimilarityPairs(File file, int flags, int maxId1, int maxId2, long pairs) throws IOException {
+        super((flags & CLEAN_CLEAN_ER_FLAG) != 0, 0, (flags & FLOAT_SIMILARITIES_FLAG) != 0);
+        mappedFile = file;
+        readOnly = true;
+        temporaryFile = false;
+        recordSize = hasFloatSimilarities() ? 12 : 16;
+        pairsPerSegment = (int) (SEGMENT_SIZE / recordSize);
+        maxEntityId1 = maxId1;
+        maxEntityId2 = maxId2;
+        noOfPairs = pairs;
+
+        channel = new RandomAccessFile(mappedFile, "r").getChannel();
+        if (channel.size() < HEADER_SIZE + noOfPairs * recordSize) {
+            channel.close();
+            Log.error("The mapped file of similarity pairs is truncated : " + file.getAbsolutePath());
+            throw new IllegalArgumentException("Truncated file of similarity pairs");
+        }
+
+        segments = new ArrayList<>();
+        final long segmentBytes = (long) pairsPerSegment * recordSize;
+        for (long mappedPairs = 0; mappedPairs < noOfPairs; mappedPairs += pairsPerSegment) {
+            final long pairsInSegment = Math.min(pairsPerSegment, noOfPairs - mappedPairs);
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + segments.size() * segmentBytes, pairsInSegment * recordSize));
+        }
+    }
+
+    @Override
+    public void addComparison(int entityId1, int entityId2, double similarity) {
+        if (readOnly) {
+            Log.error("Similarity pairs cannot be added to an opened file : " + mappedFile.getAbsolutePath());
+            throw new UnsupportedOperationException("Read-only similarity pairs");
+        }
+
+        updateMaxEntityIds(entityId1, entityId2);
+        final int segmentId = (int) (noOfPairs / pairsPerSegment);
+        if (segmentId == segments.size()) {
+            mapSegment(segmentId);
+        }
+
+        final MappedByteBuffer segment = segments.get(segmentId);
+        final int position = getPosition(noOfPairs);
+        segment.putInt(position, entityId1);
+        segment.putInt(position + 4, entityId2);
+        if (hasFloatSimilarities()) {
+            segment.putFloat(position + 8, (float) similarity);
+        } else {
+            segment.putDouble(position + 8, similarity);
+        }
+        noOfPairs++;
+    }
+
+    /**
+     * Releases the mapped file, deleting it, if it is a temporary one, or
+     * writing its header and truncating it to the actual records, otherwise.
+     * The pairs cannot be accessed afterwards.
+     */
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            segments.clear();
+            if (!readOnly) {
+                writeHeader();
+                channel.truncate(HEADER_SIZE + noOfPairs * recordSize);
+            }
+            channel.close();
+            channel = null;
+            if (temporaryFile && !mappedFile.delete()) {
+                Log.warn("Mapped file could not be deleted : " + mappedFile.getAbsolutePath());
+            }
+        } catch (IOException ex) {
+            Log.error("Error in closing the mapped file of similarity pairs", ex);
+        }
+    }
+
+    private static File createTemporaryFile() {
+        try {
+            final File file = File.createTempFile("jedai-similarity-pairs", ".bin");
+            file.deleteOnExit();
+            return file;
+        } catch (IOException ex) {
+            Log.error("Error in creating a temporary mapped file", ex);
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Passes all pairs to the consumer, scanning the segments sequentially.
+     */
+    @Override
+    public void forEachPair(ISimilarityPairConsumer consumer) {
+        final boolean floatSims = hasFloatSimilarities();
+        long remainingPairs = noOfPairs;
+        for (MappedByteBuffer segment : segments) {
+            final int segmentPairs = (int) Math.min(remainingPairs, pairsPerSegment);
+            for (int i = 0; i < segmentPairs; i++) {
+                final int position = i * recordSize;
+                final double similarity = floatSims ? segment.getFloat(position + 8) : segment.getDouble(position + 8);
+                consumer.accept(segment.getInt(position), segment.getInt(position + 4), similarity);
+            }
+            remainingPairs -= segmentPairs;
+        }
+    }
+
+    @Override
+    public int getEntityId1(long index) {
+        return getSegment(index).getInt(getPosition(index));
+    }
+
+    @Override
+    public int getEntityId2(long index) {
+        return getSegment(index).getInt(getPosition(index) + 4);
+    }
+
+    /**
+     * Returns a copy of the first entity ids in a single heap array, reading
+     * all records of the file. It works only for up to MAX_COMPARISONS pairs;
+     * forEachPair should be preferred.
+     */
+    @Override
+    public int[] getEntityIds1() {
+        final int[] entityIds = new int[getNoOfArrayElements()];
+        for (int i = 0; i < entityIds.length; i++) {
+            entityIds[i] = getEntityId1(i);
+        }
+        return entityIds;
+    }
+
+    @Override
+    public int[] getEntityIds2() {
+        final int[] entityIds = new int[getNoOfArrayElements()];
+        for (int i = 0; i < entityIds.length; i++) {
+            entityIds[i] = getEntityId2(i);
+        }
+        return entityIds;
+    }
+
+    public File getMappedFile() {
+        return mappedFile;
+    }
+
+    private int getPosition(long index) {
+        return (int) (index % pairsPerSegment) * recordSize;
+    }
+
+    private MappedByteBuffer getSegment(long index) {
+        return segments.get((int) (index / pairsPerSegment));
+    }
+
+    @Override
+    public double getSimilarity(long index) {
+        final MappedByteBuffer segment = getSegment(index);
+        final int position = getPosition(index) + 8;
+        return hasFloatSimilarities() ? segment.getFloat(position) : segment.getDouble(position);
+    }
+
+    @Override
+    public double[] getSimilarities() {
+        final double[] similarities = new double[getNoOfArrayElements()];
+        for (int i = 0; i < similarities.length; i++) {
+            similarities[i] = getSimilarity(i);
+        }
+        return similarities;
+    }
+
+    private void mapSegment(int segmentId) {
+        if (channel == null) {
+            throw new IllegalStateException("The mapped file of similarity pairs has been closed");
+        }
+
+        try {
+            final long segmentBytes = (long) pairsPerSegment * recordSize;
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + segmentId * segmentBytes, segmentBytes));
+        } catch (IOException ex) {
+            Log.error("Error in mapping a segment of the similarity pairs file", ex);
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Maps for reading the pairs of a file that was written and closed by a
+     * MappedSimilarityPairs. The file is left intact by close().
+     */
+    public static MappedSimilarityPairs open(File file) {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (file.length() < HEADER_SIZE || input.readInt() != MAGIC_NUMBER) {
+                Log.error("Not a file of similarity pairs : " + file.getAbsolutePath());
+                throw new IllegalArgumentException("Invalid file of similarity pairs");
+            }
+
+            final int flags = input.readInt();
+            final int maxId1 = input.readInt();
+            final int maxId2 = input.readInt();
+            final long pairs = input.readLong();
+            return new MappedSimilarityPairs(file, flags, maxId1, maxId2, pairs);
+        } catch (IOException ex) {
+            Log.error("Error in opening the mapped file of similarity pairs", ex);
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        int flags = isCleanCleanER() ? CLEAN_CLEAN_ER_FLAG : 0;
+        if (hasFloatSimilarities()) {
+            flags |= FLOAT_SIMILARITIES_FLAG;
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC_NUMBER).putInt(flags).putInt(maxEntityId1).putInt(maxEntityId2).putLong(noOfPairs);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    // the mapped segments cannot be serialized, so the pairs are copied into memory
+    private Object writeReplace() throws ObjectStreamException {
+        if (channel == null) {
+            throw new NotSerializableException("Closed memory-mapped similarity pairs");
+        }
+
+        final SimilarityPairs inMemoryPairs = new SimilarityPairs(isCleanCleanER(), noOfPairs, hasFloatSimilarities());
+        forEachPair(inMemoryPairs);
+        return inMemoryPairs;
+    }
+}
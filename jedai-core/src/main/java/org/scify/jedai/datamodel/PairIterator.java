@@ -25,13 +25,13 @@ import java.util.Iterator;
 
 public class PairIterator implements Iterator<Comparison> {
 
-    private int currentIndex;
-    private final int totalComparisons;
+    private long currentIndex;
+    private final long totalComparisons;
     private final SimilarityPairs similarityPairs;
     
     PairIterator(SimilarityPairs sPairs) {
         similarityPairs = sPairs;
-        totalComparisons = similarityPairs.getEntityIds1().length;
+        totalComparisons = similarityPairs.getNoOfPairs();
     }
     
     @Override
@@ -42,9 +42,9 @@ public class PairIterator implements Iterator<Comparison> {
     @Override
     public Comparison next() {
         final Comparison comparison = new Comparison(true, 
-                similarityPairs.getEntityIds1()[currentIndex], 
-                similarityPairs.getEntityIds2()[currentIndex]);
-        comparison.setUtilityMeasure(similarityPairs.getSimilarities()[currentIndex]);
+                similarityPairs.getEntityId1(currentIndex), 
+                similarityPairs.getEntityId2(currentIndex));
+        comparison.setUtilityMeasure(similarityPairs.getSimilarity(currentIndex));
         currentIndex++;
         return comparison;
     }
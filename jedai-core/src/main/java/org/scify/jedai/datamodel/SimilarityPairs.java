@@ -16,73 +16,314 @@
 package org.scify.jedai.datamodel;
 
 import com.esotericsoftware.minlog.Log;
+import java.io.Closeable;
 import java.io.Serializable;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 /**
+ * Similarity pairs stored in memory in chunks of parallel primitive arrays,
+ * which are allocated on demand and addressed by a long index. Thus, the
+ * number of pairs is not bounded by the maximum size of a Java array and no
+ * memory is reserved for comparisons that are never executed. Optionally, the
+ * similarities are stored as floats, halving their memory footprint. Every
+ * instance should be closed after use, as getSimilarityPairs may return one
+ * that is backed by a file.
  *
  * @author G.A.P. II
  */
-public class SimilarityPairs implements Serializable {
+public class SimilarityPairs implements Closeable, ISimilarityPairConsumer, Serializable {
 
-    private final static int MAX_COMPARISONS = Integer.MAX_VALUE - 2;
+    protected final static int MAX_COMPARISONS = Integer.MAX_VALUE - 2;
 
+    protected final static int CHUNK_BITS = 20;
+    protected final static int CHUNK_SIZE = 1 << CHUNK_BITS;
+    protected final static int CHUNK_MASK = CHUNK_SIZE - 1;
+    protected final static int MIN_CAPACITY = 1 << 10;
+
+    // the default maximum number of bytes of pairs that are stored in memory by getSimilarityPairs
+    private final static long MAX_IN_MEMORY_BYTES = Long.getLong("jedai.maxInMemoryPairBytes", Runtime.getRuntime().maxMemory() / 2);
+
+    private final boolean floatSimilarities;
     private final boolean isCleanCleanER;
-    private int currentIndex;
-    private final double[] similarities;
-    private final int[] entityIds1;
-    private final int[] entityIds2;
+    private final int initialCapacity;
+    private int noOfChunks;
+    protected int maxEntityId1;
+    protected int maxEntityId2;
+    protected long noOfPairs;
+    private double[][] similarities;
+    private float[][] floatSims;
+    private int[][] entityIds1;
+    private int[][] entityIds2;
 
     public SimilarityPairs(boolean ccer, List<AbstractBlock> blocks) {
+        this(ccer, (long) countComparisons(blocks), false);
+    }
+
+    public SimilarityPairs(boolean ccer, long expectedPairs, boolean storeFloats) {
         isCleanCleanER = ccer;
-        double totalComparisons = countComparisons(blocks);
-        entityIds1 = new int[(int) totalComparisons];
-        entityIds2 = new int[(int) totalComparisons];
-        similarities = new double[(int) totalComparisons];
+        floatSimilarities = storeFloats;
+        initialCapacity = (int) Math.max(MIN_CAPACITY, Math.min(expectedPairs, CHUNK_SIZE));
+        maxEntityId1 = -1;
+        maxEntityId2 = -1;
+        noOfChunks = 0;
+        noOfPairs = 0;
+        entityIds1 = new int[1][];
+        entityIds2 = new int[1][];
+        if (floatSimilarities) {
+            floatSims = new float[1][];
+        } else {
+            similarities = new double[1][];
+        }
+    }
+
+    @Override
+    public void accept(int entityId1, int entityId2, double similarity) {
+        addComparison(entityId1, entityId2, similarity);
     }
 
     public void addComparison(Comparison comparison) {
-        entityIds1[currentIndex] = comparison.getEntityId1();
-        entityIds2[currentIndex] = comparison.getEntityId2();
-        similarities[currentIndex++] = comparison.getUtilityMeasure();
+        addComparison(comparison.getEntityId1(), comparison.getEntityId2(), comparison.getUtilityMeasure());
+    }
+
+    public void addComparison(int entityId1, int entityId2, double similarity) {
+        updateMaxEntityIds(entityId1, entityId2);
+        final int chunk = (int) (noOfPairs >>> CHUNK_BITS);
+        final int offset = (int) (noOfPairs & CHUNK_MASK);
+        if (chunk == noOfChunks || entityIds1[chunk].length == offset) {
+            ensureCapacity(chunk);
+        }
+
+        entityIds1[chunk][offset] = entityId1;
+        entityIds2[chunk][offset] = entityId2;
+        if (floatSimilarities) {
+            floatSims[chunk][offset] = (float) similarity;
+        } else {
+            similarities[chunk][offset] = similarity;
+        }
+        noOfPairs++;
+    }
+
+    /**
+     * Releases the storage of the pairs; in-memory pairs need no release.
+     */
+    @Override
+    public void close() {
     }
 
-    private double countComparisons(List<AbstractBlock> blocks) {
+    private static double countComparisons(List<AbstractBlock> blocks) {
         double comparisons = 0;
         for (AbstractBlock block : blocks) {
             comparisons += block.getNoOfComparisons();
         }
+        return comparisons;
+    }
 
-        if (MAX_COMPARISONS < comparisons) {
-            Log.error("Very high number of comparisons to be executed! "
-                    + "Maximum allowed number is : " + MAX_COMPARISONS);
-            System.exit(-1);
+    /**
+     * Allocates the given chunk, or doubles its capacity if it is the first one
+     * and it was sized after a small number of expected pairs. All other chunks
+     * are created with the maximum size.
+     */
+    private void ensureCapacity(int chunk) {
+        if (chunk < noOfChunks) {
+            final int newSize = Math.min(CHUNK_SIZE, 2 * entityIds1[chunk].length);
+            entityIds1[chunk] = Arrays.copyOf(entityIds1[chunk], newSize);
+            entityIds2[chunk] = Arrays.copyOf(entityIds2[chunk], newSize);
+            if (floatSimilarities) {
+                floatSims[chunk] = Arrays.copyOf(floatSims[chunk], newSize);
+            } else {
+                similarities[chunk] = Arrays.copyOf(similarities[chunk], newSize);
+            }
+            return;
         }
-        return comparisons;
+
+        if (noOfChunks == entityIds1.length) {
+            entityIds1 = Arrays.copyOf(entityIds1, 2 * noOfChunks);
+            entityIds2 = Arrays.copyOf(entityIds2, 2 * noOfChunks);
+            if (floatSimilarities) {
+                floatSims = Arrays.copyOf(floatSims, 2 * noOfChunks);
+            } else {
+                similarities = Arrays.copyOf(similarities, 2 * noOfChunks);
+            }
+        }
+
+        final int size = noOfChunks == 0 ? initialCapacity : CHUNK_SIZE;
+        entityIds1[noOfChunks] = new int[size];
+        entityIds2[noOfChunks] = new int[size];
+        if (floatSimilarities) {
+            floatSims[noOfChunks] = new float[size];
+        } else {
+            similarities[noOfChunks] = new double[size];
+        }
+        noOfChunks++;
+    }
+
+    /**
+     * Passes all pairs to the consumer in insertion order, without creating
+     * a Comparison object for each of them.
+     */
+    public void forEachPair(ISimilarityPairConsumer consumer) {
+        for (int chunk = 0; chunk < noOfChunks; chunk++) {
+            final int[] ids1 = entityIds1[chunk];
+            final int[] ids2 = entityIds2[chunk];
+            final int chunkPairs = (int) Math.min(ids1.length, noOfPairs - ((long) chunk << CHUNK_BITS));
+            if (floatSimilarities) {
+                final float[] sims = floatSims[chunk];
+                for (int i = 0; i < chunkPairs; i++) {
+                    consumer.accept(ids1[i], ids2[i], sims[i]);
+                }
+            } else {
+                final double[] sims = similarities[chunk];
+                for (int i = 0; i < chunkPairs; i++) {
+                    consumer.accept(ids1[i], ids2[i], sims[i]);
+                }
+            }
+        }
+    }
+
+    public int getEntityId1(long index) {
+        return entityIds1[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)];
+    }
+
+    public int getEntityId2(long index) {
+        return entityIds2[(int) (index >>> CHUNK_BITS)][(int) (index & CHUNK_MASK)];
     }
 
+    /**
+     * Returns a copy of the first entity ids in a single array, so changes to
+     * it do not affect the pairs. The copy is created on every call and it
+     * works only for up to MAX_COMPARISONS pairs, throwing an
+     * IllegalStateException for more; forEachPair or getEntityId1(long)
+     * should be preferred, as they neither copy nor restrict the pairs.
+     */
     public int[] getEntityIds1() {
-        return entityIds1;
+        return flatten(entityIds1);
     }
 
+    /**
+     * Returns a copy of the second entity ids in a single array, with the
+     * same cost and limitations as getEntityIds1(); forEachPair or
+     * getEntityId2(long) should be preferred.
+     */
     public int[] getEntityIds2() {
-        return entityIds2;
+        return flatten(entityIds2);
     }
 
+    public int getMaxEntityId1() {
+        return maxEntityId1;
+    }
+
+    public int getMaxEntityId2() {
+        return maxEntityId2;
+    }
+
+    /**
+     * Returns the number of pairs, truncated to MAX_COMPARISONS; use
+     * getNoOfPairs for the exact number.
+     */
     public int getNoOfComparisons() {
-        return currentIndex;
+        return (int) Math.min(noOfPairs, MAX_COMPARISONS);
     }
 
-    public PairIterator getPairIterator() {
+    public long getNoOfPairs() {
+        return noOfPairs;
+    }
+
+    public Iterator<Comparison> getPairIterator() {
         return new PairIterator(this);
     }
 
+    public double getSimilarity(long index) {
+        final int chunk = (int) (index >>> CHUNK_BITS);
+        final int offset = (int) (index & CHUNK_MASK);
+        return floatSimilarities ? floatSims[chunk][offset] : similarities[chunk][offset];
+    }
+
+    public static SimilarityPairs getSimilarityPairs(boolean ccer, List<AbstractBlock> blocks) {
+        return getSimilarityPairs(ccer, blocks, false);
+    }
+
+    /**
+     * Returns an in-memory collection of similarity pairs if the comparisons
+     * of the given blocks fit in the default memory limit, or a collection
+     * that stores them in a temporary memory-mapped file, otherwise. The
+     * caller owns the returned collection and should close it after use, so
+     * that the temporary file is deleted.
+     */
+    public static SimilarityPairs getSimilarityPairs(boolean ccer, List<AbstractBlock> blocks, boolean floatSims) {
+        return getSimilarityPairs(ccer, blocks, floatSims, MAX_IN_MEMORY_BYTES);
+    }
+
+    /**
+     * Returns an in-memory collection of similarity pairs if the comparisons
+     * of the given blocks fit in the given number of bytes, or a collection
+     * that stores them in a temporary memory-mapped file, otherwise. By
+     * default, the limit is half the maximum heap size, unless it is set
+     * through the system property jedai.maxInMemoryPairBytes.
+     */
+    public static SimilarityPairs getSimilarityPairs(boolean ccer, List<AbstractBlock> blocks, boolean floatSims, long maxInMemoryBytes) {
+        final double totalComparisons = countComparisons(blocks);
+        final double requiredMemory = totalComparisons * (floatSims ? 12 : 16);
+        if (maxInMemoryBytes < requiredMemory) {
+            Log.warn("Very high number of comparisons to be executed : " + totalComparisons
+                    + "! Similarity pairs will be stored in a memory-mapped file.");
+            return new MappedSimilarityPairs(ccer, floatSims);
+        }
+        return new SimilarityPairs(ccer, (long) totalComparisons, floatSims);
+    }
+
+    /**
+     * Returns a copy of the similarities in a single array, with the same
+     * cost and limitations as getEntityIds1(); forEachPair or
+     * getSimilarity(long) should be preferred.
+     */
     public double[] getSimilarities() {
-        return similarities;
+        final double[] allSimilarities = new double[getNoOfArrayElements()];
+        int index = 0;
+        for (int chunk = 0; chunk < noOfChunks && index < allSimilarities.length; chunk++) {
+            final int length = Math.min(entityIds1[chunk].length, allSimilarities.length - index);
+            for (int i = 0; i < length; i++) {
+                allSimilarities[index++] = floatSimilarities ? floatSims[chunk][i] : similarities[chunk][i];
+            }
+        }
+        return allSimilarities;
+    }
+
+    public boolean hasFloatSimilarities() {
+        return floatSimilarities;
     }
 
     public boolean isCleanCleanER() {
         return isCleanCleanER;
     }
+
+    private int[] flatten(int[][] chunks) {
+        final int[] array = new int[getNoOfArrayElements()];
+        int index = 0;
+        for (int chunk = 0; chunk < noOfChunks && index < array.length; chunk++) {
+            final int length = Math.min(chunks[chunk].length, array.length - index);
+            System.arraycopy(chunks[chunk], 0, array, index, length);
+            index += length;
+        }
+        return array;
+    }
+
+    protected int getNoOfArrayElements() {
+        if (MAX_COMPARISONS < noOfPairs) {
+            Log.error("Too many similarity pairs to be returned in a single array : " + noOfPairs);
+            throw new IllegalStateException("Too many similarity pairs for a single array");
+        }
+        return (int) noOfPairs;
+    }
+
+    protected void updateMaxEntityIds(int entityId1, int entityId2) {
+        if (maxEntityId1 < entityId1) {
+            maxEntityId1 = entityId1;
+        }
+        if (maxEntityId2 < entityId2) {
+            maxEntityId2 = entityId2;
+        }
+    }
 }
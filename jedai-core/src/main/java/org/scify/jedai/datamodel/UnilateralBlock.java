@@ -51,6 +51,16 @@ public class UnilateralBlock extends AbstractBlock implements Serializable {
         return true;
     }
 
+    @Override
+    public void forEachComparison(IComparisonConsumer consumer) {
+        for (int i = 0; i < entities.length; i++) {
+            final int entityId1 = entities[i];
+            for (int j = i + 1; j < entities.length; j++) {
+                consumer.accept(entityId1, entities[j]);
+            }
+        }
+    }
+
     public int[] getEntities() {
         return entities;
     }
@@ -67,6 +77,11 @@ public class UnilateralBlock extends AbstractBlock implements Serializable {
         return hash;
     }
     
+    @Override
+    public boolean isCleanCleanER() {
+        return false;
+    }
+
     @Override
     public void setUtilityMeasure() {
         utilityMeasure = 1.0/entities.length;
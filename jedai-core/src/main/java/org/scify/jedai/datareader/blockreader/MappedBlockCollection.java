@@ -0,0 +1,245 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.datareader.blockreader;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.RandomAccess;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.datawriter.BlockCollectionWriter;
+import org.scify.jedai.utilities.comparators.IncBlockCardinalityComparator;
+
+/**
+ * A read-only list of blocks backed by a memory-mapped file in the format of
+ * BlockCollectionWriter. Only the block offsets and sizes are loaded on the
+ * heap; every block is decoded from the mapped file whenever it is retrieved,
+ * so the list can be passed directly to block cleaning and comparison
+ * cleaning methods without deserializing the whole collection.
+ *
+ * The list returns values, not stable instances: every call of get creates a
+ * new block, so any change to a retrieved block, e.g., through setBlockIndex
+ * or setUtilityMeasure, is not visible in later calls. Blocks are identified
+ * by their position in the list.
+ *
+ * Sorting is supported by reordering a permutation of the stored blocks, as
+ * e.g., BlockFiltering and ComparisonsBasedBlockPurging sort their input.
+ * Note that EntityIndex keeps a reference to every block, so the meta-blocking
+ * methods still hold the entire collection on the heap while they run.
+ *
+ * @author G.A.P. II
+ */
+public class MappedBlockCollection extends AbstractList<AbstractBlock> implements Closeable, RandomAccess {
+
+    private final static int SEGMENT_BITS = 30;
+    private final static long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final boolean bilateral;
+    private final int noOfBlocks;
+    private int[] order;
+    private final int[] sizes1;
+    private final int[] sizes2;
+    private final long dataStart1;
+    private final long dataStart2;
+    private final long[] offsets1;
+    private final long[] offsets2;
+    private MappedByteBuffer[] segments;
+
+    public MappedBlockCollection(String inputPath) {
+        try (RandomAccessFile raf = new RandomAccessFile(inputPath, "r");
+                FileChannel channel = raf.getChannel()) {
+            final long fileSize = channel.size();
+            final int noOfSegments = (int) ((fileSize + SEGMENT_MASK) >>> SEGMENT_BITS);
+            segments = new MappedByteBuffer[noOfSegments];
+            for (int i = 0; i < noOfSegments; i++) {
+                final long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(1L << SEGMENT_BITS, fileSize - start));
+            }
+        } catch (IOException ex) {
+            Log.error("Error in mapping the block collection file", ex);
+            throw new UncheckedIOException(ex);
+        }
+
+        if (readInt(0) != BlockCollectionWriter.MAGIC_NUMBER
+                || readInt(4) != BlockCollectionWriter.FORMAT_VERSION) {
+            Log.error("The given file is not a block collection of a supported version : " + inputPath);
+            throw new IllegalArgumentException("Invalid block collection file : " + inputPath);
+        }
+
+        bilateral = readByte(8) == BlockCollectionWriter.BILATERAL_BLOCKS;
+        noOfBlocks = readInt(9);
+
+        long position = BlockCollectionWriter.HEADER_SIZE;
+        offsets1 = new long[noOfBlocks + 1];
+        sizes1 = new int[noOfBlocks];
+        position = readSectionIndex(position, offsets1, sizes1);
+        if (bilateral) {
+            offsets2 = new long[noOfBlocks + 1];
+            sizes2 = new int[noOfBlocks];
+            position = readSectionIndex(position, offsets2, sizes2);
+        } else {
+            offsets2 = null;
+            sizes2 = null;
+        }
+
+        dataStart1 = position;
+        dataStart2 = dataStart1 + offsets1[noOfBlocks];
+
+        order = new int[noOfBlocks];
+        for (int i = 0; i < noOfBlocks; i++) {
+            order[i] = i;
+        }
+    }
+
+    /**
+     * Unmaps the file, once the garbage collector reclaims the buffers. The
+     * blocks cannot be retrieved afterwards.
+     */
+    @Override
+    public void close() {
+        segments = null;
+    }
+
+    private int[] decodeEntities(long position, int noOfEntities) {
+        final int[] entityIds = new int[noOfEntities];
+        int previousId = 0;
+        for (int i = 0; i < noOfEntities; i++) {
+            int value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = readByte(position++);
+                value |= (current & 0x7F) << shift;
+                shift += 7;
+            } while (current < 0);
+
+            previousId += (value >>> 1) ^ -(value & 1);
+            entityIds[i] = previousId;
+        }
+        return entityIds;
+    }
+
+    @Override
+    public AbstractBlock get(int index) {
+        if (index < 0 || noOfBlocks <= index) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + noOfBlocks);
+        }
+
+        final int blockId = order[index];
+        final int[] entities1 = decodeEntities(dataStart1 + offsets1[blockId], sizes1[blockId]);
+        if (!bilateral) {
+            return new UnilateralBlock(entities1);
+        }
+
+        final int[] entities2 = decodeEntities(dataStart2 + offsets2[blockId], sizes2[blockId]);
+        return new BilateralBlock(entities1, entities2);
+    }
+
+    /**
+     * Returns the number of comparisons in the block at the given position,
+     * without decoding it.
+     */
+    public double getNoOfComparisons(int index) {
+        final int blockId = order[index];
+        if (bilateral) {
+            return ((double) sizes1[blockId]) * sizes2[blockId];
+        }
+        return ((double) sizes1[blockId]) * (sizes1[blockId] - 1) / 2;
+    }
+
+    public boolean isBilateral() {
+        return bilateral;
+    }
+
+    private byte readByte(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK));
+    }
+
+    private int readInt(long position) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (readByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private long readLong(long position) {
+        return ((long) readInt(position) << 32) | (readInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    private long readSectionIndex(long position, long[] offsets, int[] sizes) {
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = readLong(position);
+            position += 8;
+        }
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = readInt(position);
+            position += 4;
+        }
+        return position;
+    }
+
+    @Override
+    public int size() {
+        return noOfBlocks;
+    }
+
+    /**
+     * Sorts the blocks with the given comparator and keeps only the resulting
+     * permutation of the stored blocks. The sorting is stable, like
+     * Collections.sort. An IncBlockCardinalityComparator is applied to the
+     * block sizes, without decoding any block; any other comparator requires
+     * all blocks to be decoded at once.
+     */
+    @Override
+    public void sort(Comparator<? super AbstractBlock> comparator) {
+        final Integer[] positions = new Integer[noOfBlocks];
+        for (int i = 0; i < noOfBlocks; i++) {
+            positions[i] = i;
+        }
+
+        if (comparator instanceof IncBlockCardinalityComparator) {
+            final double[] comparisons = new double[noOfBlocks];
+            for (int i = 0; i < noOfBlocks; i++) {
+                comparisons[i] = getNoOfComparisons(i);
+            }
+            Arrays.sort(positions, (position1, position2) -> Double.compare(comparisons[position1], comparisons[position2]));
+        } else {
+            final AbstractBlock[] blocks = new AbstractBlock[noOfBlocks];
+            for (int i = 0; i < noOfBlocks; i++) {
+                blocks[i] = get(i);
+            }
+            Arrays.sort(positions, (position1, position2) -> comparator.compare(blocks[position1], blocks[position2]));
+        }
+
+        final int[] newOrder = new int[noOfBlocks];
+        for (int i = 0; i < noOfBlocks; i++) {
+            newOrder[i] = order[positions[i]];
+        }
+        order = newOrder;
+        modCount++;
+    }
+}
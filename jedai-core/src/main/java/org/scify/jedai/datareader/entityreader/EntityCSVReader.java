@@ -35,11 +35,12 @@ import org.apache.jena.atlas.json.JsonObject;
  *
  * @author G.A.P. II
  */
-public class EntityCSVReader extends AbstractEntityReader {
+public class EntityCSVReader extends AbstractEntityReader implements IEntityStreamReader {
 
     private boolean attributeNamesInFirstRow;
     private char separator;
     private int idIndex;
+    private boolean[] excludedColumns;
     private String[] attributeNames;
     private final Set<Integer> attributesToExclude;
 
@@ -52,61 +53,29 @@ public class EntityCSVReader extends AbstractEntityReader {
         attributesToExclude = new HashSet<>();
     }
 
+    @Override
+    public String[] getAttributeNames() {
+        return attributeNames;
+    }
+
     @Override
     public List<EntityProfile> getEntityProfiles() {
         if (!entityProfiles.isEmpty()) {
             return entityProfiles;
         }
 
-        if (inputFilePath == null) {
-            Log.error("Input file path has not been set!");
-            return null;
-        }
-
-        try {
-            //creating reader
-            final CSVReader reader = new CSVReader(new FileReader(inputFilePath), separator);
-
-            //getting first line
-            final String[] firstLine = reader.readNext();
-            int noOfAttributes = firstLine.length;
-            if (noOfAttributes - 1 < idIndex) {
-                Log.error("Id index does not correspond to a valid column index! Counting starts from 0.");
-                return null;
+        final int noOfProfiles = streamEntityProfiles((entityId, entityUrl, attributeIds, attributeValues, noOfAttributes) -> {
+            final EntityProfile newProfile = new EntityProfile(entityUrl);
+            for (int i = 0; i < noOfAttributes; i++) {
+                newProfile.addAttribute(attributeNames[attributeIds[i]], attributeValues[i]);
             }
+            entityProfiles.add(newProfile);
+        });
 
-            //setting attribute names
-            int entityCounter = 0;
-            if (attributeNamesInFirstRow) {
-                attributeNames = Arrays.copyOf(firstLine, noOfAttributes);
-            } else { // no attribute names in csv file
-                attributeNames = new String[noOfAttributes];
-                for (int i = 0; i < noOfAttributes; i++) {
-                    attributeNames[i] = "attribute" + (i + 1);
-                }
-
-                entityCounter++; //first line corresponds to entity
-                readEntity(entityCounter, firstLine);
-            }
-
-            //read entity profiles
-            String[] nextLine;
-            while ((nextLine = reader.readNext()) != null) {
-                entityCounter++;
-
-                if (nextLine.length < attributeNames.length - 1) {
-                    Log.warn("Line with missing attribute names : " + Arrays.toString(nextLine));
-                    continue;
-                }
-
-                readEntity(entityCounter, nextLine);
-            }
-
-            return entityProfiles;
-        } catch (IOException ex) {
-            Log.error("Error in entities reading!", ex);
+        if (noOfProfiles < 0) {
             return null;
         }
+        return entityProfiles;
     }
 
     @Override
@@ -239,25 +208,27 @@ public class EntityCSVReader extends AbstractEntityReader {
         }
     }
 
-    private void readEntity(int index, String[] currentLine) throws IOException {
-        String entityId;
+    private void readEntity(int entityId, int index, String[] currentLine, IEntityProfileConsumer consumer,
+            int[] attributeIds, String[] attributeValues) {
+        String entityUrl;
         if (idIndex < 0) {
-            entityId = "id" + index;
+            entityUrl = "id" + index;
         } else {
-            entityId = currentLine[idIndex];
+            entityUrl = currentLine[idIndex];
         }
 
-        final EntityProfile newProfile = new EntityProfile(entityId);
-        for (int i = 0; i < currentLine.length; i++) {
-            if (attributesToExclude.contains(i)) {
+        int noOfAttributes = 0;
+        final int noOfColumns = Math.min(currentLine.length, attributeNames.length);
+        for (int i = 0; i < noOfColumns; i++) {
+            if (excludedColumns[i]) {
                 continue;
             }
             if (!currentLine[i].isEmpty()) {
-                newProfile.addAttribute(attributeNames[i], currentLine[i]);
-
+                attributeIds[noOfAttributes] = i;
+                attributeValues[noOfAttributes++] = currentLine[i];
             }
         }
-        entityProfiles.add(newProfile);
+        consumer.accept(entityId, entityUrl, attributeIds, attributeValues, noOfAttributes);
     }
 
     public void setAttributesToExclude(int[] attributesIndicesToExclude) {
@@ -278,4 +249,71 @@ public class EntityCSVReader extends AbstractEntityReader {
     public void setSeparator(char separator) {
         this.separator = separator;
     }
+
+    /**
+     * Reads the CSV file line by line and passes every entity to the consumer
+     * without keeping it in memory. The attribute ids correspond to the column
+     * indices and the attribute values are the original strings of the line.
+     */
+    @Override
+    public int streamEntityProfiles(IEntityProfileConsumer consumer) {
+        if (inputFilePath == null) {
+            Log.error("Input file path has not been set!");
+            return -1;
+        }
+
+        //creating reader
+        try (CSVReader reader = new CSVReader(new FileReader(inputFilePath), separator)) {
+            //getting first line
+            final String[] firstLine = reader.readNext();
+            int noOfAttributes = firstLine.length;
+            if (noOfAttributes - 1 < idIndex) {
+                Log.error("Id index does not correspond to a valid column index! Counting starts from 0.");
+                return -1;
+            }
+
+            excludedColumns = new boolean[noOfAttributes];
+            for (int attributeId : attributesToExclude) {
+                if (0 <= attributeId && attributeId < noOfAttributes) {
+                    excludedColumns[attributeId] = true;
+                }
+            }
+
+            final int[] attributeIds = new int[noOfAttributes];
+            final String[] attributeValues = new String[noOfAttributes];
+
+            //setting attribute names
+            int entityCounter = 0;
+            int noOfProfiles = 0;
+            if (attributeNamesInFirstRow) {
+                attributeNames = Arrays.copyOf(firstLine, noOfAttributes);
+            } else { // no attribute names in csv file
+                attributeNames = new String[noOfAttributes];
+                for (int i = 0; i < noOfAttributes; i++) {
+                    attributeNames[i] = "attribute" + (i + 1);
+                }
+
+                entityCounter++; //first line corresponds to entity
+                readEntity(noOfProfiles++, entityCounter, firstLine, consumer, attributeIds, attributeValues);
+            }
+
+            //read entity profiles
+            String[] nextLine;
+            while ((nextLine = reader.readNext()) != null) {
+                entityCounter++;
+
+                if (nextLine.length < attributeNames.length - 1) {
+                    Log.warn("Line with missing attribute names : " + Arrays.toString(nextLine));
+                    continue;
+                }
+
+                readEntity(noOfProfiles++, entityCounter, nextLine, consumer, attributeIds, attributeValues);
+            }
+
+            return noOfProfiles;
+        } catch (IOException ex) {
+            Log.error("Error in entities reading!", ex);
+            return -1;
+        }
+    }
 }
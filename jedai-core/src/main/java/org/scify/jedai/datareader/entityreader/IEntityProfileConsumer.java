@@ -0,0 +1,28 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.datareader.entityreader;
+
+/**
+ * Receives the entity profiles of a streaming reader one at a time. The
+ * attribute names are given as ids to the dictionary of the reader and the
+ * arrays are reused across calls, so they should be copied if retained.
+ *
+ * @author G.A.P. II
+ */
+public interface IEntityProfileConsumer {
+
+    public void accept(int entityId, String entityUrl, int[] attributeIds, String[] attributeValues, int noOfAttributes);
+}
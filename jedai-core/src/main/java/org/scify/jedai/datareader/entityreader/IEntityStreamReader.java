@@ -0,0 +1,38 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.datareader.entityreader;
+
+/**
+ * An entity reader that passes its profiles to a consumer as soon as they are
+ * read, instead of materializing them in a list, so that e.g., block building
+ * can index arbitrarily large inputs with bounded memory.
+ *
+ * @author G.A.P. II
+ */
+public interface IEntityStreamReader {
+
+    /**
+     * Returns the dictionary of attribute names, i.e., the name of every
+     * attribute id passed to the consumers.
+     */
+    public String[] getAttributeNames();
+
+    /**
+     * Passes every entity profile to the consumer, with consecutive entity ids
+     * starting from 0, and returns their number, or -1 in case of error.
+     */
+    public int streamEntityProfiles(IEntityProfileConsumer consumer);
+}
@@ -0,0 +1,149 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.datawriter;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.UnilateralBlock;
+
+/**
+ * Stores a collection of unilateral or bilateral blocks in a compact binary
+ * format, which is loaded lazily through MappedBlockCollection. The file
+ * comprises:
+ * <ol>
+ * <li>a header with the magic number, the format version, the type of blocks
+ * and their number,</li>
+ * <li>for every section (one for D1 and, for bilateral blocks, one for D2),
+ * the byte offsets of the blocks in the section (one more than the number of
+ * blocks) and their number of entities,</li>
+ * <li>the sections with the entity ids of every block, encoded as
+ * variable-length, zig-zag deltas of consecutive ids.</li>
+ * </ol>
+ *
+ * @author G.A.P. II
+ */
+public class BlockCollectionWriter {
+
+    public final static int MAGIC_NUMBER = 0x4A424C4B;
+    public final static int FORMAT_VERSION = 1;
+    public final static byte UNILATERAL_BLOCKS = 0;
+    public final static byte BILATERAL_BLOCKS = 1;
+    public final static int HEADER_SIZE = 13;
+
+    private final List<AbstractBlock> blocks;
+
+    public BlockCollectionWriter(List<AbstractBlock> blocks) {
+        this.blocks = blocks;
+    }
+
+    private static int getEncodedLength(int[] entityIds) {
+        int length = 0;
+        int previousId = 0;
+        for (int entityId : entityIds) {
+            int value = zigZag(entityId - previousId);
+            do {
+                length++;
+                value >>>= 7;
+            } while (value != 0);
+            previousId = entityId;
+        }
+        return length;
+    }
+
+    private int[] getEntities(AbstractBlock block, boolean firstSection) {
+        if (block instanceof UnilateralBlock) {
+            return ((UnilateralBlock) block).getEntities();
+        }
+
+        final BilateralBlock bilBlock = (BilateralBlock) block;
+        return firstSection ? bilBlock.getIndex1Entities() : bilBlock.getIndex2Entities();
+    }
+
+    public void writeBlocks(String outputPath) {
+        if (blocks.isEmpty()) {
+            Log.warn("Empty set of blocks was given as input!");
+        }
+
+        final boolean bilateral = !blocks.isEmpty() && blocks.get(0) instanceof BilateralBlock;
+        final Class<?> blockType = bilateral ? BilateralBlock.class : UnilateralBlock.class;
+        for (AbstractBlock block : blocks) {
+            if (block.getClass() != blockType) {
+                Log.error("Only collections of either unilateral or bilateral blocks can be stored in the binary format!");
+                throw new IllegalArgumentException("Unsupported type of block : " + block.getClass().getSimpleName());
+            }
+        }
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath), 1 << 16))) {
+            output.writeInt(MAGIC_NUMBER);
+            output.writeInt(FORMAT_VERSION);
+            output.writeByte(bilateral ? BILATERAL_BLOCKS : UNILATERAL_BLOCKS);
+            output.writeInt(blocks.size());
+
+            writeSectionIndex(output, true);
+            if (bilateral) {
+                writeSectionIndex(output, false);
+            }
+
+            writeSection(output, true);
+            if (bilateral) {
+                writeSection(output, false);
+            }
+        } catch (IOException ex) {
+            Log.error("Error in writing the block collection", ex);
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeSection(DataOutputStream output, boolean firstSection) throws IOException {
+        for (AbstractBlock block : blocks) {
+            int previousId = 0;
+            for (int entityId : getEntities(block, firstSection)) {
+                int value = zigZag(entityId - previousId);
+                while ((value & ~0x7F) != 0) {
+                    output.writeByte((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                output.writeByte(value);
+                previousId = entityId;
+            }
+        }
+    }
+
+    private void writeSectionIndex(DataOutputStream output, boolean firstSection) throws IOException {
+        long offset = 0;
+        output.writeLong(offset);
+        for (AbstractBlock block : blocks) {
+            offset += getEncodedLength(getEntities(block, firstSection));
+            output.writeLong(offset);
+        }
+
+        for (AbstractBlock block : blocks) {
+            output.writeInt(getEntities(block, firstSection).length);
+        }
+    }
+
+    private static int zigZag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+}
@@ -209,23 +209,19 @@ public class BlocksPerformanceWriter {
         if (isCleanCleanER) {
             final TIntSet entitiesD2 = new TIntHashSet((int) aggregateCardinality);
             for (AbstractBlock block : blocks) {
-                final ComparisonIterator iterator = block.getComparisonIterator();
-                while (iterator.hasNext()) {
-                    Comparison comparison = iterator.next();
-                    entitiesD1.add(comparison.getEntityId1());
-                    entitiesD2.add(comparison.getEntityId2());
-                }
+                block.forEachComparison((entityId1, entityId2) -> {
+                    entitiesD1.add(entityId1);
+                    entitiesD2.add(entityId2);
+                });
             }
             noOfD1Entities = entitiesD1.size();
             noOfD2Entities = entitiesD2.size();
         } else {
             for (AbstractBlock block : blocks) {
-                final ComparisonIterator iterator = block.getComparisonIterator();
-                while (iterator.hasNext()) {
-                    Comparison comparison = iterator.next();
-                    entitiesD1.add(comparison.getEntityId1());
-                    entitiesD1.add(comparison.getEntityId2());
-                }
+                block.forEachComparison((entityId1, entityId2) -> {
+                    entitiesD1.add(entityId1);
+                    entitiesD1.add(entityId2);
+                });
             }
             noOfD1Entities = entitiesD1.size();
         }
@@ -237,11 +233,7 @@ public class BlocksPerformanceWriter {
 
     private void getDuplicatesOfDecomposedBlocks() {
         for (AbstractBlock block : blocks) {
-            ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-            	final Comparison comp = iterator.next();
-                abstractDP.isSuperfluous(comp.getEntityId1(), comp.getEntityId2());
-            }
+            block.forEachComparison((entityId1, entityId2) -> abstractDP.isSuperfluous(entityId1, entityId2));
         }
 
         detectedDuplicates = abstractDP.getNoOfDuplicates();
@@ -312,14 +304,12 @@ public class BlocksPerformanceWriter {
 
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-                final Comparison currentComparison = iterator.next();
-                final EntityProfile profile1 = profilesD1.get(currentComparison.getEntityId1());
-                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(currentComparison.getEntityId2()) : profilesD1.get(currentComparison.getEntityId2());
+            block.forEachComparison((entityId1, entityId2) -> {
+                final EntityProfile profile1 = profilesD1.get(entityId1);
+                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(entityId2) : profilesD1.get(entityId2);
 
                 final int originalDuplicates = abstractDP.getNoOfDuplicates();
-                abstractDP.isSuperfluous(currentComparison.getEntityId1(), currentComparison.getEntityId2());
+                abstractDP.isSuperfluous(entityId1, entityId2);
                 final int newDuplicates = abstractDP.getNoOfDuplicates();
 
                 System.out.print(profile1.getEntityUrl() + ",");
@@ -331,7 +321,7 @@ public class BlocksPerformanceWriter {
                 }
                 System.out.print("Profile 1:[" + profilesD1 + "]");
                 System.out.println("Profile 2:[" + profilesD2 + "]");
-            }
+            });
         }
 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -378,14 +368,12 @@ public class BlocksPerformanceWriter {
 
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-                final Comparison currentComparison = iterator.next();
-                final EntityProfile profile1 = profilesD1.get(currentComparison.getEntityId1());
-                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(currentComparison.getEntityId2()) : profilesD1.get(currentComparison.getEntityId2());
+            block.forEachComparison((entityId1, entityId2) -> {
+                final EntityProfile profile1 = profilesD1.get(entityId1);
+                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(entityId2) : profilesD1.get(entityId2);
 
                 final int originalDuplicates = abstractDP.getNoOfDuplicates();
-                abstractDP.isSuperfluous(currentComparison.getEntityId1(), currentComparison.getEntityId2());
+                abstractDP.isSuperfluous(entityId1, entityId2);
                 final int newDuplicates = abstractDP.getNoOfDuplicates();
 
                 sb.append(profile1.getEntityUrl()).append(",");
@@ -397,7 +385,7 @@ public class BlocksPerformanceWriter {
                 }
                 sb.append("Profile 1:[").append(profile1).append("]");
                 sb.append("Profile 2:[").append(profile2).append("]").append("\n");
-            }
+            });
         }
 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -450,14 +438,12 @@ public class BlocksPerformanceWriter {
 
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-                final Comparison currentComparison = iterator.next();
-                final EntityProfile profile1 = profilesD1.get(currentComparison.getEntityId1());
-                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(currentComparison.getEntityId2()) : profilesD1.get(currentComparison.getEntityId2());
+            block.forEachComparison((entityId1, entityId2) -> {
+                final EntityProfile profile1 = profilesD1.get(entityId1);
+                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(entityId2) : profilesD1.get(entityId2);
 
                 final int originalDuplicates = abstractDP.getNoOfDuplicates();
-                abstractDP.isSuperfluous(currentComparison.getEntityId1(), currentComparison.getEntityId2());
+                abstractDP.isSuperfluous(entityId1, entityId2);
                 final int newDuplicates = abstractDP.getNoOfDuplicates();
 
                 printWriter.println();
@@ -489,7 +475,7 @@ public class BlocksPerformanceWriter {
             	printWriter.println("</obj:"+"Profile2>");
                 
             	printWriter.println("</rdf:Description>");
-            }
+            });
         }
 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -578,14 +564,12 @@ public class BlocksPerformanceWriter {
 
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-                final Comparison currentComparison = iterator.next();
-                final EntityProfile profile1 = profilesD1.get(currentComparison.getEntityId1());
-                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(currentComparison.getEntityId2()) : profilesD1.get(currentComparison.getEntityId2());
+            block.forEachComparison((entityId1, entityId2) -> {
+                final EntityProfile profile1 = profilesD1.get(entityId1);
+                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(entityId2) : profilesD1.get(entityId2);
 
                 final int originalDuplicates = abstractDP.getNoOfDuplicates();
-                abstractDP.isSuperfluous(currentComparison.getEntityId1(), currentComparison.getEntityId2());
+                abstractDP.isSuperfluous(entityId1, entityId2);
                 final int newDuplicates = abstractDP.getNoOfDuplicates();
 
                 printWriter.println();
@@ -618,7 +602,7 @@ public class BlocksPerformanceWriter {
             	printWriter.println("</Profile2>");
                 
             	printWriter.println("</entity>");
-            }
+            });
         }
 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -884,14 +868,12 @@ public class BlocksPerformanceWriter {
         sb.append(dbquery1);
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-                final Comparison currentComparison = iterator.next();
-                final EntityProfile profile1 = profilesD1.get(currentComparison.getEntityId1());
-                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(currentComparison.getEntityId2()) : profilesD1.get(currentComparison.getEntityId2());
+            block.forEachComparison((entityId1, entityId2) -> {
+                final EntityProfile profile1 = profilesD1.get(entityId1);
+                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(entityId2) : profilesD1.get(entityId2);
 
                 final int originalDuplicates = abstractDP.getNoOfDuplicates();
-                abstractDP.isSuperfluous(currentComparison.getEntityId1(), currentComparison.getEntityId2());
+                abstractDP.isSuperfluous(entityId1, entityId2);
                 final int newDuplicates = abstractDP.getNoOfDuplicates();
 
                 sb.append("('"+profile1.getEntityUrl()+"', ");
@@ -904,7 +886,7 @@ public class BlocksPerformanceWriter {
                 }
                 sb.append("'"+profile1+"', ");
             	sb.append("'"+profile2+"'), ");
-            }
+            });
         }
 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -982,11 +964,7 @@ public class BlocksPerformanceWriter {
         
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-            	final Comparison comp = iterator.next();
-                abstractDP.isSuperfluous(comp.getEntityId1(), comp.getEntityId2());
-            }
+            block.forEachComparison((entityId1, entityId2) -> abstractDP.isSuperfluous(entityId1, entityId2));
         }
                 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -1023,11 +1001,7 @@ public class BlocksPerformanceWriter {
         
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-            	final Comparison comp = iterator.next();
-                abstractDP.isSuperfluous(comp.getEntityId1(), comp.getEntityId2());
-            }
+            block.forEachComparison((entityId1, entityId2) -> abstractDP.isSuperfluous(entityId1, entityId2));
         }
                 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -1094,11 +1068,7 @@ public class BlocksPerformanceWriter {
         
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-            	final Comparison comp = iterator.next();
-                abstractDP.isSuperfluous(comp.getEntityId1(), comp.getEntityId2());
-            }
+            block.forEachComparison((entityId1, entityId2) -> abstractDP.isSuperfluous(entityId1, entityId2));
         }
                 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -1157,11 +1127,7 @@ public class BlocksPerformanceWriter {
         
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-            	final Comparison comp = iterator.next();
-                abstractDP.isSuperfluous(comp.getEntityId1(), comp.getEntityId2());
-            }
+            block.forEachComparison((entityId1, entityId2) -> abstractDP.isSuperfluous(entityId1, entityId2));
         }
                 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -1223,11 +1189,7 @@ public class BlocksPerformanceWriter {
         
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-            	final Comparison comp = iterator.next();
-                abstractDP.isSuperfluous(comp.getEntityId1(), comp.getEntityId2());
-            }
+            block.forEachComparison((entityId1, entityId2) -> abstractDP.isSuperfluous(entityId1, entityId2));
         }
                 
         int counter = 0;
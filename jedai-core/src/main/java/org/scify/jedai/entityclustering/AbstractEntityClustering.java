@@ -78,16 +78,6 @@ public abstract class AbstractEntityClustering implements IEntityClustering {
         return connectedComponents;
     }
 
-    protected int getMaxEntityId(int[] entityIds) {
-        int maxId = Integer.MIN_VALUE;
-        for (int i = 0; i < entityIds.length; i++) {
-            if (maxId < entityIds[i]) {
-                maxId = entityIds[i];
-            }
-        }
-        return maxId;
-    }
-
     @Override
     public String getMethodConfiguration() {
         return getParameterName(0) + "=" + threshold;
@@ -145,8 +135,8 @@ public abstract class AbstractEntityClustering implements IEntityClustering {
 
         isCleanCleanER = simPairs.isCleanCleanER();
 
-        int maxEntity1 = getMaxEntityId(simPairs.getEntityIds1());
-        int maxEntity2 = getMaxEntityId(simPairs.getEntityIds2());
+        int maxEntity1 = simPairs.getMaxEntityId1();
+        int maxEntity2 = simPairs.getMaxEntityId2();
         if (simPairs.isCleanCleanER()) {
             datasetLimit = maxEntity1 + 1;
             noOfEntities = maxEntity1 + maxEntity2 + 2;
@@ -15,7 +15,6 @@
  */
 package org.scify.jedai.entityclustering;
 
-import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EquivalenceCluster;
 import org.scify.jedai.datamodel.SimilarityEdge;
 import org.scify.jedai.datamodel.SimilarityPairs;
@@ -24,7 +23,6 @@ import org.scify.jedai.utilities.comparators.DecSimilarityEdgeComparator;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
-import java.util.Iterator;
 import java.util.PriorityQueue;
 import java.util.Queue;
 
@@ -48,22 +46,20 @@ public class CenterClustering extends AbstractEntityClustering {
         
         final double[] edgesWeight = new double[noOfEntities];
         final double[] edgesAttached = new double[noOfEntities];
-        final Queue<SimilarityEdge> SEqueue = new PriorityQueue<>(simPairs.getNoOfComparisons(), new DecSimilarityEdgeComparator());
+        final Queue<SimilarityEdge> SEqueue = new PriorityQueue<>(new DecSimilarityEdgeComparator());
 
-        final Iterator<Comparison> iterator = simPairs.getPairIterator();
         // add a similarity edge to the queue for every pair of entities with a weight higher than the threshold
-        while (iterator.hasNext()) { 
-            final Comparison comparison = iterator.next();
-            if (threshold < comparison.getUtilityMeasure()) {
-                SEqueue.add(new SimilarityEdge(comparison.getEntityId1(), comparison.getEntityId2() + datasetLimit, comparison.getUtilityMeasure()));
+        simPairs.forEachPair((entityId1, entityId2, similarity) -> {
+            if (threshold < similarity) {
+                SEqueue.add(new SimilarityEdge(entityId1, entityId2 + datasetLimit, similarity));
 
-                edgesWeight[comparison.getEntityId1()] += comparison.getUtilityMeasure();
-                edgesWeight[comparison.getEntityId2() + datasetLimit] += comparison.getUtilityMeasure();
+                edgesWeight[entityId1] += similarity;
+                edgesWeight[entityId2 + datasetLimit] += similarity;
 
-                edgesAttached[comparison.getEntityId1()]++;
-                edgesAttached[comparison.getEntityId2() + datasetLimit]++;
+                edgesAttached[entityId1]++;
+                edgesAttached[entityId2 + datasetLimit]++;
             }
-        }
+        });
         simPairs = null;
 
         final TIntSet Center = new TIntHashSet();
@@ -15,10 +15,8 @@
  */
 package org.scify.jedai.entityclustering;
 
-import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EquivalenceCluster;
 import org.scify.jedai.datamodel.SimilarityPairs;
-import java.util.Iterator;
 
 /**
  *
@@ -39,13 +37,11 @@ public class ConnectedComponentsClustering extends AbstractEntityClustering {
         initializeData(simPairs);
         
         // add an edge for every pair of entities with a weight higher than the thrshold
-        final Iterator<Comparison> iterator = simPairs.getPairIterator();
-        while (iterator.hasNext()) {
-            final Comparison comparison = iterator.next();
-            if (threshold < comparison.getUtilityMeasure()) {
-                similarityGraph.addEdge(comparison.getEntityId1(), comparison.getEntityId2() + datasetLimit);
+        simPairs.forEachPair((entityId1, entityId2, similarity) -> {
+            if (threshold < similarity) {
+                similarityGraph.addEdge(entityId1, entityId2 + datasetLimit);
             }
-        }
+        });
         simPairs = null;
         
         return getConnectedComponents();
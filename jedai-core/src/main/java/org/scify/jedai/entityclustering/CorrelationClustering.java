@@ -15,22 +15,35 @@
  */
 package org.scify.jedai.entityclustering;
 
-import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EquivalenceCluster;
-import org.scify.jedai.datamodel.SimilarityEdge;
 import org.scify.jedai.datamodel.SimilarityPairs;
 
+import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntDoubleMap;
+import gnu.trove.map.hash.TIntDoubleHashMap;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 
 /**
+ * Local search over the correlation clustering objective, i.e., the number of
+ * similar pairs that share a cluster plus the number of non-similar pairs that
+ * do not. Pairs that were never compared count as non-similar. Only the edges
+ * of the similarity graph are stored, and every move is evaluated through the
+ * change it causes to the objective, which depends solely on the neighbours of
+ * the moved entities and on the sizes of the affected clusters.
  *
  * @author G.A.P. II
  */
 public class CorrelationClustering extends AbstractEntityClustering {
 
+    private final static byte NOT_SIMILAR = -1;
+    private final static byte NEUTRAL = 0;
+    private final static byte SIMILAR = 1;
+
     public CorrelationClustering() {
         this(0.6);
     }
@@ -40,11 +53,14 @@ public class CorrelationClustering extends AbstractEntityClustering {
     }
     
     private int[] verticesToClusters;
+    private int[] clusterSizes;
+    private int[] memberPositions;
+    private long objectiveValue;
+    private TIntList[] clusterMembers;
     private int numClusters;
     private int maxNumClusters;
-    private EquivalenceCluster[] clustersCreated;
-    private boolean[][] areSimilar;
-    private boolean[][] areNotSimilar;
+    private int[][] neighbors;
+    private byte[][] neighborTypes;
     private double thresholdForInitialClusters=0.5;
     private double thresholdForSimilar=0.8;
     private double thresholdForNotSimilar=0.2;
@@ -52,288 +68,294 @@ public class CorrelationClustering extends AbstractEntityClustering {
    
     private Random rand;
 
-
     @Override
     public EquivalenceCluster[] getDuplicates(SimilarityPairs simPairs) {
         initializeData(simPairs);
         
         // add an edge for every pair of entities with a weight higher than the threshold
-        final Iterator<Comparison> iterator = simPairs.getPairIterator();
-        double totalSimilarity = 0.0;
-        int numComparisons=0;
-        double[][] similarities = new double[noOfEntities][noOfEntities];
-        while (iterator.hasNext()) {
-            final Comparison comparison = iterator.next();
-            
-            double utilityMeasure =  comparison.getUtilityMeasure();
-            int id1=comparison.getEntityId1();
-        	int id2=comparison.getEntityId2();
-            similarities[id1][id2 + datasetLimit] = utilityMeasure;
-            similarities[id2 + datasetLimit][id1] = utilityMeasure;
-            totalSimilarity+=utilityMeasure;
-            numComparisons++;
-            if (thresholdForInitialClusters <utilityMeasure) {
-                similarityGraph.addEdge(id1, id2 + datasetLimit);
+        final TIntDoubleMap[] similarities = new TIntDoubleMap[noOfEntities];
+        for (int i = 0; i < noOfEntities; i++) {
+            similarities[i] = new TIntDoubleHashMap();
+        }
+        simPairs.forEachPair((id1, entityId2, utilityMeasure) -> {
+            int id2 = entityId2 + datasetLimit;
+            if (id1 == id2) {
+                return;
+            }
+
+            similarities[id1].put(id2, utilityMeasure);
+            similarities[id2].put(id1, utilityMeasure);
+            if (thresholdForInitialClusters < utilityMeasure) {
+                similarityGraph.addEdge(id1, id2);
             }
+        });
+        simPairs = null;
+
+        //entities are considered similar (+1) if they have similarity above the threshold
+        //and not similar when they have similarity less than 1-threshold
+        neighbors = new int[noOfEntities][];
+        neighborTypes = new byte[noOfEntities][];
+        for (int i = 0; i < noOfEntities; i++) {
+            int counter = 0;
+            neighbors[i] = new int[similarities[i].size()];
+            neighborTypes[i] = new byte[similarities[i].size()];
+            for (TIntDoubleIterator it = similarities[i].iterator(); it.hasNext();) {
+                it.advance();
+                neighbors[i][counter] = it.key();
+                if (thresholdForSimilar < it.value()) {
+                    neighborTypes[i][counter] = SIMILAR;
+                } else if (it.value() < thresholdForNotSimilar) {
+                    neighborTypes[i][counter] = NOT_SIMILAR;
+                } else {
+                    neighborTypes[i][counter] = NEUTRAL;
+                }
+                counter++;
+            }
+            similarities[i] = null;
         }
         
-        double averageSimilarity = totalSimilarity/(double) numComparisons;
-        simPairs = null;
         //start from connected components
-        
-        EquivalenceCluster[] initialClusters = getConnectedComponents();
+        final EquivalenceCluster[] initialClusters = getConnectedComponents();
         numClusters = initialClusters.length;
-        maxNumClusters = 10+numClusters;
-        clustersCreated = new EquivalenceCluster[maxNumClusters];
-        System.arraycopy(initialClusters, 0, clustersCreated, 0, initialClusters.length);
-        
-        //map vertices to clusters
-        verticesToClusters= new int[noOfEntities];
-        for (int clCounter=0;clCounter<numClusters;clCounter++)
-        {
-        	for (int i=0;i<noOfEntities;i++)
-            {
-        		if (clustersCreated[clCounter].getEntityIdsD1().contains(i))
-        		{
-        			if (verticesToClusters[i]>0) System.err.println("Double entrance ");
-        			verticesToClusters[i]=clCounter;
-        		}
+        maxNumClusters = 10 + numClusters;
+        clusterSizes = new int[maxNumClusters];
+        verticesToClusters = new int[noOfEntities];
+        for (int clCounter = 0; clCounter < numClusters; clCounter++) {
+            for (TIntIterator it = initialClusters[clCounter].getEntityIdsD1().iterator(); it.hasNext();) {
+                verticesToClusters[it.next()] = clCounter;
             }
-        }
-        
-        //initialize similarity boolean arrays
-        //entities are considered similar (+1) if they have similarity above the threshold
-        //and not similar when they have similarity less than 1-threshold
-        areSimilar = new boolean[noOfEntities][noOfEntities];
-        areNotSimilar = new boolean[noOfEntities][noOfEntities];
-        for (int i=0;i<noOfEntities;i++)
-        {
-        	for (int j=i+1;j<noOfEntities;j++)
-            {
-        		areNotSimilar[i][j]=false;
-    			areNotSimilar[j][i]=false;
-        		if (similarities[i][j]>thresholdForSimilar)
-        		{
-        			areSimilar[i][j]=true;
-        			areSimilar[j][i]=true;
-        		}
-        		else
-        		{
-        			areSimilar[i][j]=false;
-        			areSimilar[j][i]=false;
-        			if (similarities[i][j]<thresholdForNotSimilar)
-            		{
-            			areNotSimilar[i][j]=true;
-            			areNotSimilar[j][i]=true;
-            		}
-        		}
+            for (TIntIterator it = initialClusters[clCounter].getEntityIdsD2().iterator(); it.hasNext();) {
+                verticesToClusters[it.next() + datasetLimit] = clCounter;
             }
+            clusterSizes[clCounter] = initialClusters[clCounter].getEntityIdsD1().size() + initialClusters[clCounter].getEntityIdsD2().size();
+        }
+
+        // the members of every cluster, along with the position of every entity in them, so that moves take constant time per entity
+        clusterMembers = new TIntList[maxNumClusters];
+        for (int clCounter = 0; clCounter < maxNumClusters; clCounter++) {
+            clusterMembers[clCounter] = new TIntArrayList(clusterSizes[clCounter]);
+        }
+        memberPositions = new int[noOfEntities];
+        for (int i = 0; i < noOfEntities; i++) {
+            memberPositions[i] = clusterMembers[verticesToClusters[i]].size();
+            clusterMembers[verticesToClusters[i]].add(i);
         }
         
         //Optimization step for maximizing Objective function
-        int prevOF = getOF();
-        //System.out.println("average similarity = "+averageSimilarity);
+        long prevOF = getOF();
         System.out.println("old value="+prevOF);
         double time0 = System.currentTimeMillis();
         rand = new Random();
-    	int moveLimit=1;//only change-cluster moves
-        for (int t=0;t<numOfLSIterations;t++)
-        {
-
-        	int moveIndex = rand.nextInt(moveLimit);
-        	int OF = doMove(moveIndex, prevOF);
-        	/*if (prevOF <OF)
-        	{
-        		System.out.println("new best = "+OF+" at iteration "+t);
-        	}*/
-        	prevOF = OF;
+        int moveLimit=1;//only change-cluster moves
+        for (int t = 0; t < numOfLSIterations; t++) {
+            int moveIndex = rand.nextInt(moveLimit);
+            prevOF += doMove(moveIndex);
         }
         double time1 = System.currentTimeMillis();
         System.out.println("optimization step: "+(time1-time0));
         System.out.println("new OF value="+prevOF);
+        objectiveValue = prevOF;
         
         //return array after removing empty clusters
-        List<EquivalenceCluster> list = new ArrayList<>();
-        for (int clCounter=0;clCounter<numClusters;clCounter++)
-        {
-            if (clustersCreated[clCounter].getEntityIdsD1().isEmpty())
-            {
-            	continue;
+        final int[] finalClusterIds = new int[numClusters];
+        final List<EquivalenceCluster> finalClusters = new ArrayList<>();
+        for (int clCounter = 0; clCounter < numClusters; clCounter++) {
+            finalClusterIds[clCounter] = -1;
+            if (0 < clusterSizes[clCounter]) {
+                finalClusterIds[clCounter] = finalClusters.size();
+                finalClusters.add(new EquivalenceCluster());
             }
-            list.add(clustersCreated[clCounter]);
         }
-        int numFinalClusters=list.size();
-        EquivalenceCluster[] finalClusters = new EquivalenceCluster[numFinalClusters];
-        for (int clCounter=0;clCounter<numFinalClusters;clCounter++)
-        {
-            finalClusters[clCounter]=list.get(clCounter);
+        for (int i = 0; i < noOfEntities; i++) {
+            final EquivalenceCluster cluster = finalClusters.get(finalClusterIds[verticesToClusters[i]]);
+            if (isCleanCleanER && datasetLimit <= i) {
+                cluster.addEntityIdD2(i - datasetLimit);
+            } else {
+                cluster.addEntityIdD1(i);
+            }
         }
-       
-        return finalClusters;
-        //return getConnectedComponents();
+        
+        return finalClusters.toArray(new EquivalenceCluster[finalClusters.size()]);
     }
 
-    private int getOF()
-    {
-    	int OFvalue = 0;
-        for (int i=0;i<noOfEntities;i++)
-        {
-        	for (int j=i+1;j<noOfEntities;j++)
-            {
-        		if (((areSimilar[i][j])&&(verticesToClusters[i]==verticesToClusters[j])) ||
-        				((areNotSimilar[i][j])&&(verticesToClusters[i]!=verticesToClusters[j])))
-        		{
-        			OFvalue++;
-        		}
+    /**
+     * Returns the change of the objective function if the given entities,
+     * which all belong to the same cluster, moved to the given cluster.
+     */
+    private long getGain(TIntList movedEntities, int newCluster) {
+        int prevCluster = verticesToClusters[movedEntities.get(0)];
+        if (prevCluster == newCluster) {
+            return 0;
+        }
+
+        // flag the moved entities, so that the pairs among them are skipped
+        for (TIntIterator it = movedEntities.iterator(); it.hasNext();) {
+            verticesToClusters[it.next()] = -1;
+        }
+
+        long similarInPrev = 0, neutralInPrev = 0;
+        long similarInNew = 0, neutralInNew = 0;
+        for (TIntIterator it = movedEntities.iterator(); it.hasNext();) {
+            int entity = it.next();
+            for (int k = 0; k < neighbors[entity].length; k++) {
+                int neighborCluster = verticesToClusters[neighbors[entity][k]];
+                if (neighborCluster == prevCluster) {
+                    if (neighborTypes[entity][k] == SIMILAR) {
+                        similarInPrev++;
+                    } else if (neighborTypes[entity][k] == NEUTRAL) {
+                        neutralInPrev++;
+                    }
+                } else if (neighborCluster == newCluster) {
+                    if (neighborTypes[entity][k] == SIMILAR) {
+                        similarInNew++;
+                    } else if (neighborTypes[entity][k] == NEUTRAL) {
+                        neutralInNew++;
+                    }
+                }
             }
         }
-        return OFvalue;
+
+        for (TIntIterator it = movedEntities.iterator(); it.hasNext();) {
+            verticesToClusters[it.next()] = prevCluster;
+        }
+
+        // all pairs that are neither similar nor neutral are not similar, including the non-compared ones
+        long movedSize = movedEntities.size();
+        long notSimilarInPrev = movedSize * (clusterSizes[prevCluster] - movedSize) - similarInPrev - neutralInPrev;
+        long notSimilarInNew = movedSize * clusterSizes[newCluster] - similarInNew - neutralInNew;
+        return notSimilarInPrev - similarInPrev + similarInNew - notSimilarInNew;
     }
-    
-    private int doMove(int moveIndex, int prevOF)
-    {
-    	if (moveIndex==0)
-    	{
-    		int randomEntity = rand.nextInt(noOfEntities);
-        	int randomCluster = rand.nextInt(numClusters);
-        	while (clustersCreated[randomCluster].getEntityIdsD1().isEmpty())
-        	{
-        		randomCluster = rand.nextInt(numClusters);
-        	}
-        	return changeCluster(prevOF, randomEntity, randomCluster);
-    	}
-    	else if (moveIndex==1)
-    	{
-    		int prevCluster = rand.nextInt(numClusters);
-    		while (clustersCreated[prevCluster].getEntityIdsD1().isEmpty())
-        	{
-        		prevCluster = rand.nextInt(numClusters);
-        	}
-        	int newCluster = rand.nextInt(numClusters);
-        	while ((prevCluster==newCluster)||(clustersCreated[newCluster].getEntityIdsD1().isEmpty()))
-        	{
-            	newCluster = rand.nextInt(numClusters);
-        	}
-        	return unifyClusters(prevOF, prevCluster, newCluster);
-    	}
-    	else if (moveIndex==2)
-    	{
-    		int prevCluster = rand.nextInt(numClusters);
-        	while (clustersCreated[prevCluster].getEntityIdsD1().isEmpty())
-        	{
-        		prevCluster = rand.nextInt(numClusters);
-        	}
-        	return separateClusters(prevOF, prevCluster);
-    	}
-    	else
-    	{
-    		System.err.println("not valid move index");
-    		return Integer.MAX_VALUE;
-    	}
+
+    /**
+     * Returns a copy of the members of the given cluster, which remains valid
+     * while they are moved.
+     */
+    private TIntList getMembers(int cluster) {
+        return new TIntArrayList(clusterMembers[cluster]);
     }
-    
-    private int changeCluster(int prevOF, int entity, int newCluster)
-    {
-    	int prevCluster = verticesToClusters[entity];
-    	verticesToClusters[entity]=newCluster;
 
-    	int newOF = getOF();
-    	if (newOF>prevOF)
-    	{
-    		clustersCreated[prevCluster].getEntityIdsD1().remove(Integer.valueOf(entity));
-    		clustersCreated[newCluster].addEntityIdD1(entity);
-            return newOF;
-    	}
-    	else
-    	{
-        	verticesToClusters[entity]=prevCluster;
-        	/*if (prevOF!=getOF())
-        	{
-        		System.out.println("prevOF="+prevOF);
-        	}*/
+    /**
+     * Recomputes the objective function of the current clustering from
+     * scratch.
+     */
+    protected long getOF() {
+        long similarPairs = 0, neutralPairs = 0;
+        long similarInCluster = 0, neutralInCluster = 0;
+        for (int i = 0; i < noOfEntities; i++) {
+            for (int k = 0; k < neighbors[i].length; k++) {
+                int j = neighbors[i][k];
+                if (j < i || neighborTypes[i][k] == NOT_SIMILAR) {
+                    continue;
+                }
+
+                boolean sameCluster = verticesToClusters[i] == verticesToClusters[j];
+                if (neighborTypes[i][k] == SIMILAR) {
+                    similarPairs++;
+                    if (sameCluster) {
+                        similarInCluster++;
+                    }
+                } else {
+                    neutralPairs++;
+                    if (sameCluster) {
+                        neutralInCluster++;
+                    }
+                }
+            }
+        }
+
+        long pairsInCluster = 0;
+        for (int clCounter = 0; clCounter < numClusters; clCounter++) {
+            pairsInCluster += (long) clusterSizes[clCounter] * (clusterSizes[clCounter] - 1) / 2;
+        }
 
-            return prevOF;
-    	}
+        long allPairs = (long) noOfEntities * (noOfEntities - 1) / 2;
+        long notSimilarPairs = allPairs - similarPairs - neutralPairs;
+        long notSimilarInCluster = pairsInCluster - similarInCluster - neutralInCluster;
+        return similarInCluster + notSimilarPairs - notSimilarInCluster;
+    }
+
+    /**
+     * Returns the value of the objective function at the end of the last
+     * optimization, as accumulated from the gains of the applied moves.
+     */
+    protected long getObjectiveValue() {
+        return objectiveValue;
+    }
+
+    private int getRandomNonEmptyCluster() {
+        int randomCluster = rand.nextInt(numClusters);
+        while (clusterSizes[randomCluster] == 0) {
+            randomCluster = rand.nextInt(numClusters);
+        }
+        return randomCluster;
     }
-    
-    private int unifyClusters(int prevOF, int prevCluster, int newCluster)
-    {
-    	List<Integer> tobeRemoved=new ArrayList<>();
 
-    	for (int i=0;i<clustersCreated[prevCluster].getEntityIdsD1().size();i++)
-    	{
-    		int entity = clustersCreated[prevCluster].getEntityIdsD1().get(i);
-    		tobeRemoved.add(entity);
+    /**
+     * Applies a random move if it improves the objective function and returns
+     * the resulting change of the objective function.
+     */
+    private long doMove(int moveIndex) {
+        if (moveIndex == 0) {
+            int randomEntity = rand.nextInt(noOfEntities);
+            int randomCluster = getRandomNonEmptyCluster();
+            final TIntList movedEntities = new TIntArrayList(1);
+            movedEntities.add(randomEntity);
+            return moveEntities(movedEntities, randomCluster);
+        } else if (moveIndex == 1) {
+            int prevCluster = getRandomNonEmptyCluster();
+            int newCluster = getRandomNonEmptyCluster();
+            while (prevCluster == newCluster) {
+                newCluster = getRandomNonEmptyCluster();
+            }
+            return moveEntities(getMembers(prevCluster), newCluster);
+        } else if (moveIndex == 2) {
+            if (numClusters == maxNumClusters) {
+                return 0;
+            }
 
-        	verticesToClusters[entity]=newCluster;
-    	}
-    	int newOF = getOF();
+            final TIntList members = getMembers(getRandomNonEmptyCluster());
+            final TIntList movedEntities = new TIntArrayList();
+            for (int i = 0; i < members.size(); i += 2) {
+                movedEntities.add(members.get(i));
+            }
 
-    	if (newOF>prevOF)
-    	{
-    		//if solution is accepted update clusters
-    		for (Integer entity1:tobeRemoved)
-        	{
-        		clustersCreated[prevCluster].getEntityIdsD1().remove(entity1);
-        		clustersCreated[newCluster].addEntityIdD1(entity1);
-        	}
-            return newOF;
-    	}
-    	else
-    	{
-    		//else undo move
-    		for (Integer entity1:tobeRemoved)
-        	{
-        		verticesToClusters[entity1]=prevCluster;        		      		
-        	}
-            return prevOF;
-    	}
+            long gain = moveEntities(movedEntities, numClusters);
+            if (0 < gain) {
+                numClusters++;
+            }
+            return gain;
+        } else {
+            System.err.println("not valid move index");
+            return 0;
+        }
     }
-    
-    private int separateClusters(int prevOF, int prevCluster)
-    {
-    	//create additional cluster
-    	int newCluster = numClusters;
-    	//try
-    	List<Integer> tobeRemoved=new ArrayList<>();
-    	for (int i=0;i<clustersCreated[prevCluster].getEntityIdsD1().size();i+=2)
-    	{
-    		int entity = clustersCreated[prevCluster].getEntityIdsD1().get(i);
-    		tobeRemoved.add(entity);
-        	verticesToClusters[entity]=newCluster;
-    	}
-    	int newOF = getOF();
-    	if (newOF>prevOF)
-    	{
-    		//update
-    		clustersCreated[newCluster] = new EquivalenceCluster();
-        	numClusters++;
-        	for (Integer entity1:tobeRemoved)
-        	{
-        		clustersCreated[prevCluster].getEntityIdsD1().remove(entity1);
-        		clustersCreated[newCluster].addEntityIdD1(entity1);
-        	}
-            return newOF;
-    	}
-    	else
-    	{
-    		//undo
-        	for (Integer entity1:tobeRemoved)
-        	{
-        		verticesToClusters[entity1]=prevCluster;        		
-        	}
-        	/*int nowOF = getOF();
-        	if (prevOF!=nowOF)
-        	{
-        		System.out.println("prevOFinSEPARATION="+prevOF);
-        		System.out.println("nowOF             ="+nowOF);
-        		System.out.println();
-        	}*/
-            return prevOF;
-    	}
+
+    private long moveEntities(TIntList movedEntities, int newCluster) {
+        long gain = getGain(movedEntities, newCluster);
+        if (gain <= 0) {
+            return 0;
+        }
+
+        int prevCluster = verticesToClusters[movedEntities.get(0)];
+        for (TIntIterator it = movedEntities.iterator(); it.hasNext();) {
+            int entity = it.next();
+            verticesToClusters[entity] = newCluster;
+
+            // replace the moved entity with the last member of its previous cluster
+            final TIntList prevMembers = clusterMembers[prevCluster];
+            int lastMember = prevMembers.removeAt(prevMembers.size() - 1);
+            if (lastMember != entity) {
+                prevMembers.set(memberPositions[entity], lastMember);
+                memberPositions[lastMember] = memberPositions[entity];
+            }
+            memberPositions[entity] = clusterMembers[newCluster].size();
+            clusterMembers[newCluster].add(entity);
+        }
+        clusterSizes[prevCluster] -= movedEntities.size();
+        clusterSizes[newCluster] += movedEntities.size();
+        return gain;
     }
     
-    
     @Override
     public String getMethodInfo() {
         return getMethodName() + ": it gets equivalence clusters from correlation optimization step.";
@@ -15,7 +15,6 @@
  */
 package org.scify.jedai.entityclustering;
 
-import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EquivalenceCluster;
 import org.scify.jedai.datamodel.GomoryHuTree;
 import org.scify.jedai.datamodel.SimilarityPairs;
@@ -23,7 +22,6 @@ import org.scify.jedai.datamodel.SimilarityPairs;
 import com.esotericsoftware.minlog.Log;
 import gnu.trove.set.hash.TIntHashSet;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import org.apache.jena.atlas.json.JsonArray;
@@ -84,14 +82,13 @@ public class CutClustering extends AbstractEntityClustering {
         similarityGraph = null;
         initializeGraph();
 
-        final Iterator<Comparison> iterator = simPairs.getPairIterator();
-        while (iterator.hasNext()) {	// add an edge for every pair of entities with a weight higher than the threshold
-            Comparison comparison = iterator.next();
-            if (threshold < comparison.getUtilityMeasure()) {
-                DefaultWeightedEdge e = (DefaultWeightedEdge) weightedGraph.addEdge(comparison.getEntityId1() + "", (comparison.getEntityId2() + datasetLimit) + "");
-                weightedGraph.setEdgeWeight(e, comparison.getUtilityMeasure());
+        // add an edge for every pair of entities with a weight higher than the threshold
+        simPairs.forEachPair((entityId1, entityId2, similarity) -> {
+            if (threshold < similarity) {
+                DefaultWeightedEdge e = (DefaultWeightedEdge) weightedGraph.addEdge(entityId1 + "", (entityId2 + datasetLimit) + "");
+                weightedGraph.setEdgeWeight(e, similarity);
             }
-        }
+        });
         simPairs = null;
 
         GomoryHuTree ght = new GomoryHuTree(weightedGraph); //take the minimum cut (Gomory-Hu) tree from the similarity graph
@@ -15,11 +15,17 @@
  */
 package org.scify.jedai.entityclustering;
 
-import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EquivalenceCluster;
 import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.utilities.ParallelProcessing;
 
-import java.util.Iterator;
+import com.esotericsoftware.minlog.Log;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.TIntDoubleMap;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.jena.atlas.json.JsonArray;
 import org.apache.jena.atlas.json.JsonObject;
@@ -29,6 +35,11 @@ import org.scify.jedai.configuration.randomsearch.DblRandomSearchConfiguration;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
 
 /**
+ * The Markov Cluster Algorithm over a sparse transition matrix. The matrix is
+ * stored in CSR format, transposed, so that the column normalization of the
+ * algorithm becomes a row normalization and every row of the next matrix is
+ * derived independently of the others. After each inflation, the entries
+ * below the pruning threshold are dropped, which keeps the matrix sparse.
  *
  * @author G.A.P. II
  */
@@ -37,6 +48,8 @@ public class MarkovClustering extends AbstractEntityClustering {
     protected double clusterThreshold;//define similarity threshold for including in final graph
     protected double matrixSimThreshold;//define similarity threshold for matrix comparison
     protected int similarityChecksLimit;//define check repetitions limit for the expansion-inflation process
+    protected double pruningThreshold;//define the minimum value of a matrix entry that survives inflation
+    protected int noOfThreads;
 
     protected final DblGridSearchConfiguration gridCThreshold;
     protected final DblGridSearchConfiguration gridMSThreshold;
@@ -54,6 +67,8 @@ public class MarkovClustering extends AbstractEntityClustering {
         clusterThreshold = ct;
         matrixSimThreshold = mst;
         similarityChecksLimit = scl;
+        pruningThreshold = 0.0001;
+        noOfThreads = 1;
 
         gridCThreshold = new DblGridSearchConfiguration(0.100, 0.002, 0.002);
         gridMSThreshold = new DblGridSearchConfiguration(0.00100, 0.00001, 0.00001);
@@ -63,86 +78,80 @@ public class MarkovClustering extends AbstractEntityClustering {
         randomSCLimit = new IntRandomSearchConfiguration(10, 1);
     }
 
-    private void addSelfLoop(double[][] a) {
-        int m1 = a.length;
-        for (int i = 0; i < m1; i++) {
-            a[i][i] = 1.0;
-        }
-    }
-
-    private boolean areSimilar(double[][] a, double[][] b) {
-        int m1 = a.length;
-        int m2 = b.length;
-        if (m1 != m2) {
-            return false;
-        }
-
-        int n1 = a[0].length;
-        int n2 = b[0].length;
-        if (n1 != n2) {
-            return false;
+    /**
+     * Builds the transpose of the column-stochastic transition matrix: the row
+     * of every entity contains its self-loop and its incoming edges.
+     */
+    private SparseMatrix getTransitionMatrix(SimilarityPairs simPairs) {
+        final TIntDoubleMap[] rows = new TIntDoubleMap[noOfEntities];
+        for (int i = 0; i < noOfEntities; i++) {
+            rows[i] = new TIntDoubleHashMap();
+            rows[i].put(i, 1.0);
         }
 
-        for (int i = 0; i < m1; i++) {
-            for (int j = 0; j < n1; j++) {
-                if (Math.abs(a[i][j] - b[i][j]) > matrixSimThreshold) {
-                    return false;
-                }
+        // add an edge for every pair of entities with a weight higher than the threshold
+        simPairs.forEachPair((entityId1, entityId2, similarity) -> {
+            if (threshold < similarity) {
+                rows[entityId2 + datasetLimit].put(entityId1, similarity);
             }
-        }
+        });
 
-        return true;
-    }
+        final SparseMatrix matrix = new SparseMatrix(noOfEntities);
+        for (int i = 0; i < noOfEntities; i++) {
+            final int[] columns = rows[i].keys();
+            Arrays.sort(columns);
 
-    private void expand2(double[][] inputMatrix) {
-        final double[][] input = multiply(inputMatrix, inputMatrix);
-        for (int i = 0; i < inputMatrix.length; i++) {
-            System.arraycopy(input[i], 0, inputMatrix[i], 0, inputMatrix[0].length);
+            double sum = 0;
+            for (int column : columns) {
+                sum += rows[i].get(column);
+            }
+            for (int column : columns) {
+                matrix.columns.add(column);
+                matrix.values.add(rows[i].get(column) / sum);
+            }
+            matrix.rowStarts[i + 1] = matrix.columns.size();
+            rows[i] = null;
         }
+        return matrix;
     }
 
     @Override
     public EquivalenceCluster[] getDuplicates(SimilarityPairs simPairs) {
         initializeData(simPairs);
 
-        // add an edge for every pair of entities with a weight higher than the threshold
-        final Iterator<Comparison> iterator = simPairs.getPairIterator();
-        double[][] simMatrix = new double[noOfEntities][noOfEntities];
-        while (iterator.hasNext()) {
-            final Comparison comparison = iterator.next();
-            if (threshold < comparison.getUtilityMeasure()) {
-                simMatrix[comparison.getEntityId1()][comparison.getEntityId2() + datasetLimit] = comparison.getUtilityMeasure();
-            }
-        }
+        SparseMatrix matrix = getTransitionMatrix(simPairs);
         simPairs = null;
 
-        addSelfLoop(simMatrix);
-        normalizeColumns(simMatrix);
-        double[][] atStart = new double[noOfEntities][noOfEntities];
         int count = 0;
+        boolean converged;
         do {
-            for (int i = 0; i < noOfEntities; i++) {
-                System.arraycopy(simMatrix[i], 0, atStart[i], 0, noOfEntities);
+            final SparseMatrix previous = matrix;
+            final List<SparseMatrix> partialMatrices = ParallelProcessing.processPartitions(noOfThreads, noOfEntities,
+                    (partitionId, start, end) -> expandAndInflate(previous, start, end));
+            matrix = new SparseMatrix(noOfEntities);
+            converged = true;
+            int rowId = 0;
+            for (SparseMatrix partialMatrix : partialMatrices) {
+                converged &= partialMatrix.converged;
+                int offset = matrix.columns.size();
+                for (int i = 1; i < partialMatrix.rowStarts.length; i++) {
+                    matrix.rowStarts[++rowId] = offset + partialMatrix.rowStarts[i];
+                }
+                matrix.columns.addAll(partialMatrix.columns);
+                matrix.values.addAll(partialMatrix.values);
             }
-            expand2(simMatrix);
-            normalizeColumns(simMatrix);
-            hadamard(simMatrix, 2);
-            normalizeColumns(simMatrix);
             count++;
-        } while ((!areSimilar(atStart, simMatrix)) && (count < similarityChecksLimit));
-
-        int n1 = simMatrix.length;
-        int upLimit = n1;
-        int lowLimit = 0;
-        if (datasetLimit != 0) {
-            upLimit = datasetLimit;
-            lowLimit = datasetLimit;
-        }
+        } while (!converged && count < similarityChecksLimit);
+
+        // the i-th row holds the i-th column of the transition matrix, so every stored entry is checked once per direction
+        for (int i = 0; i < noOfEntities; i++) {
+            for (int k = matrix.rowStarts[i]; k < matrix.rowStarts[i + 1]; k++) {
+                int j = matrix.columns.getQuick(k);
+                if (i == j || clusterThreshold >= matrix.values.getQuick(k)) {
+                    continue;
+                }
 
-        for (int i = 0; i < upLimit; i++) {
-            for (int j = lowLimit; j < n1; j++) {
-                double sim = Math.max(simMatrix[i][j], simMatrix[j][i]);
-                if ((sim > clusterThreshold) && (i != j)) {
+                if (datasetLimit == 0 || (i < datasetLimit) != (j < datasetLimit)) {
                     similarityGraph.addEdge(i, j);
                 }
             }
@@ -151,12 +160,98 @@ public class MarkovClustering extends AbstractEntityClustering {
         return getConnectedComponents();
     }
 
+    /**
+     * Computes the rows [start, end) of the next matrix: the rows of the
+     * squared matrix are normalized, inflated, pruned and normalized again.
+     * The returned partial matrix also records whether these rows differ from
+     * the given ones by at most the matrix similarity threshold.
+     */
+    private SparseMatrix expandAndInflate(SparseMatrix matrix, int start, int end) {
+        final SparseMatrix partialMatrix = new SparseMatrix(end - start);
+        final double[] accumulator = new double[noOfEntities];
+        final TIntArrayList touchedColumns = new TIntArrayList();
+        for (int i = start; i < end; i++) {
+            touchedColumns.resetQuick();
+            for (int k = matrix.rowStarts[i]; k < matrix.rowStarts[i + 1]; k++) {
+                int neighborId = matrix.columns.getQuick(k);
+                double weight = matrix.values.getQuick(k);
+                for (int l = matrix.rowStarts[neighborId]; l < matrix.rowStarts[neighborId + 1]; l++) {
+                    int column = matrix.columns.getQuick(l);
+                    if (accumulator[column] == 0) {
+                        touchedColumns.add(column);
+                    }
+                    accumulator[column] += weight * matrix.values.getQuick(l);
+                }
+            }
+            touchedColumns.sort();
+
+            double sum = 0;
+            for (int c = 0; c < touchedColumns.size(); c++) {
+                sum += accumulator[touchedColumns.getQuick(c)];
+            }
+
+            double maxValue = 0;
+            double inflatedSum = 0;
+            for (int c = 0; c < touchedColumns.size(); c++) {
+                int column = touchedColumns.getQuick(c);
+                accumulator[column] = Math.pow(accumulator[column] / sum, 2);
+                inflatedSum += accumulator[column];
+                maxValue = Math.max(maxValue, accumulator[column]);
+            }
+
+            // the largest entry always survives, so that no row becomes empty
+            double cutOff = Math.min(pruningThreshold, maxValue / inflatedSum);
+            double prunedSum = 0;
+            for (int c = 0; c < touchedColumns.size(); c++) {
+                int column = touchedColumns.getQuick(c);
+                accumulator[column] /= inflatedSum;
+                if (accumulator[column] < cutOff) {
+                    accumulator[column] = 0;
+                } else {
+                    prunedSum += accumulator[column];
+                }
+            }
+
+            int k = matrix.rowStarts[i];
+            for (int c = 0; c < touchedColumns.size(); c++) {
+                int column = touchedColumns.getQuick(c);
+                double value = accumulator[column] / prunedSum;
+                accumulator[column] = 0;
+
+                // compare with the previous row, which is sorted by column, too
+                while (k < matrix.rowStarts[i + 1] && matrix.columns.getQuick(k) < column) {
+                    partialMatrix.converged &= matrix.values.getQuick(k++) <= matrixSimThreshold;
+                }
+                double previousValue = 0;
+                if (k < matrix.rowStarts[i + 1] && matrix.columns.getQuick(k) == column) {
+                    previousValue = matrix.values.getQuick(k++);
+                }
+
+                if (value == 0) {
+                    partialMatrix.converged &= previousValue <= matrixSimThreshold;
+                    continue;
+                }
+
+                partialMatrix.converged &= Math.abs(value - previousValue) <= matrixSimThreshold;
+                partialMatrix.columns.add(column);
+                partialMatrix.values.add(value);
+            }
+            while (k < matrix.rowStarts[i + 1]) {
+                partialMatrix.converged &= matrix.values.getQuick(k++) <= matrixSimThreshold;
+            }
+            partialMatrix.rowStarts[i - start + 1] = partialMatrix.columns.size();
+        }
+        return partialMatrix;
+    }
+
     @Override
     public String getMethodConfiguration() {
         return super.getMethodConfiguration() + ",\t"
                 + getParameterName(1) + "=" + clusterThreshold + ",\t"
                 + getParameterName(2) + "=" + matrixSimThreshold + ",\t"
-                + getParameterName(3) + "=" + similarityChecksLimit;
+                + getParameterName(3) + "=" + similarityChecksLimit + ",\t"
+                + getParameterName(4) + "=" + pruningThreshold + ",\t"
+                + getParameterName(5) + "=" + noOfThreads;
     }
 
     @Override
@@ -178,6 +273,10 @@ public class MarkovClustering extends AbstractEntityClustering {
                 + "4)" + getParameterDescription(3) + ".";
     }
 
+    public int getNoOfThreads() {
+        return noOfThreads;
+    }
+
     @Override
     public int getNumberOfGridConfigurations() {
         return super.getNumberOfGridConfigurations() * gridCThreshold.getNumberOfConfigurations()
@@ -241,6 +340,10 @@ public class MarkovClustering extends AbstractEntityClustering {
                 return "The " + getParameterName(1) + " determines the similarity threshold for compariing all cells of two matrices and considering them similar.";
             case 3:
                 return "The " + getParameterName(1) + " determines the maximum number of repetitions we apply the expansion-inflation process.";
+            case 4:
+                return "The " + getParameterName(4) + " determines the minimum value of a matrix entry that survives inflation.";
+            case 5:
+                return "The " + getParameterName(5) + " determines how many threads expand and inflate the rows of the similarity matrix.";
             default:
                 return "invalid parameter id";
         }
@@ -257,71 +360,15 @@ public class MarkovClustering extends AbstractEntityClustering {
                 return "Matrix Similarity Threshold";
             case 3:
                 return "Similarity Checks Limit";
+            case 4:
+                return "Pruning Threshold";
+            case 5:
+                return "Number of Threads";
             default:
                 return "invalid parameter id";
         }
     }
 
-    private void hadamard(double[][] a, int pow) {
-        int m1 = a.length;
-        int n1 = a[0].length;
-        for (int i = 0; i < m1; i++) {
-            for (int j = 0; j < n1; j++) {
-                a[i][j] = Math.pow(a[i][j], pow);
-            }
-        }
-    }
-
-    private double[][] multiply(double[][] a, double[][] b) {
-        int n1 = a.length;
-        if (n1 != a[0].length) {
-            throw new RuntimeException("Illegal matrix dimensions.");
-        }
-
-        int upLimit = n1;
-        int lowLimit = 0;
-        if (datasetLimit != 0) {
-            upLimit = datasetLimit;
-            lowLimit = datasetLimit;
-        }
-
-        final double[][] c = new double[n1][n1];
-        for (int i = 0; i < upLimit; i++) {
-            for (int j = lowLimit; j < n1; j++) {
-                for (int k = 0; k < n1; k++) {
-                    c[i][j] += a[i][k] * b[k][j];
-                }
-            }
-        }
-
-        if (datasetLimit == 0) {
-            return c;
-        }
-
-        for (int i = 0; i < upLimit; i++) {
-            c[i][i] += a[i][i] * b[i][i];
-        }
-        for (int j = lowLimit; j < n1; j++) {
-            c[j][j] += a[j][j] * b[j][j];
-        }
-        return c;
-    }
-
-    private void normalizeColumns(double[][] a) {
-        int m1 = a.length;
-        int n1 = a[0].length;
-        for (int j = 0; j < n1; j++) {
-            double sumCol = 0.0;
-            for (int i = 0; i < m1; i++) {
-                sumCol += a[i][j];
-            }
-
-            for (int i = 0; i < m1; i++) {
-                a[i][j] /= sumCol;
-            }
-        }
-    }
-
     public void setClusterThreshold(double clusterThreshold) {
         this.clusterThreshold = clusterThreshold;
     }
@@ -330,6 +377,15 @@ public class MarkovClustering extends AbstractEntityClustering {
         this.matrixSimThreshold = matrixSimThreshold;
     }
 
+    public void setNoOfThreads(int noOfThreads) {
+        if (noOfThreads < 1) {
+            Log.error("The number of threads should be a positive integer! Using a single thread instead.");
+            this.noOfThreads = 1;
+        } else {
+            this.noOfThreads = noOfThreads;
+        }
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         super.setNextRandomConfiguration();
@@ -367,7 +423,26 @@ public class MarkovClustering extends AbstractEntityClustering {
         similarityChecksLimit = (Integer) randomSCLimit.getNumberedRandom(iterationNumber);
     }
 
+    public void setPruningThreshold(double pruningThreshold) {
+        this.pruningThreshold = pruningThreshold;
+    }
+
     public void setSimilarityChecksLimit(int similarityChecksLimit) {
         this.similarityChecksLimit = similarityChecksLimit;
     }
+
+    private static class SparseMatrix {
+
+        private boolean converged;
+        private final int[] rowStarts;
+        private final TIntArrayList columns;
+        private final TDoubleArrayList values;
+
+        private SparseMatrix(int noOfRows) {
+            converged = true;
+            rowStarts = new int[noOfRows + 1];
+            columns = new TIntArrayList();
+            values = new TDoubleArrayList();
+        }
+    }
 }
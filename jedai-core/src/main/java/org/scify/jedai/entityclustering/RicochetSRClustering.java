@@ -15,7 +15,6 @@
  */
 package org.scify.jedai.entityclustering;
 
-import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EquivalenceCluster;
 import org.scify.jedai.datamodel.SimilarityPairs;
 import org.scify.jedai.datamodel.VertexWeight;
@@ -29,7 +28,6 @@ import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Queue;
@@ -61,21 +59,20 @@ public class RicochetSRClustering extends AbstractEntityClustering {
             connections.add(i, new TIntDoubleHashMap());
         }
 
-        final Iterator<Comparison> iterator = simPairs.getPairIterator();
-        while (iterator.hasNext()) {	// add an edge for every pair of entities with a weight higher than the threshold
-            final Comparison comparison = iterator.next();
-            int entityId2 = comparison.getEntityId2() + datasetLimit;
-            if (threshold < comparison.getUtilityMeasure()) {
-                edgesWeight[comparison.getEntityId1()] += comparison.getUtilityMeasure();
-                edgesWeight[entityId2] += comparison.getUtilityMeasure();
+        // add an edge for every pair of entities with a weight higher than the threshold
+        simPairs.forEachPair((entityId1, id2, similarity) -> {
+            int entityId2 = id2 + datasetLimit;
+            if (threshold < similarity) {
+                edgesWeight[entityId1] += similarity;
+                edgesWeight[entityId2] += similarity;
 
-                edgesAttached[comparison.getEntityId1()]++;
+                edgesAttached[entityId1]++;
                 edgesAttached[entityId2]++;
 
-                connections.get(comparison.getEntityId1()).put(entityId2, comparison.getUtilityMeasure());
-                connections.get(entityId2).put(comparison.getEntityId1(), comparison.getUtilityMeasure());
+                connections.get(entityId1).put(entityId2, similarity);
+                connections.get(entityId2).put(entityId1, similarity);
             }
-        }
+        });
         simPairs = null;
 
         for (int i = 0; i < noOfEntities; i++) {
@@ -15,7 +15,6 @@
  */
 package org.scify.jedai.entityclustering;
 
-import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EquivalenceCluster;
 import org.scify.jedai.datamodel.SimilarityEdge;
 import org.scify.jedai.datamodel.SimilarityPairs;
@@ -24,7 +23,6 @@ import org.scify.jedai.utilities.comparators.DecSimilarityEdgeComparator;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
-import java.util.Iterator;
 import java.util.PriorityQueue;
 import java.util.Queue;
 
@@ -57,15 +55,14 @@ public class UniqueMappingClustering extends AbstractEntityClustering {
             return null; //the method is only applicable to Clean-Clean ER
         }
 
-        final Queue<SimilarityEdge> SEqueue = new PriorityQueue<>(simPairs.getNoOfComparisons(), new DecSimilarityEdgeComparator());
+        final Queue<SimilarityEdge> SEqueue = new PriorityQueue<>(new DecSimilarityEdgeComparator());
 
-        final Iterator<Comparison> iterator = simPairs.getPairIterator();
-        while (iterator.hasNext()) { // add a similarity edge to the queue, for every pair of entities with a weight higher than the threshold
-            Comparison comparison = iterator.next();
-            if (threshold < comparison.getUtilityMeasure()) {
-                SEqueue.add(new SimilarityEdge(comparison.getEntityId1(), comparison.getEntityId2() + datasetLimit, comparison.getUtilityMeasure()));
+        // add a similarity edge to the queue, for every pair of entities with a weight higher than the threshold
+        simPairs.forEachPair((entityId1, entityId2, similarity) -> {
+            if (threshold < similarity) {
+                SEqueue.add(new SimilarityEdge(entityId1, entityId2 + datasetLimit, similarity));
             }
-        }
+        });
         simPairs = null;
 
         while (!SEqueue.isEmpty()) {
@@ -15,13 +15,22 @@
  */
 package org.scify.jedai.entitymatching;
 
+import com.esotericsoftware.minlog.Log;
+
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.IComparisonConsumer;
+import org.scify.jedai.datamodel.ISimilarityPairConsumer;
 import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.textmodels.CorpusStatistics;
+import org.scify.jedai.textmodels.GraphModel;
+import org.scify.jedai.utilities.ParallelProcessing;
 import org.scify.jedai.utilities.enumerations.RepresentationModel;
 import org.scify.jedai.utilities.enumerations.SimilarityMetric;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.scify.jedai.configuration.gridsearch.IntGridSearchConfiguration;
 import org.scify.jedai.datamodel.RepModelSimMetricCombo;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
@@ -32,7 +41,14 @@ import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
  */
 public abstract class AbstractEntityMatching implements IEntityMatching {
 
+    protected final static int WINDOW_SIZE = 1 << 16; // comparisons per thread in every window
+
+    protected boolean floatSimilarities;
     protected boolean isCleanCleanER;
+    protected int noOfThreads;
+    protected long maxInMemoryBytes;
+
+    protected CorpusStatistics corpusStatistics;
 
     protected final IntGridSearchConfiguration gridCombo;
     protected final IntRandomSearchConfiguration randomCombo;
@@ -47,6 +63,9 @@ public abstract class AbstractEntityMatching implements IEntityMatching {
         modelMetricCombinations = RepModelSimMetricCombo.getAllValidCombos();
         gridCombo = new IntGridSearchConfiguration(modelMetricCombinations.size() - 1, 0, 1);
         randomCombo = new IntRandomSearchConfiguration(modelMetricCombinations.size(), 0);
+        floatSimilarities = false;
+        maxInMemoryBytes = -1;
+        noOfThreads = 1;
     }
 
     @Override
@@ -54,11 +73,120 @@ public abstract class AbstractEntityMatching implements IEntityMatching {
         return this.executeComparisons(blocks, profiles, null);
     }
 
+    @Override
+    public SimilarityPairs executeComparisons(List<AbstractBlock> blocks,
+            List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        final SimilarityPairs simPairs = maxInMemoryBytes < 0
+                ? SimilarityPairs.getSimilarityPairs(profilesD2 != null, blocks, floatSimilarities)
+                : SimilarityPairs.getSimilarityPairs(profilesD2 != null, blocks, floatSimilarities, maxInMemoryBytes);
+        executeComparisons(blocks, profilesD1, profilesD2, simPairs);
+        return simPairs;
+    }
+
+    public abstract void executeComparisons(List<AbstractBlock> blocks, List<EntityProfile> profilesD1,
+            List<EntityProfile> profilesD2, ISimilarityPairConsumer consumer);
+
+    public int getNoOfThreads() {
+        return noOfThreads;
+    }
+
     @Override
     public int getNumberOfGridConfigurations() {
         return gridCombo.getNumberOfConfigurations();
     }
 
+    protected abstract double getSimilarity(int entityId1, int entityId2);
+
+    /**
+     * Passes all comparisons of the given blocks to the consumer in the order of
+     * their block iterators. With more than one thread, the comparisons are
+     * gathered in windows and every thread estimates the similarities of a
+     * disjoint slice of the current window, so the output remains the same.
+     * Every thread releases the comparator of the n-gram graph models when it
+     * finishes its slice or, sequentially, all comparisons.
+     */
+    protected void processComparisons(List<AbstractBlock> blocks, ISimilarityPairConsumer consumer) {
+        if (noOfThreads <= 1) {
+            final IComparisonConsumer comparisonConsumer = (entityId1, entityId2)
+                    -> consumer.accept(entityId1, entityId2, getSimilarity(entityId1, entityId2));
+            try {
+                for (AbstractBlock block : blocks) {
+                    block.forEachComparison(comparisonConsumer);
+                }
+            } finally {
+                GraphModel.releaseComparator();
+            }
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(noOfThreads);
+        try {
+            final ComparisonsWindow window = new ComparisonsWindow(executor, consumer);
+            for (AbstractBlock block : blocks) {
+                block.forEachComparison(window);
+            }
+            window.process();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Buffers the comparisons of the blocks in primitive arrays until the
+     * window is full and then estimates their similarities in parallel.
+     */
+    private final class ComparisonsWindow implements IComparisonConsumer {
+
+        private int windowComparisons;
+        private final double[] similarities;
+        private final int[] entityIds1;
+        private final int[] entityIds2;
+        private final ExecutorService executor;
+        private final ISimilarityPairConsumer consumer;
+
+        ComparisonsWindow(ExecutorService executor, ISimilarityPairConsumer consumer) {
+            this.consumer = consumer;
+            this.executor = executor;
+            final int windowSize = noOfThreads * WINDOW_SIZE;
+            entityIds1 = new int[windowSize];
+            entityIds2 = new int[windowSize];
+            similarities = new double[windowSize];
+            windowComparisons = 0;
+        }
+
+        @Override
+        public void accept(int entityId1, int entityId2) {
+            entityIds1[windowComparisons] = entityId1;
+            entityIds2[windowComparisons] = entityId2;
+            if (++windowComparisons == entityIds1.length) {
+                process();
+            }
+        }
+
+        void process() {
+            if (windowComparisons == 0) {
+                return;
+            }
+
+            final int[] limits = ParallelProcessing.getPartitionLimits(windowComparisons, noOfThreads);
+            ParallelProcessing.processPartitions(executor, limits, (partitionId, start, end) -> {
+                try {
+                    for (int i = start; i < end; i++) {
+                        similarities[i] = getSimilarity(entityIds1[i], entityIds2[i]);
+                    }
+                } finally {
+                    GraphModel.releaseComparator();
+                }
+                return null;
+            });
+
+            for (int i = 0; i < windowComparisons; i++) {
+                consumer.accept(entityIds1[i], entityIds2[i], similarities[i]);
+            }
+            windowComparisons = 0;
+        }
+    }
+
     @Override
     public void setNextRandomConfiguration() {
         int comboId = (Integer) randomCombo.getNextRandomValue();
@@ -75,6 +203,32 @@ public abstract class AbstractEntityMatching implements IEntityMatching {
         simMetric = selectedCombo.getSimMetric();
     }
     
+    /**
+     * Stores the estimated similarities as floats instead of doubles, halving
+     * the memory they occupy in the returned similarity pairs.
+     */
+    public void setFloatSimilarities(boolean floatSimilarities) {
+        this.floatSimilarities = floatSimilarities;
+    }
+
+    /**
+     * Sets the maximum number of bytes of similarity pairs that are kept in
+     * memory; larger outputs are stored in a temporary memory-mapped file.
+     * A negative value restores the default limit of SimilarityPairs.
+     */
+    public void setMaxInMemoryBytes(long maxInMemoryBytes) {
+        this.maxInMemoryBytes = maxInMemoryBytes;
+    }
+
+    public void setNoOfThreads(int noOfThreads) {
+        if (noOfThreads < 1) {
+            Log.error("The number of threads should be a positive integer! Using a single thread instead.");
+            this.noOfThreads = 1;
+        } else {
+            this.noOfThreads = noOfThreads;
+        }
+    }
+
     @Override
     public void setNumberedRandomConfiguration(int iterationNumber) {
         int comboId = (Integer) randomCombo.getNumberedRandom(iterationNumber);
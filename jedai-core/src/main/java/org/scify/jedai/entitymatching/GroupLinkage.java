@@ -17,13 +17,13 @@ package org.scify.jedai.entitymatching;
 
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.Attribute;
-import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.ISimilarityPairConsumer;
 import org.scify.jedai.datamodel.SimilarityEdge;
-import org.scify.jedai.datamodel.SimilarityPairs;
 import org.scify.jedai.utilities.comparators.DecSimilarityEdgeComparator;
 import org.scify.jedai.utilities.enumerations.RepresentationModel;
 import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+import org.scify.jedai.textmodels.CorpusStatistics;
 import org.scify.jedai.textmodels.ITextModel;
 
 import com.esotericsoftware.minlog.Log;
@@ -58,8 +58,8 @@ public class GroupLinkage extends AbstractEntityMatching {
     }
 
     @Override
-    public SimilarityPairs executeComparisons(List<AbstractBlock> blocks,
-            List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+    public void executeComparisons(List<AbstractBlock> blocks, List<EntityProfile> profilesD1,
+            List<EntityProfile> profilesD2, ISimilarityPairConsumer consumer) {
         Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
         
         if (profilesD1 == null) {
@@ -69,30 +69,14 @@ public class GroupLinkage extends AbstractEntityMatching {
         }
 
         isCleanCleanER = false;
+        corpusStatistics = new CorpusStatistics();
         entityModelsD1 = getModels(DATASET_1, profilesD1);
         if (profilesD2 != null) {
             isCleanCleanER = true;
             entityModelsD2 = getModels(DATASET_2, profilesD2);
         }
         
-        final SimilarityPairs simPairs = new SimilarityPairs(isCleanCleanER, blocks);
-        blocks.stream().map((block) -> block.getComparisonIterator()).forEachOrdered((iterator) -> {
-            while (iterator.hasNext()) {
-                final Comparison currentComparison = iterator.next();
-                final Queue<SimilarityEdge> similarityQueue = getSimilarityEdges(currentComparison);
-                final WeightedGraph<String, DefaultWeightedEdge> similarityGraph = getSimilarityGraph(similarityQueue);
-                int verticesNum = entityModelsD1[currentComparison.getEntityId1()].length;
-                if (isCleanCleanER) {
-                    verticesNum += entityModelsD2[currentComparison.getEntityId2()].length;
-                } else {
-                    verticesNum += entityModelsD1[currentComparison.getEntityId2()].length;
-                }
-                currentComparison.setUtilityMeasure(getSimilarity(similarityGraph, verticesNum));
-                simPairs.addComparison(currentComparison);
-            }
-        });
-
-        return simPairs;
+        processComparisons(blocks, consumer);
     }
 
     @Override
@@ -125,7 +109,6 @@ public class GroupLinkage extends AbstractEntityMatching {
     private ITextModel[][] getModels(int datasetId, List<EntityProfile> profiles) {
         int entityCounter = 0;
         final ITextModel[][] ModelsList = new ITextModel[profiles.size()][];
-        RepresentationModel.resetGlobalValues(datasetId, representationModel);
         for (EntityProfile profile : profiles) {
             int validAttributes = 0;
             validAttributes = profile.getAttributes().stream().filter((attribute) -> (!attribute.getValue().isEmpty())).map((_item) -> 1).reduce(validAttributes, Integer::sum);
@@ -134,7 +117,7 @@ public class GroupLinkage extends AbstractEntityMatching {
             ModelsList[entityCounter] = new ITextModel[validAttributes];
             for (Attribute attribute : profile.getAttributes()) {
                 if (!attribute.getValue().isEmpty()) {
-                    ModelsList[entityCounter][counter] = RepresentationModel.getModel(datasetId, representationModel, simMetric, attribute.getName());
+                    ModelsList[entityCounter][counter] = RepresentationModel.getModel(datasetId, representationModel, simMetric, attribute.getName(), corpusStatistics);
                     ModelsList[entityCounter][counter].updateModel(attribute.getValue());
                     ModelsList[entityCounter][counter].finalizeModel();
                     counter++;
@@ -210,6 +193,19 @@ public class GroupLinkage extends AbstractEntityMatching {
         }
     }
     
+    @Override
+    protected double getSimilarity(int entityId1, int entityId2) {
+        final Queue<SimilarityEdge> similarityQueue = getSimilarityEdges(entityId1, entityId2);
+        final WeightedGraph<String, DefaultWeightedEdge> similarityGraph = getSimilarityGraph(similarityQueue);
+        int verticesNum = entityModelsD1[entityId1].length;
+        if (isCleanCleanER) {
+            verticesNum += entityModelsD2[entityId2].length;
+        } else {
+            verticesNum += entityModelsD1[entityId2].length;
+        }
+        return getSimilarity(similarityGraph, verticesNum);
+    }
+
     private double getSimilarity(WeightedGraph<String, DefaultWeightedEdge> simGraph, int verticesNum) {
         double nominator = 0;
         double denominator = (double) verticesNum; //m1+m2
@@ -220,13 +216,13 @@ public class GroupLinkage extends AbstractEntityMatching {
         return nominator / denominator;
     }
 
-    private Queue<SimilarityEdge> getSimilarityEdges(Comparison comparison) {
-        final ITextModel[] model1 = entityModelsD1[comparison.getEntityId1()];
+    private Queue<SimilarityEdge> getSimilarityEdges(int entityId1, int entityId2) {
+        final ITextModel[] model1 = entityModelsD1[entityId1];
         ITextModel[] model2;
         if (isCleanCleanER) {
-            model2 = entityModelsD2[comparison.getEntityId2()];
+            model2 = entityModelsD2[entityId2];
         } else {
-            model2 = entityModelsD1[comparison.getEntityId2()];
+            model2 = entityModelsD1[entityId2];
         }
         
         int s1 = model1.length;
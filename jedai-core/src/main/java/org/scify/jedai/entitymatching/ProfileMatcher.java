@@ -19,7 +19,8 @@ import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.Attribute;
 import org.scify.jedai.datamodel.Comparison;
 import org.scify.jedai.datamodel.EntityProfile;
-import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.datamodel.ISimilarityPairConsumer;
+import org.scify.jedai.textmodels.CorpusStatistics;
 import org.scify.jedai.textmodels.ITextModel;
 import org.scify.jedai.utilities.enumerations.RepresentationModel;
 import org.scify.jedai.utilities.enumerations.SimilarityMetric;
@@ -49,8 +50,8 @@ public class ProfileMatcher extends AbstractEntityMatching {
     }
 
     @Override
-    public SimilarityPairs executeComparisons(List<AbstractBlock> blocks,
-            List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+    public void executeComparisons(List<AbstractBlock> blocks, List<EntityProfile> profilesD1,
+            List<EntityProfile> profilesD2, ISimilarityPairConsumer consumer) {
         Log.info("Applying " + getMethodName() + " with the following configuration : " + getMethodConfiguration());
 
         if (profilesD1 == null) {
@@ -60,21 +61,14 @@ public class ProfileMatcher extends AbstractEntityMatching {
         }
 
         isCleanCleanER = false;
+        corpusStatistics = new CorpusStatistics();
         entityModelsD1 = getModels(DATASET_1, profilesD1);
         if (profilesD2 != null) {
             isCleanCleanER = true;
             entityModelsD2 = getModels(DATASET_2, profilesD2);
         }
 
-        final SimilarityPairs simPairs = new SimilarityPairs(isCleanCleanER, blocks);
-        blocks.stream().map((block) -> block.getComparisonIterator()).forEachOrdered((iterator) -> {
-            while (iterator.hasNext()) {
-                Comparison currentComparison = iterator.next();
-                currentComparison.setUtilityMeasure(getSimilarity(currentComparison));
-                simPairs.addComparison(currentComparison);
-            }
-        });
-        return simPairs;
+        processComparisons(blocks, consumer);
     }
 
     @Override
@@ -104,9 +98,8 @@ public class ProfileMatcher extends AbstractEntityMatching {
     private ITextModel[] getModels(int datasetId, List<EntityProfile> profiles) {
         int counter = 0;
         final ITextModel[] models = new ITextModel[profiles.size()];
-        RepresentationModel.resetGlobalValues(datasetId, representationModel);
         for (EntityProfile profile : profiles) {
-            models[counter] = RepresentationModel.getModel(datasetId, representationModel, simMetric, profile.getEntityUrl());
+            models[counter] = RepresentationModel.getModel(datasetId, representationModel, simMetric, profile.getEntityUrl(), corpusStatistics);
             for (Attribute attribute : profile.getAttributes()) {
                 models[counter].updateModel(attribute.getValue());
             }
@@ -167,10 +160,15 @@ public class ProfileMatcher extends AbstractEntityMatching {
     }
 
     public double getSimilarity(Comparison comparison) {
+        return getSimilarity(comparison.getEntityId1(), comparison.getEntityId2());
+    }
+
+    @Override
+    protected double getSimilarity(int entityId1, int entityId2) {
         if (isCleanCleanER) {
-            return entityModelsD1[comparison.getEntityId1()].getSimilarity(entityModelsD2[comparison.getEntityId2()]);
+            return entityModelsD1[entityId1].getSimilarity(entityModelsD2[entityId2]);
         }
 
-        return entityModelsD1[comparison.getEntityId1()].getSimilarity(entityModelsD1[comparison.getEntityId2()]);
+        return entityModelsD1[entityId1].getSimilarity(entityModelsD1[entityId2]);
     }
 }
@@ -34,6 +34,8 @@ import org.scify.jedai.datamodel.Attribute;
 import org.scify.jedai.datamodel.EntityProfile;
 import org.scify.jedai.datamodel.RepModelSimMetricCombo;
 import org.scify.jedai.configuration.randomsearch.IntRandomSearchConfiguration;
+import org.scify.jedai.textmodels.CorpusStatistics;
+import org.scify.jedai.textmodels.GraphModel;
 import org.scify.jedai.textmodels.ITextModel;
 import org.scify.jedai.utilities.enumerations.RepresentationModel;
 import org.scify.jedai.utilities.enumerations.SimilarityMetric;
@@ -52,6 +54,7 @@ public abstract class AbstractAttributeClustering implements ISchemaClustering {
     protected int[] globalMostSimilarIds;
     protected double[] globalMaxSimilarities;
 
+    protected CorpusStatistics corpusStatistics;
     protected final IntGridSearchConfiguration gridCombo;
     protected final IntRandomSearchConfiguration randomCombo;
     protected ITextModel[][] attributeModels;
@@ -84,7 +87,7 @@ public abstract class AbstractAttributeClustering implements ISchemaClustering {
         final TObjectIntIterator<String> it = attrNameIndex.iterator();
         while (it.hasNext()) {
             it.advance();
-            attributeModels[datasetId][it.value() - 1] = RepresentationModel.getModel(datasetId, repModel, simMetric, it.key());
+            attributeModels[datasetId][it.value() - 1] = RepresentationModel.getModel(datasetId, repModel, simMetric, it.key(), corpusStatistics);
         }
 
         for (EntityProfile profile : profiles) {
@@ -190,6 +193,7 @@ public abstract class AbstractAttributeClustering implements ISchemaClustering {
                 executeDirtyErComparisons(i, coOccurringAttrs);
             }
         }
+        GraphModel.releaseComparator();
     }
 
     private void executeCleanCleanErComparisons(int attributeId, TIntSet coOccurringAttrs) {
@@ -247,6 +251,7 @@ public abstract class AbstractAttributeClustering implements ISchemaClustering {
 
     @Override
     public TObjectIntMap<String>[] getClusters(List<EntityProfile> profilesD1, List<EntityProfile> profilesD2) {
+        corpusStatistics = new CorpusStatistics();
         buildAttributeModels(DATASET_1, profilesD1);
         attributesDelimiter = -1;
         noOfAttributes = attrNameIndex.size();
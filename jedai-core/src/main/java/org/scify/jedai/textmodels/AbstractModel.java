@@ -31,13 +31,14 @@ public abstract class AbstractModel implements ITextModel, Serializable {
 
     protected final int datasetId;
     protected final int nSize;
-    protected static double[] NO_OF_DOCUMENTS = {0, 0};
-    
+
+    protected final CorpusStatistics corpusStatistics;
     protected final RepresentationModel modelType;
     protected final SimilarityMetric simMetric;
     protected final String instanceName;
     
-    public AbstractModel(int dId, int n, RepresentationModel md, SimilarityMetric sMetric, String iName) {
+    public AbstractModel(int dId, int n, RepresentationModel md, SimilarityMetric sMetric, String iName, CorpusStatistics cStats) {
+        corpusStatistics = cStats;
         datasetId = dId;
         instanceName = iName;
         modelType = md;
@@ -45,6 +46,10 @@ public abstract class AbstractModel implements ITextModel, Serializable {
         simMetric = sMetric;
     }
     
+    public CorpusStatistics getCorpusStatistics() {
+        return corpusStatistics;
+    }
+    
     public int getDatasetId() {
         return datasetId;
     }
@@ -58,10 +63,6 @@ public abstract class AbstractModel implements ITextModel, Serializable {
         return modelType;
     }
     
-    public static double getNoOfDocuments(int datasetId) {
-        return NO_OF_DOCUMENTS[datasetId];
-    }
-    
     public int getNSize() {
         return nSize;
     }
@@ -69,8 +70,4 @@ public abstract class AbstractModel implements ITextModel, Serializable {
     public SimilarityMetric getSimilarityMetric() {
         return simMetric;
     }
-    
-    public static void resetGlobalValues(int datasetId) {
-        NO_OF_DOCUMENTS[datasetId] = 0;
-    }
 }
\ No newline at end of file
@@ -21,7 +21,6 @@ import com.esotericsoftware.minlog.Log;
 import gnu.trove.iterator.TObjectIntIterator;
 import gnu.trove.map.TObjectIntMap;
 import gnu.trove.map.hash.TObjectIntHashMap;
-import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -32,44 +31,69 @@ public abstract class BagModel extends AbstractModel {
 
     protected double noOfTotalTerms;
     protected final TObjectIntMap<String> itemsFrequency;
+    // the raw term frequencies, which are not needed by the models with global weights
+    protected SparseVector frequencyVector;
+    // built lazily, because IDF weights are final only after all models of the corpus are finalized
+    protected volatile SparseVector tfIdfVector;
 
-    public BagModel(int dId, int n, RepresentationModel md, SimilarityMetric sMetric, String iName) {
-        super(dId, n, md, sMetric, iName);
+    public BagModel(int dId, int n, RepresentationModel md, SimilarityMetric sMetric, String iName, CorpusStatistics cStats) {
+        super(dId, n, md, sMetric, iName, cStats);
 
         itemsFrequency = new TObjectIntHashMap<>();
     }
 
     @Override
     public void finalizeModel() {
-    }
-    
-    protected double getEnhancedJaccardSimilarity(BagModel oModel) {
-        TObjectIntMap<String> itemVector1 = itemsFrequency;
-        TObjectIntMap<String> itemVector2 = oModel.getItemsFrequency();
-        if (itemVector2.size() < itemVector1.size()) {
-            itemVector1 = oModel.getItemsFrequency();
-            itemVector2 = itemsFrequency;
+        if (hasGlobalWeights()) {
+            for (String term : itemsFrequency.keySet()) {
+                corpusStatistics.addTerm(term);
+                corpusStatistics.incrementDocumentFrequency(datasetId, term);
+            }
+            return;
         }
 
-        double numerator = 0.0;
-        for (TObjectIntIterator<String> iterator = itemVector1.iterator(); iterator.hasNext();) {
+        int counter = 0;
+        final int[] termIds = new int[itemsFrequency.size()];
+        final float[] frequencies = new float[itemsFrequency.size()];
+        for (TObjectIntIterator<String> iterator = itemsFrequency.iterator(); iterator.hasNext();) {
             iterator.advance();
-            numerator += Math.min(iterator.value(), itemVector2.get(iterator.key()));
+            termIds[counter] = corpusStatistics.addTerm(iterator.key());
+            frequencies[counter++] = iterator.value();
         }
-
+        frequencyVector = new SparseVector(termIds, frequencies);
+    }
+    
+    protected double getEnhancedJaccardSimilarity(BagModel oModel) {
+        double numerator = frequencyVector.getSumOfMinimumWeights(oModel.getFrequencyVector());
         double denominator = noOfTotalTerms + oModel.getNoOfTotalTerms() - numerator;
         return numerator / denominator;
     }
 
+    protected SparseVector getFrequencyVector() {
+        return frequencyVector;
+    }
+
+    protected double getIdfWeight(String keyValue) {
+        int frequency = corpusStatistics.getDocumentFrequency(datasetId, keyValue);
+        if (frequency == 0) {
+            return 0;
+        }
+
+        double noOfDocuments = corpusStatistics.getNoOfDocuments(datasetId);
+        if (noOfDocuments < frequency) {
+            Log.error("Error in the computation of IDF weights!!!");
+            return 0;
+        }
+        
+        return Math.log10(noOfDocuments / (1 + frequency));
+    }
+
     protected TObjectIntMap<String> getItemsFrequency() {
         return itemsFrequency;
     }
 
     protected double getJaccardSimilarity(BagModel oModel) {
-        final Set<String> commonKeys = new HashSet<>(itemsFrequency.keySet());
-        commonKeys.retainAll(oModel.getItemsFrequency().keySet());
-
-        double numerator = commonKeys.size();
+        double numerator = frequencyVector.getNoOfCommonTerms(oModel.getFrequencyVector());
         double denominator = itemsFrequency.size() + oModel.getItemsFrequency().size() - numerator;
         return numerator / denominator;
     }
@@ -102,61 +126,47 @@ public abstract class BagModel extends AbstractModel {
     }
 
     protected double getTfCosineSimilarity(BagModel oModel) {
-        double totalTerms2 = oModel.getNoOfTotalTerms();
-
-        TObjectIntMap<String> itemVector1 = itemsFrequency;
-        TObjectIntMap<String> itemVector2 = oModel.getItemsFrequency();
-        if (itemVector2.size() < itemVector1.size()) {
-            itemVector1 = oModel.getItemsFrequency();
-            itemVector2 = itemsFrequency;
-        }
-
-        double numerator = 0.0;
-        for (TObjectIntIterator<String> iterator = itemVector1.iterator(); iterator.hasNext();) {
-            iterator.advance();
-            numerator += iterator.value() * itemVector2.get(iterator.key()) / noOfTotalTerms / totalTerms2;
-        }
-
-        double denominator = getVectorMagnitude() * oModel.getVectorMagnitude();
-        return numerator / denominator;
+        // cosine similarity is scale invariant, so raw frequencies yield the same result as TF weights
+        return frequencyVector.getCosineSimilarity(oModel.getFrequencyVector());
     }
 
     protected double getTfGeneralizedJaccardSimilarity(BagModel oModel) {
-        double totalTerms1 = noOfTotalTerms;
-        double totalTerms2 = oModel.getNoOfTotalTerms();
-        TObjectIntMap<String> itemVector1 = itemsFrequency;
-        TObjectIntMap<String> itemVector2 = oModel.getItemsFrequency();
-        if (itemVector2.size() < itemVector1.size()) {
-            itemVector1 = oModel.getItemsFrequency();
-            itemVector2 = itemsFrequency;
-
-            totalTerms1 = oModel.getNoOfTotalTerms();
-            totalTerms2 = noOfTotalTerms;
-        }
-
-        double numerator = 0.0;
-        for (TObjectIntIterator<String> iterator = itemVector1.iterator(); iterator.hasNext(); ) {
-            iterator.advance();
-            numerator += Math.min(iterator.value() / totalTerms1, itemVector2.get(iterator.key()) / totalTerms2);
-        }
+        return frequencyVector.getGeneralizedJaccardSimilarity(oModel.getFrequencyVector(), 1.0 / noOfTotalTerms, 1.0 / oModel.getNoOfTotalTerms());
+    }
 
-        final Set<String> allKeys = new HashSet<>(itemVector1.keySet());
-        allKeys.addAll(itemVector2.keySet());
-        double denominator = 0.0;
-        for (String key : allKeys) {
-            denominator += Math.max(itemVector1.get(key) / totalTerms1, itemVector2.get(key) / totalTerms2);
+    /**
+     * Models are compared by several threads, but all of them compute the same
+     * vector, so a duplicate computation is harmless and no locking is needed.
+     */
+    protected SparseVector getTfIdfVector() {
+        SparseVector vector = tfIdfVector;
+        if (vector == null) {
+            int counter = 0;
+            final int[] termIds = new int[itemsFrequency.size()];
+            final float[] weights = new float[itemsFrequency.size()];
+            for (TObjectIntIterator<String> iterator = itemsFrequency.iterator(); iterator.hasNext();) {
+                iterator.advance();
+                termIds[counter] = corpusStatistics.getTermId(iterator.key());
+                weights[counter++] = (float) (iterator.value() / noOfTotalTerms * getIdfWeight(iterator.key()));
+            }
+            vector = new SparseVector(termIds, weights);
+            tfIdfVector = vector;
         }
-
-        return numerator / denominator;
+        return vector;
     }
 
     protected double getVectorMagnitude() {
-        double magnitude = 0.0;
-        for (TObjectIntIterator<String> iterator = itemsFrequency.iterator(); iterator.hasNext();) {
-            iterator.advance();
-            magnitude += Math.pow(iterator.value() / noOfTotalTerms, 2.0);
+        if (hasGlobalWeights()) {
+            return getTfIdfVector().getNorm();
         }
+        return frequencyVector.getNorm() / noOfTotalTerms;
+    }
 
-        return Math.sqrt(magnitude);
+    /**
+     * Models with global weights are compared only through their TF-IDF
+     * vector, so they do not build the vector of raw term frequencies.
+     */
+    protected boolean hasGlobalWeights() {
+        return false;
     }
 }
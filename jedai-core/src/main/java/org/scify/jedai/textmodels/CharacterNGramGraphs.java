@@ -30,10 +30,10 @@ public class CharacterNGramGraphs extends GraphModel {
     
     private final static int SEGMENTS_UNIT = 100;
     
-    public CharacterNGramGraphs (int dId, int n, RepresentationModel model, SimilarityMetric simMetric, String iName) {
-        super(dId, n, model, simMetric, iName);
+    public CharacterNGramGraphs (int dId, int n, RepresentationModel model, SimilarityMetric simMetric, String iName, CorpusStatistics cStats) {
+        super(dId, n, model, simMetric, iName, cStats);
         
-        NO_OF_DOCUMENTS[datasetId]++;
+        corpusStatistics.incrementNoOfDocuments(datasetId);
         graphModel = new DocumentNGramHGraph(nSize, nSize, nSize, nSize*SEGMENTS_UNIT);
     }
     
@@ -42,6 +42,6 @@ public class CharacterNGramGraphs extends GraphModel {
         final DocumentNGramGraph tempGraph = new DocumentNGramGraph(nSize, nSize, nSize);
         tempGraph.setDataString(text.toLowerCase());
         
-        graphModel.merge(tempGraph, 1 - (NO_OF_DOCUMENTS[datasetId]-1)/NO_OF_DOCUMENTS[datasetId]);
+        graphModel.merge(tempGraph, 1 - (corpusStatistics.getNoOfDocuments(datasetId)-1)/corpusStatistics.getNoOfDocuments(datasetId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.scify.jedai.textmodels;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.impl.Constants;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import java.io.Serializable;
+
+/**
+ * The global statistics of the documents that are modelled in a single run,
+ * i.e., the number of documents and the document frequency of every term in
+ * each dataset, as well as the integer ids of all terms. Every run creates its own instance and passes it to all of its
+ * models, so that independent runs can share a JVM.
+ *
+ * @author G.A.P. II
+ */
+public class CorpusStatistics implements Serializable {
+
+    private static final long serialVersionUID = 7439178354876509L;
+
+    protected final double[] noOfDocuments;
+    protected final TObjectIntMap<String>[] documentFrequencies;
+    protected final TObjectIntMap<String> termIds;
+
+    public CorpusStatistics() {
+        noOfDocuments = new double[2];
+        documentFrequencies = new TObjectIntMap[2];
+        documentFrequencies[ITextModel.DATASET_1] = new TObjectIntHashMap<>();
+        documentFrequencies[ITextModel.DATASET_2] = new TObjectIntHashMap<>();
+        termIds = new TObjectIntHashMap<>(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
+    }
+
+    /**
+     * Returns the id of the given term, assigning the next free one if the
+     * term has not been seen before. Ids are shared by both datasets, so that
+     * models of different datasets are directly comparable.
+     */
+    public int addTerm(String term) {
+        int termId = termIds.get(term);
+        if (termId < 0) {
+            termId = termIds.size();
+            termIds.put(term, termId);
+        }
+        return termId;
+    }
+
+    public TObjectIntMap<String> getDocumentFrequencies(int datasetId) {
+        return documentFrequencies[datasetId];
+    }
+
+    public int getDocumentFrequency(int datasetId, String term) {
+        return documentFrequencies[datasetId].get(term);
+    }
+
+    public double getNoOfDocuments(int datasetId) {
+        return noOfDocuments[datasetId];
+    }
+
+    public int getTermId(String term) {
+        return termIds.get(term);
+    }
+
+    public int getVocabularySize(int datasetId) {
+        return documentFrequencies[datasetId].size();
+    }
+
+    public void incrementDocumentFrequency(int datasetId, String term) {
+        documentFrequencies[datasetId].adjustOrPutValue(term, 1, 1);
+    }
+
+    public void incrementNoOfDocuments(int datasetId) {
+        noOfDocuments[datasetId]++;
+    }
+
+    public void reset(int datasetId) {
+        noOfDocuments[datasetId] = 0;
+        documentFrequencies[datasetId].clear();
+    }
+}
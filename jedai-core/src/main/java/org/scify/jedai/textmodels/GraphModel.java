@@ -30,14 +30,25 @@ import java.util.Set;
 public abstract class GraphModel extends AbstractModel {
 
     protected DocumentNGramGraph graphModel;
-    protected final static NGramCachedGraphComparator COMPARATOR = new NGramCachedGraphComparator();
+    // the comparator caches intermediate results, so every matching thread gets its own;
+    // it is released through releaseComparator when the thread finishes its comparisons
+    protected final static ThreadLocal<NGramCachedGraphComparator> COMPARATOR = ThreadLocal.withInitial(NGramCachedGraphComparator::new);
 
-    public GraphModel(int dId, int n, RepresentationModel model, SimilarityMetric simMetric, String iName) {
-        super(dId, n, model, simMetric, iName);
+    public GraphModel(int dId, int n, RepresentationModel model, SimilarityMetric simMetric, String iName, CorpusStatistics cStats) {
+        super(dId, n, model, simMetric, iName, cStats);
     }
 
     @Override
     public void finalizeModel() {};
+
+    /**
+     * Discards the comparator of the current thread along with its cache, so
+     * that it is not retained by pooled or long-lived threads after the end of
+     * a matching run.
+     */
+    public static void releaseComparator() {
+        COMPARATOR.remove();
+    }
     
     protected DocumentNGramGraph getGraphModel() {
         return graphModel;
@@ -50,7 +61,7 @@ public abstract class GraphModel extends AbstractModel {
 
     @Override
     public double getSimilarity(ITextModel oModel) {
-        final GraphSimilarity graphSimilarity = COMPARATOR.getSimilarityBetween(this.getGraphModel(), ((GraphModel) oModel).getGraphModel());
+        final GraphSimilarity graphSimilarity = COMPARATOR.get().getSimilarityBetween(this.getGraphModel(), ((GraphModel) oModel).getGraphModel());
         switch (simMetric) {
             case GRAPH_CONTAINMENT_SIMILARITY:
                 return graphSimilarity.ContainmentSimilarity;
@@ -15,61 +15,79 @@
  */
 package org.scify.jedai.textmodels;
 
-import gnu.trove.map.hash.TObjectIntHashMap;
-import java.util.HashSet;
-import java.util.Set;
-import org.scify.jedai.utilities.enumerations.RepresentationModel;
-import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+import gnu.trove.list.TIntList;
+import java.util.Arrays;
 
 /**
+ * The term ids of the token unigrams that MinHash signatures are computed
+ * over. The i-th occurrence of a token forms a separate term, which is hashed
+ * straight to a 32-bit id. Thus, the term ids of a document do not depend on
+ * any other document and no vocabulary or text model is needed, so that the
+ * term ids, and hence the MinHash signatures, of different documents can be
+ * computed independently, e.g., by several threads or over streamed profiles.
  *
  * @author GAP2
  */
-public class MinHashUnigrams extends TokenNGramsWithGlobalWeights {
-    
-    protected final Set<String> termsList;
-    
-    public MinHashUnigrams(String instanceName) {
-        super(DATASET_1, 1, RepresentationModel.TOKEN_UNIGRAMS, SimilarityMetric.JACCARD_SIMILARITY, instanceName);
-        
-        termsList = new HashSet<>();
+public class MinHashUnigrams {
+
+    private final static int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private final static int FNV_PRIME = 0x01000193;
+    private final static int GOLDEN_GAMMA = 0x9E3779B9;
+
+    /**
+     * Adds the hashes of all tokens of the given text to the given list.
+     */
+    public static void addTokenIds(String text, TIntList tokenIds) {
+        for (String token : text.toLowerCase().split("[\\W_]")) {
+            if (!token.isEmpty()) {
+                tokenIds.add(getTokenId(token));
+            }
+        }
     }
 
-    @Override
-    public void finalizeModel() {
-        if (DOC_FREQ[datasetId] == null) {
-            DOC_FREQ[datasetId] = new TObjectIntHashMap<>();
+    /**
+     * Converts the given token hashes into distinct term ids, in ascending
+     * order, with every repeated occurrence of a token forming a new term.
+     */
+    public static int[] getTermIds(TIntList tokenIds) {
+        final int[] ids = tokenIds.toArray();
+        Arrays.sort(ids);
+
+        int occurrence = 0;
+        int previousTokenId = 0;
+        for (int i = 0; i < ids.length; i++) {
+            int tokenId = ids[i];
+            occurrence = (0 < i && tokenId == previousTokenId) ? occurrence + 1 : 0;
+            previousTokenId = tokenId;
+            ids[i] = mix32(tokenId + occurrence * GOLDEN_GAMMA);
         }
-        
-        for (String term : termsList) {
-            int vocabularySize = DOC_FREQ[DATASET_1].size();
-            DOC_FREQ[DATASET_1].putIfAbsent(term, vocabularySize);
+        Arrays.sort(ids);
+
+        int noOfTerms = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[noOfTerms++] = ids[i];
+            }
         }
+        return Arrays.copyOf(ids, noOfTerms);
     }
 
-    public static int getCorpusDimensionality() {
-        return DOC_FREQ[DATASET_1].size();
-    }
-    
-    public Set<Integer> getTermIds() {
-        final Set<Integer> termIds = new HashSet<>();
-        for (String term : termsList) {
-            termIds.add(DOC_FREQ[DATASET_1].get(term));
+    /**
+     * Returns the 32-bit FNV-1a hash of the given token, mixed with the
+     * finalizer of MurmurHash3.
+     */
+    public static int getTokenId(String token) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < token.length(); i++) {
+            hash = (hash ^ token.charAt(i)) * FNV_PRIME;
         }
-        return termIds;
+        return mix32(hash);
     }
-    
-    @Override
-    public void updateModel(String text) {
-        final String[] tokens = text.toLowerCase().split("[\\W_]");
-        for (int j = 0; j < tokens.length; j++) {
-            int counter = 0;
-            String currentTerm;
-            do {
-                counter++;
-                currentTerm = tokens[j] + "#" + counter;
-            } while (termsList.contains(currentTerm));
-            termsList.add(currentTerm);
-        }
+
+    // the finalizer of MurmurHash3
+    private static int mix32(int value) {
+        value = (value ^ (value >>> 16)) * 0x85EBCA6B;
+        value = (value ^ (value >>> 13)) * 0xC2B2AE35;
+        return value ^ (value >>> 16);
     }
 }
@@ -0,0 +1,181 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package org.scify.jedai.textmodels;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The finalized form of a bag model: the ids of its terms in ascending order,
+ * aligned with their weights, along with the Euclidean norm of the weights.
+ * All similarities are computed with a single merge-join over the two arrays.
+ *
+ * @author G.A.P. II
+ */
+public class SparseVector implements Serializable {
+
+    private static final long serialVersionUID = 2848631963514872571L;
+
+    protected final int[] termIds;
+    protected final float[] weights;
+    protected final double norm;
+    protected final double totalWeight;
+
+    public SparseVector(int[] ids, float[] w) {
+        final long[] pairs = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            pairs[i] = ((long) ids[i] << 32) | (Float.floatToRawIntBits(w[i]) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(pairs);
+
+        termIds = new int[pairs.length];
+        weights = new float[pairs.length];
+        double squares = 0;
+        double sum = 0;
+        for (int i = 0; i < pairs.length; i++) {
+            termIds[i] = (int) (pairs[i] >>> 32);
+            weights[i] = Float.intBitsToFloat((int) pairs[i]);
+            squares += weights[i] * weights[i];
+            sum += weights[i];
+        }
+        norm = Math.sqrt(squares);
+        totalWeight = sum;
+    }
+
+    public double getCosineSimilarity(SparseVector other) {
+        final int[] otherIds = other.termIds;
+        final float[] otherWeights = other.weights;
+
+        double numerator = 0;
+        int i = 0, j = 0;
+        while (i < termIds.length && j < otherIds.length) {
+            if (termIds[i] < otherIds[j]) {
+                i++;
+            } else if (otherIds[j] < termIds[i]) {
+                j++;
+            } else {
+                numerator += weights[i++] * otherWeights[j++];
+            }
+        }
+
+        return numerator / (norm * other.norm);
+    }
+
+    public double getGeneralizedJaccardSimilarity(SparseVector other) {
+        return getGeneralizedJaccardSimilarity(other, 1.0, 1.0);
+    }
+
+    /**
+     * Scales the weights of the two vectors on the fly, e.g., to turn raw term
+     * frequencies into TF weights, without storing a second weights array.
+     */
+    public double getGeneralizedJaccardSimilarity(SparseVector other, double scale, double otherScale) {
+        final int[] otherIds = other.termIds;
+        final float[] otherWeights = other.weights;
+
+        double numerator = 0;
+        double denominator = 0;
+        int i = 0, j = 0;
+        while (i < termIds.length && j < otherIds.length) {
+            if (termIds[i] < otherIds[j]) {
+                denominator += Math.max(weights[i++] * scale, 0);
+            } else if (otherIds[j] < termIds[i]) {
+                denominator += Math.max(otherWeights[j++] * otherScale, 0);
+            } else {
+                final double weight = weights[i++] * scale;
+                final double otherWeight = otherWeights[j++] * otherScale;
+                numerator += Math.min(weight, otherWeight);
+                denominator += Math.max(weight, otherWeight);
+            }
+        }
+        while (i < termIds.length) {
+            denominator += Math.max(weights[i++] * scale, 0);
+        }
+        while (j < otherIds.length) {
+            denominator += Math.max(otherWeights[j++] * otherScale, 0);
+        }
+
+        return numerator / denominator;
+    }
+
+    public int getNoOfCommonTerms(SparseVector other) {
+        final int[] otherIds = other.termIds;
+
+        int commonTerms = 0;
+        int i = 0, j = 0;
+        while (i < termIds.length && j < otherIds.length) {
+            if (termIds[i] < otherIds[j]) {
+                i++;
+            } else if (otherIds[j] < termIds[i]) {
+                j++;
+            } else {
+                commonTerms++;
+                i++;
+                j++;
+            }
+        }
+        return commonTerms;
+    }
+
+    public double getNorm() {
+        return norm;
+    }
+
+    public int getNoOfTerms() {
+        return termIds.length;
+    }
+
+    public double getSigmaSimilarity(SparseVector other) {
+        final int[] otherIds = other.termIds;
+        final float[] otherWeights = other.weights;
+
+        double numerator = 0;
+        int i = 0, j = 0;
+        while (i < termIds.length && j < otherIds.length) {
+            if (termIds[i] < otherIds[j]) {
+                i++;
+            } else if (otherIds[j] < termIds[i]) {
+                j++;
+            } else {
+                numerator += weights[i++] + otherWeights[j++];
+            }
+        }
+
+        return numerator / (totalWeight + other.totalWeight);
+    }
+
+    public double getSumOfMinimumWeights(SparseVector other) {
+        final int[] otherIds = other.termIds;
+        final float[] otherWeights = other.weights;
+
+        double sum = 0;
+        int i = 0, j = 0;
+        while (i < termIds.length && j < otherIds.length) {
+            if (termIds[i] < otherIds[j]) {
+                i++;
+            } else if (otherIds[j] < termIds[i]) {
+                j++;
+            } else {
+                sum += Math.min(weights[i++], otherWeights[j++]);
+            }
+        }
+        return sum;
+    }
+
+    public double getTotalWeight() {
+        return totalWeight;
+    }
+}
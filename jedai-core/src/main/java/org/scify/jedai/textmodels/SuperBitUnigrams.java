@@ -15,6 +15,7 @@
  */
 package org.scify.jedai.textmodels;
 
+import java.util.Arrays;
 import org.scify.jedai.utilities.enumerations.RepresentationModel;
 import org.scify.jedai.utilities.enumerations.SimilarityMetric;
 
@@ -24,20 +25,25 @@ import org.scify.jedai.utilities.enumerations.SimilarityMetric;
  */
 public class SuperBitUnigrams extends TokenNGramsWithGlobalWeights {
 
-    public SuperBitUnigrams(String instanceName) {
-        super(DATASET_1, 1, RepresentationModel.TOKEN_UNIGRAMS_TF_IDF, SimilarityMetric.COSINE_SIMILARITY, instanceName);
+    public SuperBitUnigrams(String instanceName, CorpusStatistics cStats) {
+        super(DATASET_1, 1, RepresentationModel.TOKEN_UNIGRAMS_TF_IDF, SimilarityMetric.COSINE_SIMILARITY, instanceName, cStats);
     }
 
-    public static int getCorpusDimensionality() {
-        return DOC_FREQ[DATASET_1].size();
-    }
-
-    public double[] getVector() {
-        int counter = 0;
-        double[] tfIdfVector = new double[getCorpusDimensionality()];
-        for (String token : DOC_FREQ[DATASET_1].keySet()) {
-            tfIdfVector[counter++] = itemsFrequency.get(token) / noOfTotalTerms * getIdfWeight(token);
+    /**
+     * Sets every projection to the product of the tf-idf vector with the
+     * corresponding hyperplane. The coefficients of all hyperplanes for term t
+     * lie in consecutive positions, starting at t * projections.length.
+     */
+    public void project(float[] hyperplanes, double[] projections) {
+        final SparseVector vector = getTfIdfVector();
+        final int noOfHyperplanes = projections.length;
+        Arrays.fill(projections, 0);
+        for (int i = 0; i < vector.termIds.length; i++) {
+            final int offset = vector.termIds[i] * noOfHyperplanes;
+            final float weight = vector.weights[i];
+            for (int j = 0; j < noOfHyperplanes; j++) {
+                projections[j] += weight * hyperplanes[offset + j];
+            }
         }
-        return tfIdfVector;
     }
 }
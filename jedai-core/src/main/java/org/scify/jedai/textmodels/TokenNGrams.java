@@ -25,10 +25,10 @@ import org.scify.jedai.utilities.enumerations.SimilarityMetric;
 
 public class TokenNGrams extends BagModel {
     
-    public TokenNGrams(int dId, int n, RepresentationModel model, SimilarityMetric simMetric, String iName) {
-        super(dId, n, model, simMetric, iName);
+    public TokenNGrams(int dId, int n, RepresentationModel model, SimilarityMetric simMetric, String iName, CorpusStatistics cStats) {
+        super(dId, n, model, simMetric, iName, cStats);
         
-        NO_OF_DOCUMENTS[datasetId]++;
+        corpusStatistics.incrementNoOfDocuments(datasetId);
     }
     
     @Override
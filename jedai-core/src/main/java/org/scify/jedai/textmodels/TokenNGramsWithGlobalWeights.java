@@ -18,9 +18,6 @@ package org.scify.jedai.textmodels;
 import org.scify.jedai.utilities.enumerations.RepresentationModel;
 import org.scify.jedai.utilities.enumerations.SimilarityMetric;
 import com.esotericsoftware.minlog.Log;
-import gnu.trove.iterator.TObjectIntIterator;
-import gnu.trove.map.TObjectIntMap;
-import gnu.trove.map.hash.TObjectIntHashMap;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -30,23 +27,8 @@ import java.util.Set;
  */
 public class TokenNGramsWithGlobalWeights extends TokenNGrams {
 
-    protected final static TObjectIntMap<String>[] DOC_FREQ = new TObjectIntMap[2];
-
-    public TokenNGramsWithGlobalWeights(int did, int n, RepresentationModel model, SimilarityMetric simMetric, String iName) {
-        super(did, n, model, simMetric, iName);
-    }
-
-    @Override
-    public void finalizeModel() {
-        if (DOC_FREQ[datasetId] == null) {
-            DOC_FREQ[datasetId] = new TObjectIntHashMap<>();
-        }
-
-        for (String keyValue : itemsFrequency.keySet()) {
-            if (!DOC_FREQ[datasetId].increment(keyValue)) {
-                DOC_FREQ[datasetId].put(keyValue, 1);
-            }
-        }
+    public TokenNGramsWithGlobalWeights(int did, int n, RepresentationModel model, SimilarityMetric simMetric, String iName, CorpusStatistics cStats) {
+        super(did, n, model, simMetric, iName, cStats);
     }
 
     protected double getARCSSimilarity(TokenNGramsWithGlobalWeights oModel) {
@@ -56,12 +38,12 @@ public class TokenNGramsWithGlobalWeights extends TokenNGrams {
         double similarity = 0;
         if (datasetId == DATASET_1 && datasetId == oModel.getDatasetId()) { // Dirty ER
             for (String key : commonKeys) {
-                double frequency = DOC_FREQ[DATASET_1].get(key);
+                double frequency = corpusStatistics.getDocumentFrequency(DATASET_1, key);
                 similarity += 1.0 / (Math.log1p(frequency * (frequency - 1) / 2.0) / Math.log(2));
             }
         } else if (datasetId != oModel.getDatasetId()) { // Clean-Clean ER
             for (String key : commonKeys) {
-                similarity += 1.0 / (Math.log1p(((double) DOC_FREQ[DATASET_1].get(key)) * DOC_FREQ[DATASET_2].get(key)) / Math.log(2));
+                similarity += 1.0 / (Math.log1p(((double) corpusStatistics.getDocumentFrequency(DATASET_1, key)) * corpusStatistics.getDocumentFrequency(DATASET_2, key)) / Math.log(2));
             }
         } else {
             Log.error("Both models come from dataset 1!");
@@ -71,43 +53,8 @@ public class TokenNGramsWithGlobalWeights extends TokenNGrams {
         return similarity;
     }
 
-    protected double getIdfWeight(String keyValue) {
-        int frequency = DOC_FREQ[datasetId].get(keyValue);
-        if (frequency == 0) {
-            return 0;
-        }
-
-        if (NO_OF_DOCUMENTS[datasetId] < frequency) {
-            Log.error("Error in the computation of IDF weights!!!");
-            return 0;
-        }
-        
-        return Math.log10(NO_OF_DOCUMENTS[datasetId] / (1 + frequency));
-    }
-
     protected double getSigmaSimilarity(TokenNGramsWithGlobalWeights oModel) {
-        double totalTerms2 = oModel.getNoOfTotalTerms();
-        final TObjectIntMap<String> itemVector2 = oModel.getItemsFrequency();
-
-        double numerator = 0.0;
-        for (TObjectIntIterator<String> iterator = itemsFrequency.iterator(); iterator.hasNext();) {
-            iterator.advance();
-            int frequency2 = itemVector2.get(iterator.key());
-            if (0 < frequency2) {
-                numerator += iterator.value() / noOfTotalTerms * getIdfWeight(iterator.key())
-                           + frequency2 / totalTerms2 * oModel.getIdfWeight(iterator.key());
-            }
-        }
-
-        final Set<String> allKeys = new HashSet<>(itemsFrequency.keySet());
-        allKeys.addAll(itemVector2.keySet());
-        double denominator = 0.0;
-        for (String key : allKeys) {
-            denominator += itemsFrequency.get(key) / noOfTotalTerms  * getIdfWeight(key) + 
-                           itemVector2.get(key) / totalTerms2 * oModel.getIdfWeight(key);
-        }
-
-        return numerator / denominator;
+        return getTfIdfVector().getSigmaSimilarity(oModel.getTfIdfVector());
     }
 
     @Override
@@ -129,63 +76,15 @@ public class TokenNGramsWithGlobalWeights extends TokenNGrams {
     }
 
     protected double getTfIdfCosineSimilarity(TokenNGramsWithGlobalWeights oModel) {
-        double totalTerms2 = oModel.getNoOfTotalTerms();
-        final TObjectIntMap<String> itemVector2 = oModel.getItemsFrequency();
-
-        double numerator = 0.0;
-        for (TObjectIntIterator<String> iterator = itemsFrequency.iterator(); iterator.hasNext();) {
-            iterator.advance();
-            int frequency2 = itemVector2.get(iterator.key());
-            if (0 < frequency2) {
-                numerator += (iterator.value() / noOfTotalTerms) * getIdfWeight(iterator.key())
-                           * (frequency2 / totalTerms2) * oModel.getIdfWeight(iterator.key());
-            }
-        }
-
-        double denominator = getVectorMagnitude() * oModel.getVectorMagnitude();
-        return numerator / denominator;
+        return getTfIdfVector().getCosineSimilarity(oModel.getTfIdfVector());
     }
 
     protected double getTfIdfGeneralizedJaccardSimilarity(TokenNGramsWithGlobalWeights oModel) {
-        double totalTerms2 = oModel.getNoOfTotalTerms();
-        final TObjectIntMap<String> itemVector2 = oModel.getItemsFrequency();
-
-        double numerator = 0.0;
-        for (TObjectIntIterator<String> iterator = itemsFrequency.iterator(); iterator.hasNext();) {
-            iterator.advance();
-            int frequency2 = itemVector2.get(iterator.key());
-            if (0 < frequency2) {
-                numerator += Math.min(iterator.value() / noOfTotalTerms * getIdfWeight(iterator.key()),
-                                      frequency2 / totalTerms2 * oModel.getIdfWeight(iterator.key()));
-            }
-        }
-
-        final Set<String> allKeys = new HashSet<>(itemsFrequency.keySet());
-        allKeys.addAll(itemVector2.keySet());
-        double denominator = 0.0;
-        for (String key : allKeys) {
-            denominator += Math.max(itemsFrequency.get(key) / noOfTotalTerms  * getIdfWeight(key),
-                                    itemVector2.get(key) / totalTerms2 * oModel.getIdfWeight(key));
-        }
-
-        return numerator / denominator;
+        return getTfIdfVector().getGeneralizedJaccardSimilarity(oModel.getTfIdfVector());
     }
-    
-    @Override
-    protected double getVectorMagnitude() {
-        double magnitude = 0.0;
-        for (TObjectIntIterator<String> iterator = itemsFrequency.iterator(); iterator.hasNext();) {
-            iterator.advance();
-            magnitude += Math.pow(iterator.value() * getIdfWeight(iterator.key()) / noOfTotalTerms, 2.0);
-        }
 
-        return Math.sqrt(magnitude);
-    }
-    
-    public static void resetGlobalValues(int datasetId) {
-        NO_OF_DOCUMENTS[datasetId] = 0;
-        if (DOC_FREQ[datasetId] != null) {
-            DOC_FREQ[datasetId].clear();
-        }
+    @Override
+    protected boolean hasGlobalWeights() {
+        return true;
     }
 }
@@ -19,8 +19,6 @@ import org.scify.jedai.utilities.datastructures.AbstractDuplicatePropagation;
 import org.scify.jedai.utilities.datastructures.GroundTruthIndex;
 import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
-import org.scify.jedai.datamodel.Comparison;
-import org.scify.jedai.datamodel.ComparisonIterator;
 import org.scify.jedai.datamodel.DecomposedBlock;
 import org.scify.jedai.datamodel.IdDuplicates;
 import org.scify.jedai.datamodel.UnilateralBlock;
@@ -130,23 +128,19 @@ public class BlocksPerformance {
         if (isCleanCleanER) {
             final TIntSet entitiesD2 = new TIntHashSet((int) aggregateCardinality);
             for (AbstractBlock block : blocks) {
-                final ComparisonIterator iterator = block.getComparisonIterator();
-                while (iterator.hasNext()) {
-                    Comparison comparison = iterator.next();
-                    entitiesD1.add(comparison.getEntityId1());
-                    entitiesD2.add(comparison.getEntityId2());
-                }
+                block.forEachComparison((entityId1, entityId2) -> {
+                    entitiesD1.add(entityId1);
+                    entitiesD2.add(entityId2);
+                });
             }
             noOfD1Entities = entitiesD1.size();
             noOfD2Entities = entitiesD2.size();
         } else {
             for (AbstractBlock block : blocks) {
-                final ComparisonIterator iterator = block.getComparisonIterator();
-                while (iterator.hasNext()) {
-                    Comparison comparison = iterator.next();
-                    entitiesD1.add(comparison.getEntityId1());
-                    entitiesD1.add(comparison.getEntityId2());
-                }
+                block.forEachComparison((entityId1, entityId2) -> {
+                    entitiesD1.add(entityId1);
+                    entitiesD1.add(entityId2);
+                });
             }
             noOfD1Entities = entitiesD1.size();
         }
@@ -158,11 +152,7 @@ public class BlocksPerformance {
 
     private void getDuplicatesOfDecomposedBlocks() {
         for (AbstractBlock block : blocks) {
-            ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-                final Comparison comp = iterator.next();
-                abstractDP.isSuperfluous(comp.getEntityId1(), comp.getEntityId2());
-            }
+            block.forEachComparison((entityId1, entityId2) -> abstractDP.isSuperfluous(entityId1, entityId2));
         }
 
         detectedDuplicates = abstractDP.getNoOfDuplicates();
@@ -245,14 +235,12 @@ public class BlocksPerformance {
 
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-                final Comparison currentComparison = iterator.next();
-                final EntityProfile profile1 = profilesD1.get(currentComparison.getEntityId1());
-                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(currentComparison.getEntityId2()) : profilesD1.get(currentComparison.getEntityId2());
+            block.forEachComparison((entityId1, entityId2) -> {
+                final EntityProfile profile1 = profilesD1.get(entityId1);
+                final EntityProfile profile2 = isCleanCleanER ? profilesD2.get(entityId2) : profilesD1.get(entityId2);
 
                 final int originalDuplicates = abstractDP.getNoOfDuplicates();
-                abstractDP.isSuperfluous(currentComparison.getEntityId1(), currentComparison.getEntityId2());
+                abstractDP.isSuperfluous(entityId1, entityId2);
                 final int newDuplicates = abstractDP.getNoOfDuplicates();
 
                 System.out.print(profile1.getEntityUrl() + ",");
@@ -264,7 +252,7 @@ public class BlocksPerformance {
                 }
                 System.out.print("Profile 1:[" + profilesD1 + "]");
                 System.out.println("Profile 2:[" + profilesD2 + "]");
-            }
+            });
         }
 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -310,11 +298,7 @@ public class BlocksPerformance {
         
         abstractDP.resetDuplicates();
         for (AbstractBlock block : blocksToUse) {
-            final ComparisonIterator iterator = block.getComparisonIterator();
-            while (iterator.hasNext()) {
-                final Comparison comp = iterator.next();
-                abstractDP.isSuperfluous(comp.getEntityId1(), comp.getEntityId2());
-            }
+            block.forEachComparison((entityId1, entityId2) -> abstractDP.isSuperfluous(entityId1, entityId2));
         }
                 
         for (IdDuplicates duplicatesPair : abstractDP.getFalseNegatives()) {
@@ -0,0 +1,100 @@
+/*
+ * Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scify.jedai.utilities;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Splits an index range [0, size) into contiguous partitions and processes
+ * them on a fixed pool of threads. The partial results are always returned in
+ * partition order, so that merging them sequentially yields the same output
+ * as a single-threaded pass.
+ *
+ * @author gap2
+ */
+public class ParallelProcessing {
+
+    public interface RangeTask<T> {
+
+        T process(int partitionId, int start, int end);
+    }
+
+    public static int getDefaultNoOfThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public static int[] getPartitionLimits(int size, int noOfPartitions) {
+        int partitions = Math.max(1, Math.min(noOfPartitions, size));
+        final int[] limits = new int[partitions + 1];
+        for (int i = 0; i <= partitions; i++) {
+            limits[i] = (int) ((long) size * i / partitions);
+        }
+        return limits;
+    }
+
+    public static <T> List<T> processPartitions(int noOfThreads, int size, RangeTask<T> task) {
+        return processPartitions(noOfThreads, getPartitionLimits(size, noOfThreads), task);
+    }
+
+    public static <T> List<T> processPartitions(int noOfThreads, int[] limits, RangeTask<T> task) {
+        final int noOfPartitions = limits.length - 1;
+        final List<T> results = new ArrayList<>(noOfPartitions);
+        if (noOfThreads <= 1 || noOfPartitions == 1) {
+            for (int i = 0; i < noOfPartitions; i++) {
+                results.add(task.process(i, limits[i], limits[i + 1]));
+            }
+            return results;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(noOfThreads, noOfPartitions));
+        try {
+            return processPartitions(executor, limits, task);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static <T> List<T> processPartitions(ExecutorService executor, int[] limits, RangeTask<T> task) {
+        final int noOfPartitions = limits.length - 1;
+        final List<T> results = new ArrayList<>(noOfPartitions);
+        try {
+            final List<Future<T>> futures = new ArrayList<>(noOfPartitions);
+            for (int i = 0; i < noOfPartitions; i++) {
+                final int partitionId = i;
+                futures.add(executor.submit(() -> task.process(partitionId, limits[partitionId], limits[partitionId + 1])));
+            }
+
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            Log.error("Parallel processing was interrupted", ex);
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            Log.error("Parallel processing failed", ex.getCause());
+            throw new IllegalStateException(ex.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.utilities.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Retains the top-k weighted keys, e.g., entity ids or packed pairs of entity
+ * ids, in two primitive arrays that form a binary min-heap. Equal weights are
+ * broken in favor of the smaller key, so the retained keys do not depend on
+ * the order in which they are offered; hence, heaps filled by separate threads
+ * can be merged into the same top-k as a single heap over all keys.
+ *
+ * @author gap2
+ */
+public class BoundedMinHeap {
+
+    private final static int INITIAL_CAPACITY = 1024;
+
+    private final int capacity;
+    private int size;
+    private double[] weights;
+    private long[] keys;
+
+    public BoundedMinHeap(int k) {
+        capacity = Math.max(0, k);
+        size = 0;
+        weights = new double[Math.min(capacity, INITIAL_CAPACITY)];
+        keys = new long[weights.length];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the key at the given position of the heap, which is in no
+     * particular order.
+     */
+    public long getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the weight of the lowest retained key; once the heap is full, a
+     * key of smaller weight is rejected.
+     */
+    public double getMinimumWeight() {
+        return size == 0 ? Double.NEGATIVE_INFINITY : weights[0];
+    }
+
+    public double getWeight(int index) {
+        return weights[index];
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    // whether the first element ranks lower than the second one
+    private boolean isLower(double weight1, long key1, double weight2, long key2) {
+        return weight1 < weight2 || (weight1 == weight2 && key2 < key1);
+    }
+
+    /**
+     * Adds all keys of the given heap to this one.
+     */
+    public void merge(BoundedMinHeap other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.keys[i], other.weights[i]);
+        }
+    }
+
+    /**
+     * Adds the given key, if the heap is not full or if it ranks higher than
+     * the lowest retained key, which is then evicted.
+     *
+     * @return true if the key was retained
+     */
+    public boolean offer(long key, double weight) {
+        if (size < capacity) {
+            if (size == weights.length) {
+                int newLength = (int) Math.min(capacity, 2L * size);
+                weights = Arrays.copyOf(weights, newLength);
+                keys = Arrays.copyOf(keys, newLength);
+            }
+            siftUp(size++, key, weight);
+            return true;
+        }
+
+        if (size == 0 || !isLower(weights[0], keys[0], weight, key)) {
+            return false;
+        }
+        siftDown(0, key, weight);
+        return true;
+    }
+
+    private void siftDown(int index, long key, double weight) {
+        final int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && isLower(weights[right], keys[right], weights[child], keys[child])) {
+                child = right;
+            }
+            if (!isLower(weights[child], keys[child], weight, key)) {
+                break;
+            }
+            weights[index] = weights[child];
+            keys[index] = keys[child];
+            index = child;
+        }
+        weights[index] = weight;
+        keys[index] = key;
+    }
+
+    private void siftUp(int index, long key, double weight) {
+        while (0 < index) {
+            int parent = (index - 1) >>> 1;
+            if (!isLower(weight, key, weights[parent], keys[parent])) {
+                break;
+            }
+            weights[index] = weights[parent];
+            keys[index] = keys[parent];
+            index = parent;
+        }
+        weights[index] = weight;
+        keys[index] = key;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.utilities.datastructures;
+
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.utilities.ParallelProcessing;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+
+/**
+ * The blocks of every entity in compressed sparse row layout: the ids of all
+ * blocks are stored in a single array, sorted by entity and then by block id,
+ * and the blocks of entity i lie in the range [getStart(i), getEnd(i)).
+ *
+ * The entities of Dataset 2 are shifted by the dataset limit. The index is
+ * built by counting the block assignments of every entity, turning the counts
+ * into offsets through a prefix sum and filling in the block ids; all three
+ * steps are carried out in parallel when multiple threads are given.
+ *
+ * @author gap2
+ */
+public class CompressedEntityBlocks implements Serializable {
+
+    private static final long serialVersionUID = 5462341943583421873L;
+
+    private final static int PARTITIONS_PER_THREAD = 4;
+
+    private interface AssignmentConsumer {
+
+        void accept(int entityId, int blockIndex);
+    }
+
+    private final int[] blockIds;
+    private final int[] offsets;
+
+    /**
+     * @param blocks the unilateral or bilateral blocks to be indexed; block
+     * ids correspond to their position in this list
+     * @param noOfEntities the total number of entities in both datasets
+     * @param datasetLimit the shift of the entity ids of Dataset 2
+     * @param validEntities the entities to be indexed, or null for all
+     * @param noOfThreads the number of threads used for building the index
+     */
+    public CompressedEntityBlocks(List<? extends AbstractBlock> blocks, int noOfEntities, int datasetLimit, IntPredicate validEntities, int noOfThreads) {
+        final int[] limits = ParallelProcessing.getPartitionLimits(blocks.size(), PARTITIONS_PER_THREAD * noOfThreads);
+        final boolean parallel = 1 < noOfThreads && 2 < limits.length;
+
+        //count the blocks of every entity; the count of entity i is stored in offsets[i + 1]
+        offsets = new int[noOfEntities + 1];
+        if (parallel) {
+            final AtomicIntegerArray counters = new AtomicIntegerArray(noOfEntities);
+            ParallelProcessing.processPartitions(noOfThreads, limits, (partitionId, start, end) -> {
+                visitAssignments(blocks, start, end, datasetLimit, validEntities, (entityId, blockIndex) -> counters.incrementAndGet(entityId));
+                return null;
+            });
+            ParallelProcessing.processPartitions(noOfThreads, noOfEntities, (partitionId, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    offsets[i + 1] = counters.get(i);
+                }
+                return null;
+            });
+        } else {
+            visitAssignments(blocks, 0, blocks.size(), datasetLimit, validEntities, (entityId, blockIndex) -> offsets[entityId + 1]++);
+        }
+
+        setPrefixSums(noOfThreads);
+
+        //fill in the block ids of every entity
+        blockIds = new int[offsets[noOfEntities]];
+        if (parallel) {
+            final AtomicIntegerArray cursors = new AtomicIntegerArray(Arrays.copyOf(offsets, noOfEntities));
+            ParallelProcessing.processPartitions(noOfThreads, limits, (partitionId, start, end) -> {
+                visitAssignments(blocks, start, end, datasetLimit, validEntities, (entityId, blockIndex) -> blockIds[cursors.getAndIncrement(entityId)] = blockIndex);
+                return null;
+            });
+
+            // threads interleave their writes, so the blocks of every entity have to be ordered again
+            ParallelProcessing.processPartitions(noOfThreads, noOfEntities, (partitionId, start, end) -> {
+                for (int i = start; i < end; i++) {
+                    Arrays.sort(blockIds, offsets[i], offsets[i + 1]);
+                }
+                return null;
+            });
+        } else {
+            final int[] cursors = Arrays.copyOf(offsets, noOfEntities);
+            visitAssignments(blocks, 0, blocks.size(), datasetLimit, validEntities, (entityId, blockIndex) -> blockIds[cursors[entityId]++] = blockIndex);
+        }
+    }
+
+    /**
+     * Returns a copy of the block ids of the given entity.
+     */
+    public int[] getBlocks(int entityId) {
+        return Arrays.copyOfRange(blockIds, offsets[entityId], offsets[entityId + 1]);
+    }
+
+    /**
+     * Returns the block ids of all entities; those of entity i lie in the
+     * range [getStart(i), getEnd(i)).
+     */
+    public int[] getBlockIds() {
+        return blockIds;
+    }
+
+    public int getEnd(int entityId) {
+        return offsets[entityId + 1];
+    }
+
+    public int getNoOfBlocks(int entityId) {
+        return offsets[entityId + 1] - offsets[entityId];
+    }
+
+    public int getNoOfEntities() {
+        return offsets.length - 1;
+    }
+
+    public int getStart(int entityId) {
+        return offsets[entityId];
+    }
+
+    private void setPrefixSums(int noOfThreads) {
+        final int noOfEntities = offsets.length - 1;
+        if (noOfThreads <= 1) {
+            for (int i = 0; i < noOfEntities; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            return;
+        }
+
+        // sum up every partition, then shift each partition by the total of the preceding ones
+        final int[] limits = ParallelProcessing.getPartitionLimits(noOfEntities, noOfThreads);
+        final List<Integer> partialSums = ParallelProcessing.processPartitions(noOfThreads, limits, (partitionId, start, end) -> {
+            for (int i = start + 1; i < end; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            return start < end ? offsets[end] : 0;
+        });
+
+        final int[] shifts = new int[partialSums.size()];
+        for (int i = 1; i < shifts.length; i++) {
+            shifts[i] = shifts[i - 1] + partialSums.get(i - 1);
+        }
+
+        ParallelProcessing.processPartitions(noOfThreads, limits, (partitionId, start, end) -> {
+            final int shift = shifts[partitionId];
+            for (int i = start; i < end; i++) {
+                offsets[i + 1] += shift;
+            }
+            return null;
+        });
+    }
+
+    private static void visitAssignments(List<? extends AbstractBlock> blocks, int start, int end, int datasetLimit,
+            IntPredicate validEntities, AssignmentConsumer consumer) {
+        for (int blockIndex = start; blockIndex < end; blockIndex++) {
+            final AbstractBlock block = blocks.get(blockIndex);
+            if (block instanceof BilateralBlock) {
+                final BilateralBlock bilBlock = (BilateralBlock) block;
+                for (int id1 : bilBlock.getIndex1Entities()) {
+                    if (validEntities == null || validEntities.test(id1)) {
+                        consumer.accept(id1, blockIndex);
+                    }
+                }
+
+                for (int id2 : bilBlock.getIndex2Entities()) {
+                    int entityId = datasetLimit + id2;
+                    if (validEntities == null || validEntities.test(entityId)) {
+                        consumer.accept(entityId, blockIndex);
+                    }
+                }
+            } else {
+                for (int id : ((UnilateralBlock) block).getEntities()) {
+                    if (validEntities == null || validEntities.test(id)) {
+                        consumer.accept(id, blockIndex);
+                    }
+                }
+            }
+        }
+    }
+}
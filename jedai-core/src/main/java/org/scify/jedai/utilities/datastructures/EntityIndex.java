@@ -20,10 +20,17 @@ import org.scify.jedai.datamodel.AbstractBlock;
 import org.scify.jedai.datamodel.BilateralBlock;
 import org.scify.jedai.datamodel.DecomposedBlock;
 import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.utilities.ParallelProcessing;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 
 /**
+ * Maps every entity to the blocks that contain it. The block ids are kept in
+ * the compressed sparse row layout of CompressedEntityBlocks, which can be
+ * built by multiple threads. A reference to every block is kept, too, so a
+ * block collection that decodes its blocks on demand, like
+ * MappedBlockCollection, is fully loaded on the heap by this index.
  *
  * @author gap2
  */
@@ -38,12 +45,16 @@ public class EntityIndex implements Serializable {
     private int noOfEntities;
     
     private double[] entityComparisons;
-    private int[][] entityBlocks;
+    private CompressedEntityBlocks entityBlocks;
     
     private BilateralBlock[] bBlocks;
     private UnilateralBlock[] uBlocks;
 
     public EntityIndex(List<AbstractBlock> blocks) {
+        this(blocks, 1);
+    }
+
+    public EntityIndex(List<AbstractBlock> blocks, int noOfThreads) {
         if (blocks.isEmpty()) {
             System.err.println("Entity index received an empty block collection as input!");
             return;
@@ -57,10 +68,11 @@ public class EntityIndex implements Serializable {
 
         firstPass(blocks);
         if (cleanCleanER) {
-            indexBilateralEntities();
+            entityBlocks = new CompressedEntityBlocks(Arrays.asList(bBlocks), noOfEntities, datasetLimit, null, noOfThreads);
         } else {
-            indexUnilateralEntities();
+            entityBlocks = new CompressedEntityBlocks(Arrays.asList(uBlocks), noOfEntities, datasetLimit, null, noOfThreads);
         }
+        setEntityComparisons(noOfThreads);
     }
 
     private void firstPass(List<AbstractBlock> blocks) {
@@ -110,18 +122,38 @@ public class EntityIndex implements Serializable {
         return bBlocks;
     }
 
+    /**
+     * Returns the block ids of all entities; those of entity i lie in the
+     * range [getEntityBlocksStart(i), getEntityBlocksEnd(i)).
+     */
+    public int[] getBlockIds() {
+        return entityBlocks.getBlockIds();
+    }
+
     public int getDatasetLimit() {
         return datasetLimit;
     }
 
+    /**
+     * Returns a copy of the block ids of the given entity; iterating over
+     * getBlockIds() avoids the copy.
+     */
     public int[] getEntityBlocks(int entityId, int useDLimit) {
         entityId += useDLimit * datasetLimit;
         if (noOfEntities <= entityId) {
             return null;
         }
-        return entityBlocks[entityId];
+        return entityBlocks.getBlocks(entityId);
     }
-    
+
+    public int getEntityBlocksEnd(int entityId) {
+        return entityBlocks.getEnd(entityId);
+    }
+
+    public int getEntityBlocksStart(int entityId) {
+        return entityBlocks.getStart(entityId);
+    }
+
     public double[] getEntityComparisons() {
         return entityComparisons;
     }
@@ -132,94 +164,49 @@ public class EntityIndex implements Serializable {
 
     public int getNoOfEntityBlocks(int entityId, int useDLimit) {
         entityId += useDLimit * datasetLimit;
-        if (entityBlocks[entityId] == null) {
+        if (noOfEntities <= entityId) {
             return -1;
         }
 
-        return entityBlocks[entityId].length;
+        return entityBlocks.getNoOfBlocks(entityId);
     }
 
     public UnilateralBlock[] getUnilateralBlocks() {
         return uBlocks;
     }
-    
-    public int[][] getWholeIndex() {
-        return entityBlocks;
-    }
-    
-    private void indexBilateralEntities() {
-        final int[] counters = new int[noOfEntities];
-        entityComparisons = new double[noOfEntities];
-        for (BilateralBlock block : bBlocks) {
-            int innerSize1 = block.getIndex1Entities().length;
-            int innerSize2 = block.getIndex2Entities().length;
-            for (int id1 : block.getIndex1Entities()) {
-                counters[id1]++;
-                entityComparisons[id1] += innerSize2;
-            }
 
-            for (int id2 : block.getIndex2Entities()) {
-                int entityId = datasetLimit + id2;
-                counters[entityId]++;
-                entityComparisons[entityId] += innerSize1;
-            }
-        }
-
-        //initialize inverted index
-        entityBlocks = new int[noOfEntities][];
+    /**
+     * Returns a copy of the index as a separate array of block ids per entity.
+     */
+    public int[][] getWholeIndex() {
+        final int[][] wholeIndex = new int[noOfEntities][];
         for (int i = 0; i < noOfEntities; i++) {
-            entityBlocks[i] = new int[counters[i]];
-            counters[i] = 0;
+            wholeIndex[i] = entityBlocks.getBlocks(i);
         }
+        return wholeIndex;
+    }
 
-        //build inverted index
-        int counter = 0;
-        for (BilateralBlock block : bBlocks) {
-            for (int id1 : block.getIndex1Entities()) {
-                entityBlocks[id1][counters[id1]] = counter;
-                counters[id1]++;
-            }
-
-            for (int id2 : block.getIndex2Entities()) {
-                int entityId = datasetLimit + id2;
-                entityBlocks[entityId][counters[entityId]] = counter;
-                counters[entityId]++;
-            }
-            counter++;
-        }
+    public boolean isCleanCleanER() {
+        return cleanCleanER;
     }
 
-    private void indexUnilateralEntities() {
-        //count valid entities & blocks per entity
-        final int[] counters = new int[noOfEntities];
+    private void setEntityComparisons(int noOfThreads) {
+        final int[] blockIds = entityBlocks.getBlockIds();
         entityComparisons = new double[noOfEntities];
-        for (UnilateralBlock block : uBlocks) {
-            int blockSize = block.getEntities().length;
-            for (int id : block.getEntities()) {
-                counters[id]++;
-                entityComparisons[id] += blockSize-1;
-            }
-        }
-
-        //initialize inverted index
-        entityBlocks = new int[noOfEntities][];
-        for (int i = 0; i < noOfEntities; i++) {
-            entityBlocks[i] = new int[counters[i]];
-            counters[i] = 0;
-        }
-
-        //build inverted index
-        int counter = 0;
-        for (UnilateralBlock block : uBlocks) {
-            for (int id : block.getEntities()) {
-                entityBlocks[id][counters[id]] = counter;
-                counters[id]++;
+        ParallelProcessing.processPartitions(noOfThreads, noOfEntities, (partitionId, start, end) -> {
+            for (int i = start; i < end; i++) {
+                final int blocksEnd = entityBlocks.getEnd(i);
+                for (int j = entityBlocks.getStart(i); j < blocksEnd; j++) {
+                    if (!cleanCleanER) {
+                        entityComparisons[i] += uBlocks[blockIds[j]].getEntities().length - 1;
+                    } else if (i < datasetLimit) {
+                        entityComparisons[i] += bBlocks[blockIds[j]].getIndex2Entities().length;
+                    } else {
+                        entityComparisons[i] += bBlocks[blockIds[j]].getIndex1Entities().length;
+                    }
+                }
             }
-            counter++;
-        }
-    }
-    
-    public boolean isCleanCleanER() {
-        return cleanCleanER;
+            return null;
+        });
     }
 }
@@ -0,0 +1,205 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.utilities.datastructures;
+
+import com.esotericsoftware.minlog.Log;
+
+import java.util.Arrays;
+
+/**
+ * The sorted suffixes of a collection of tokens, along with the longest common
+ * prefix (LCP) of every pair of adjacent suffixes. The tokens are concatenated
+ * into a single array of ints, with every token followed by a separator that
+ * is unique and smaller than all characters; hence, no common prefix extends
+ * beyond the end of a token. The suffix array is built through prefix doubling
+ * with counting sorts and the LCP array through Kasai's algorithm, so no
+ * suffix is materialized as a String.
+ *
+ * @author gap2
+ */
+public class GeneralizedSuffixArray {
+
+    private final int[] lcp;
+    private final int[] suffixLengths;
+    private final int[] tokenIds;
+
+    public GeneralizedSuffixArray(String[] tokens) {
+        long textLength = 1; // the final sentinel
+        for (String token : tokens) {
+            textLength += token.length() + 1;
+        }
+        if (Integer.MAX_VALUE - 8 < textLength) {
+            Log.error("The " + tokens.length + " tokens of length " + textLength + " exceed the maximum array size!");
+            throw new IllegalStateException("Too long text for a suffix array.");
+        }
+
+        // the sentinel is 0, the separators are 1 to tokens.length and the characters follow
+        final int noOfSeparators = tokens.length + 1;
+        final int[] text = new int[(int) textLength];
+        final int[] positionTokens = new int[text.length];
+        final int[] positionLengths = new int[text.length];
+        int position = 0;
+        for (int tokenId = 0; tokenId < tokens.length; tokenId++) {
+            final String token = tokens[tokenId];
+            for (int i = 0; i < token.length(); i++) {
+                text[position] = noOfSeparators + token.charAt(i);
+                positionTokens[position] = tokenId;
+                positionLengths[position] = token.length() - i;
+                position++;
+            }
+            text[position++] = tokenId + 1;
+        }
+        text[position] = 0;
+
+        final int[] suffixArray = getSuffixArray(text, noOfSeparators + Character.MAX_VALUE + 1);
+        final int[] adjacentLcp = getLcpArray(text, suffixArray);
+
+        // the suffixes starting with a separator precede all others and are omitted
+        final int noOfSuffixes = text.length - noOfSeparators;
+        lcp = new int[noOfSuffixes];
+        suffixLengths = new int[noOfSuffixes];
+        tokenIds = new int[noOfSuffixes];
+        for (int i = 0; i < noOfSuffixes; i++) {
+            int rank = i + noOfSeparators;
+            lcp[i] = i == 0 ? 0 : adjacentLcp[rank - 1];
+            suffixLengths[i] = positionLengths[suffixArray[rank]];
+            tokenIds[i] = positionTokens[suffixArray[rank]];
+        }
+    }
+
+    /**
+     * Returns the length of the longest common prefix of the suffixes of the
+     * given rank and of the preceding one, or 0 for the first suffix.
+     */
+    public int getLcp(int rank) {
+        return lcp[rank];
+    }
+
+    // Kasai's algorithm: the i-th value is the LCP of the suffixes of rank i and i + 1
+    private static int[] getLcpArray(int[] text, int[] suffixArray) {
+        final int n = text.length;
+        final int[] ranks = new int[n];
+        for (int i = 0; i < n; i++) {
+            ranks[suffixArray[i]] = i;
+        }
+
+        int commonLength = 0;
+        final int[] adjacentLcp = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (ranks[i] == n - 1) {
+                commonLength = 0;
+                continue;
+            }
+
+            int j = suffixArray[ranks[i] + 1];
+            while (i + commonLength < n && j + commonLength < n && text[i + commonLength] == text[j + commonLength]) {
+                commonLength++;
+            }
+            adjacentLcp[ranks[i]] = commonLength;
+            if (0 < commonLength) {
+                commonLength--;
+            }
+        }
+        return adjacentLcp;
+    }
+
+    // prefix doubling over cyclic shifts, which sort as the suffixes, since the text ends with the unique minimum
+    private static int[] getSuffixArray(int[] text, int alphabetSize) {
+        final int n = text.length;
+        int[] suffixes = new int[n];
+        int[] classes = new int[n];
+        int[] counters = new int[Math.max(alphabetSize, n)];
+        for (int value : text) {
+            counters[value]++;
+        }
+        for (int i = 1; i < alphabetSize; i++) {
+            counters[i] += counters[i - 1];
+        }
+        for (int i = n - 1; 0 <= i; i--) {
+            suffixes[--counters[text[i]]] = i;
+        }
+
+        int noOfClasses = 1;
+        classes[suffixes[0]] = 0;
+        for (int i = 1; i < n; i++) {
+            if (text[suffixes[i]] != text[suffixes[i - 1]]) {
+                noOfClasses++;
+            }
+            classes[suffixes[i]] = noOfClasses - 1;
+        }
+
+        int[] shifted = new int[n];
+        int[] newClasses = new int[n];
+        for (int length = 1; length < n && noOfClasses < n; length <<= 1) {
+            // the shifts are already sorted by their second half
+            for (int i = 0; i < n; i++) {
+                shifted[i] = suffixes[i] - length;
+                if (shifted[i] < 0) {
+                    shifted[i] += n;
+                }
+            }
+
+            // stable counting sort by the first half
+            Arrays.fill(counters, 0, noOfClasses, 0);
+            for (int i = 0; i < n; i++) {
+                counters[classes[shifted[i]]]++;
+            }
+            for (int i = 1; i < noOfClasses; i++) {
+                counters[i] += counters[i - 1];
+            }
+            for (int i = n - 1; 0 <= i; i--) {
+                suffixes[--counters[classes[shifted[i]]]] = shifted[i];
+            }
+
+            noOfClasses = 1;
+            newClasses[suffixes[0]] = 0;
+            for (int i = 1; i < n; i++) {
+                int current = suffixes[i];
+                int previous = suffixes[i - 1];
+                if (classes[current] != classes[previous]
+                        || classes[(current + length) % n] != classes[(previous + length) % n]) {
+                    noOfClasses++;
+                }
+                newClasses[current] = noOfClasses - 1;
+            }
+
+            final int[] temp = classes;
+            classes = newClasses;
+            newClasses = temp;
+        }
+        return suffixes;
+    }
+
+    /**
+     * Returns the number of characters from the start of the suffix of the
+     * given rank to the end of its token.
+     */
+    public int getSuffixLength(int rank) {
+        return suffixLengths[rank];
+    }
+
+    /**
+     * Returns the position of the token of the suffix of the given rank in the
+     * array of tokens.
+     */
+    public int getTokenId(int rank) {
+        return tokenIds[rank];
+    }
+
+    public int size() {
+        return lcp.length;
+    }
+}
@@ -31,6 +31,11 @@ import java.util.List;
 import java.util.Set;
 
 /**
+ * Maps every entity that participates in a pair of duplicates to the blocks
+ * that contain it, using the compressed sparse row layout of
+ * CompressedEntityBlocks. Blocks are identified by their position in the
+ * given list; the blocks themselves are not modified, so the list may also
+ * return a new instance on every access, like MappedBlockCollection.
  *
  * @author gap2
  */
@@ -38,10 +43,15 @@ public class GroundTruthIndex {
 
     private int datasetLimit;
     private int noOfEntities;
-    private int[][] entityBlocks;
+    private int[] blockIds;
+    private CompressedEntityBlocks entityBlocks;
     private Set<IdDuplicates> duplicates;
 
     public GroundTruthIndex(List<AbstractBlock> blocks, Set<IdDuplicates> matches) {
+        this(blocks, matches, 1);
+    }
+
+    public GroundTruthIndex(List<AbstractBlock> blocks, Set<IdDuplicates> matches, int noOfThreads) {
         if (blocks.isEmpty()) {
             System.err.println("Entity index received an empty block collection as input!");
             return;
@@ -54,44 +64,37 @@ public class GroundTruthIndex {
         }
 
         duplicates = matches;
-        enumerateBlocks(blocks);
         setNoOfEntities(blocks);
-        indexEntities(blocks);
-    }
-
-    private void enumerateBlocks(List<AbstractBlock> blocks) {
-        int blockIndex = 0;
-        for (AbstractBlock block : blocks) {
-            block.setBlockIndex(blockIndex++);
-        }
+        indexEntities(blocks, noOfThreads);
     }
 
     public TIntList getCommonBlockIndices(int blockIndex, Comparison comparison) {
-        final int[] blocks1 = entityBlocks[comparison.getEntityId1()];
-        final int[] blocks2 = entityBlocks[comparison.getEntityId2() + datasetLimit];
+        int entityId2 = comparison.getEntityId2() + datasetLimit;
+        int start1 = entityBlocks.getStart(comparison.getEntityId1());
+        int end1 = entityBlocks.getEnd(comparison.getEntityId1());
+        int start2 = entityBlocks.getStart(entityId2);
+        int end2 = entityBlocks.getEnd(entityId2);
 
         boolean firstCommonIndex = false;
-        int noOfBlocks1 = blocks1.length;
-        int noOfBlocks2 = blocks2.length;
         final TIntList indices = new TIntArrayList();
-        for (int i = 0; i < noOfBlocks1; i++) {
-            for (int j = 0; j < noOfBlocks2; j++) {
-                if (blocks2[j] < blocks1[i]) {
+        for (int i = start1; i < end1; i++) {
+            for (int j = start2; j < end2; j++) {
+                if (blockIds[j] < blockIds[i]) {
                     continue;
                 }
 
-                if (blocks1[i] < blocks2[j]) {
+                if (blockIds[i] < blockIds[j]) {
                     break;
                 }
 
-                if (blocks1[i] == blocks2[j]) {
+                if (blockIds[i] == blockIds[j]) {
                     if (!firstCommonIndex) {
                         firstCommonIndex = true;
-                        if (blocks1[i] != blockIndex) {
+                        if (blockIds[i] != blockIndex) {
                             return null;
                         }
                     }
-                    indices.add(blocks1[i]);
+                    indices.add(blockIds[i]);
                 }
             }
         }
@@ -108,32 +111,33 @@ public class GroundTruthIndex {
         if (noOfEntities <= entityId) {
             return null;
         }
-        return entityBlocks[entityId];
+        return entityBlocks.getBlocks(entityId);
     }
 
     public int getNoOfCommonBlocks(int blockIndex, Comparison comparison) {
-        final int[] blocks1 = entityBlocks[comparison.getEntityId1()];
-        final int[] blocks2 = entityBlocks[comparison.getEntityId2() + datasetLimit];
+        int entityId2 = comparison.getEntityId2() + datasetLimit;
+        int start1 = entityBlocks.getStart(comparison.getEntityId1());
+        int end1 = entityBlocks.getEnd(comparison.getEntityId1());
+        int start2 = entityBlocks.getStart(entityId2);
+        int end2 = entityBlocks.getEnd(entityId2);
 
         int commonBlocks = 0;
-        int noOfBlocks1 = blocks1.length;
-        int noOfBlocks2 = blocks2.length;
         boolean firstCommonIndex = false;
-        for (int i = 0; i < noOfBlocks1; i++) {
-            for (int j = 0; j < noOfBlocks2; j++) {
-                if (blocks2[j] < blocks1[i]) {
+        for (int i = start1; i < end1; i++) {
+            for (int j = start2; j < end2; j++) {
+                if (blockIds[j] < blockIds[i]) {
                     continue;
                 }
 
-                if (blocks1[i] < blocks2[j]) {
+                if (blockIds[i] < blockIds[j]) {
                     break;
                 }
 
-                if (blocks1[i] == blocks2[j]) {
+                if (blockIds[i] == blockIds[j]) {
                     commonBlocks++;
                     if (!firstCommonIndex) {
                         firstCommonIndex = true;
-                        if (blocks1[i] != blockIndex) {
+                        if (blockIds[i] != blockIndex) {
                             return -1;
                         }
                     }
@@ -150,36 +154,33 @@ public class GroundTruthIndex {
 
     public int getNoOfEntityBlocks(int entityId, int useDLimit) {
         entityId += useDLimit * datasetLimit;
-        if (entityBlocks[entityId] == null) {
+        if (noOfEntities <= entityId) {
             return -1;
         }
 
-        return entityBlocks[entityId].length;
+        return entityBlocks.getNoOfBlocks(entityId);
     }
 
     public TIntList getTotalCommonIndices(Comparison comparison) {
         final TIntList indices = new TIntArrayList();
 
-        final int[] blocks1 = entityBlocks[comparison.getEntityId1()];
-        final int[] blocks2 = entityBlocks[comparison.getEntityId2() + datasetLimit];
-        if (blocks1 == null || blocks2 == null) {
-            return indices;
-        }
-
-        int noOfBlocks1 = blocks1.length;
-        int noOfBlocks2 = blocks2.length;
-        for (int i = 0; i < noOfBlocks1; i++) {
-            for (int j = 0; j < noOfBlocks2; j++) {
-                if (blocks2[j] < blocks1[i]) {
+        int entityId2 = comparison.getEntityId2() + datasetLimit;
+        int start1 = entityBlocks.getStart(comparison.getEntityId1());
+        int end1 = entityBlocks.getEnd(comparison.getEntityId1());
+        int start2 = entityBlocks.getStart(entityId2);
+        int end2 = entityBlocks.getEnd(entityId2);
+        for (int i = start1; i < end1; i++) {
+            for (int j = start2; j < end2; j++) {
+                if (blockIds[j] < blockIds[i]) {
                     continue;
                 }
 
-                if (blocks1[i] < blocks2[j]) {
+                if (blockIds[i] < blockIds[j]) {
                     break;
                 }
 
-                if (blocks1[i] == blocks2[j]) {
-                    indices.add(blocks1[i]);
+                if (blockIds[i] == blockIds[j]) {
+                    indices.add(blockIds[i]);
                 }
             }
         }
@@ -188,26 +189,24 @@ public class GroundTruthIndex {
     }
 
     public int getTotalNoOfCommonBlocks(Comparison comparison) {
-        final int[] blocks1 = entityBlocks[comparison.getEntityId1()];
-        final int[] blocks2 = entityBlocks[comparison.getEntityId2() + datasetLimit];
-        if (blocks1 == null || blocks2 == null) {
-            return 0;
-        }
+        int entityId2 = comparison.getEntityId2() + datasetLimit;
+        int start1 = entityBlocks.getStart(comparison.getEntityId1());
+        int end1 = entityBlocks.getEnd(comparison.getEntityId1());
+        int start2 = entityBlocks.getStart(entityId2);
+        int end2 = entityBlocks.getEnd(entityId2);
 
         int commonBlocks = 0;
-        int noOfBlocks1 = blocks1.length;
-        int noOfBlocks2 = blocks2.length;
-        for (int i = 0; i < noOfBlocks1; i++) {
-            for (int j = 0; j < noOfBlocks2; j++) {
-                if (blocks2[j] < blocks1[i]) {
+        for (int i = start1; i < end1; i++) {
+            for (int j = start2; j < end2; j++) {
+                if (blockIds[j] < blockIds[i]) {
                     continue;
                 }
 
-                if (blocks1[i] < blocks2[j]) {
+                if (blockIds[i] < blockIds[j]) {
                     break;
                 }
 
-                if (blocks1[i] == blocks2[j]) {
+                if (blockIds[i] == blockIds[j]) {
                     commonBlocks++;
                 }
             }
@@ -216,7 +215,7 @@ public class GroundTruthIndex {
         return commonBlocks;
     }
 
-    private void indexBilateralEntities(List<AbstractBlock> blocks) {
+    private void indexEntities(List<AbstractBlock> blocks, int noOfThreads) {
         //find matching entities
         final TIntSet matchingEntities = new TIntHashSet();
         for (IdDuplicates pair : duplicates) {
@@ -224,115 +223,29 @@ public class GroundTruthIndex {
             matchingEntities.add(pair.getEntityId2() + datasetLimit);
         }
 
-        //count blocks per matching entity
-        final int[] counters = new int[noOfEntities];
-        for (AbstractBlock block : blocks) {
-            BilateralBlock bilBlock = (BilateralBlock) block;
-            for (int id1 : bilBlock.getIndex1Entities()) {
-                if (matchingEntities.contains(id1)) {
-                    counters[id1]++;
-                }
-            }
-
-            for (int id2 : bilBlock.getIndex2Entities()) {
-                int entityId = datasetLimit + id2;
-                if (matchingEntities.contains(entityId)) {
-                    counters[entityId]++;
-                }
-            }
-        }
-
-        //initialize inverted index
-        entityBlocks = new int[noOfEntities][];
-        for (int i = 0; i < noOfEntities; i++) {
-            entityBlocks[i] = new int[counters[i]];
-            counters[i] = 0;
-        }
-
-        //build inverted index
-        for (AbstractBlock block : blocks) {
-            BilateralBlock bilBlock = (BilateralBlock) block;
-            for (int id1 : bilBlock.getIndex1Entities()) {
-                if (matchingEntities.contains(id1)) {
-                    entityBlocks[id1][counters[id1]] = block.getBlockIndex();
-                    counters[id1]++;
-                }
-            }
-
-            for (int id2 : bilBlock.getIndex2Entities()) {
-                int entityId = datasetLimit + id2;
-                if (matchingEntities.contains(entityId)) {
-                    entityBlocks[entityId][counters[entityId]] = block.getBlockIndex();
-                    counters[entityId]++;
-                }
-            }
-        }
-    }
-
-    private void indexEntities(List<AbstractBlock> blocks) {
-        if (blocks.get(0) instanceof BilateralBlock) {
-            indexBilateralEntities(blocks);
-        } else if (blocks.get(0) instanceof UnilateralBlock) {
-            indexUnilateralEntities(blocks);
-        }
-    }
-
-    private void indexUnilateralEntities(List<AbstractBlock> blocks) {
-        //find matching entities
-        final TIntSet matchingEntities = new TIntHashSet();
-        for (IdDuplicates pair : duplicates) {
-            matchingEntities.add(pair.getEntityId1());
-            matchingEntities.add(pair.getEntityId2());
-        }
-
-        //count blocks per matching entity
-        final int[] counters = new int[noOfEntities];
-        for (AbstractBlock block : blocks) {
-            UnilateralBlock uniBlock = (UnilateralBlock) block;
-            for (int id : uniBlock.getEntities()) {
-                if (matchingEntities.contains(id)) {
-                    counters[id]++;
-                }
-            }
-        }
-
-        //initialize inverted index
-        entityBlocks = new int[noOfEntities][];
-        for (int i = 0; i < noOfEntities; i++) {
-            entityBlocks[i] = new int[counters[i]];
-            counters[i] = 0;
-        }
-
-        //build inverted index
-        for (AbstractBlock block : blocks) {
-            UnilateralBlock uniBlock = (UnilateralBlock) block;
-            for (int id : uniBlock.getEntities()) {
-                if (matchingEntities.contains(id)) {
-                    entityBlocks[id][counters[id]] = block.getBlockIndex();
-                    counters[id]++;
-                }
-            }
-        }
+        entityBlocks = new CompressedEntityBlocks(blocks, noOfEntities, datasetLimit, matchingEntities::contains, noOfThreads);
+        blockIds = entityBlocks.getBlockIds();
     }
 
     public boolean isRepeated(int blockIndex, Comparison comparison) {
-        final int[] blocks1 = entityBlocks[comparison.getEntityId1()];
-        final int[] blocks2 = entityBlocks[comparison.getEntityId2() + datasetLimit];
-
-        int noOfBlocks1 = blocks1.length;
-        int noOfBlocks2 = blocks2.length;
-        for (int i = 0; i < noOfBlocks1; i++) {
-            for (int j = 0; j < noOfBlocks2; j++) {
-                if (blocks2[j] < blocks1[i]) {
+        int entityId2 = comparison.getEntityId2() + datasetLimit;
+        int start1 = entityBlocks.getStart(comparison.getEntityId1());
+        int end1 = entityBlocks.getEnd(comparison.getEntityId1());
+        int start2 = entityBlocks.getStart(entityId2);
+        int end2 = entityBlocks.getEnd(entityId2);
+
+        for (int i = start1; i < end1; i++) {
+            for (int j = start2; j < end2; j++) {
+                if (blockIds[j] < blockIds[i]) {
                     continue;
                 }
 
-                if (blocks1[i] < blocks2[j]) {
+                if (blockIds[i] < blockIds[j]) {
                     break;
                 }
 
-                if (blocks1[i] == blocks2[j]) {
-                    return blocks1[i] != blockIndex;
+                if (blockIds[i] == blockIds[j]) {
+                    return blockIds[i] != blockIndex;
                 }
             }
         }
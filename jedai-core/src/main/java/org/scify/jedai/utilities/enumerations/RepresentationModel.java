@@ -18,6 +18,7 @@ package org.scify.jedai.utilities.enumerations;
 import org.scify.jedai.textmodels.CharacterNGramGraphs;
 import org.scify.jedai.textmodels.CharacterNGrams;
 import org.scify.jedai.textmodels.CharacterNGramsWithGlobalWeights;
+import org.scify.jedai.textmodels.CorpusStatistics;
 import org.scify.jedai.textmodels.ITextModel;
 import org.scify.jedai.textmodels.TokenNGramGraphs;
 import org.scify.jedai.textmodels.TokenNGrams;
@@ -47,83 +48,46 @@ public enum RepresentationModel {
     TOKEN_TRIGRAMS_TF_IDF,
     TOKEN_TRIGRAM_GRAPHS;
 
-    public static ITextModel getModel(int dId, RepresentationModel model, SimilarityMetric simMetric, String instanceName) {
+    public static ITextModel getModel(int dId, RepresentationModel model, SimilarityMetric simMetric, String instanceName, CorpusStatistics cStats) {
         switch (model) {
             case CHARACTER_BIGRAMS:
-                return new CharacterNGrams(dId, 2, model, simMetric, instanceName);
+                return new CharacterNGrams(dId, 2, model, simMetric, instanceName, cStats);
             case CHARACTER_BIGRAMS_TF_IDF:
-                return new CharacterNGramsWithGlobalWeights(dId, 2, model, simMetric, instanceName);
+                return new CharacterNGramsWithGlobalWeights(dId, 2, model, simMetric, instanceName, cStats);
             case CHARACTER_BIGRAM_GRAPHS:
-                return new CharacterNGramGraphs(dId, 2, model, simMetric, instanceName);
+                return new CharacterNGramGraphs(dId, 2, model, simMetric, instanceName, cStats);
             case CHARACTER_FOURGRAMS:
-                return new CharacterNGrams(dId, 4, model, simMetric, instanceName);
+                return new CharacterNGrams(dId, 4, model, simMetric, instanceName, cStats);
             case CHARACTER_FOURGRAMS_TF_IDF:
-                return new CharacterNGramsWithGlobalWeights(dId, 4, model, simMetric, instanceName);
+                return new CharacterNGramsWithGlobalWeights(dId, 4, model, simMetric, instanceName, cStats);
             case CHARACTER_FOURGRAM_GRAPHS:
-                return new CharacterNGramGraphs(dId, 4, model, simMetric, instanceName);
+                return new CharacterNGramGraphs(dId, 4, model, simMetric, instanceName, cStats);
             case CHARACTER_TRIGRAMS:
-                return new CharacterNGrams(dId, 3, model, simMetric, instanceName);
+                return new CharacterNGrams(dId, 3, model, simMetric, instanceName, cStats);
             case CHARACTER_TRIGRAMS_TF_IDF:
-                return new CharacterNGramsWithGlobalWeights(dId, 3, model, simMetric, instanceName);
+                return new CharacterNGramsWithGlobalWeights(dId, 3, model, simMetric, instanceName, cStats);
             case CHARACTER_TRIGRAM_GRAPHS:
-                return new CharacterNGramGraphs(dId, 3, model, simMetric, instanceName);
+                return new CharacterNGramGraphs(dId, 3, model, simMetric, instanceName, cStats);
             case TOKEN_BIGRAMS:
-                return new TokenNGrams(dId, 2, model, simMetric, instanceName);
+                return new TokenNGrams(dId, 2, model, simMetric, instanceName, cStats);
             case TOKEN_BIGRAMS_TF_IDF:
-                return new TokenNGramsWithGlobalWeights(dId, 2, model, simMetric, instanceName);
+                return new TokenNGramsWithGlobalWeights(dId, 2, model, simMetric, instanceName, cStats);
             case TOKEN_BIGRAM_GRAPHS:
-                return new TokenNGramGraphs(dId, 2, model, simMetric, instanceName);
+                return new TokenNGramGraphs(dId, 2, model, simMetric, instanceName, cStats);
             case TOKEN_TRIGRAMS:
-                return new TokenNGrams(dId, 3, model, simMetric, instanceName);
+                return new TokenNGrams(dId, 3, model, simMetric, instanceName, cStats);
             case TOKEN_TRIGRAMS_TF_IDF:
-                return new TokenNGramsWithGlobalWeights(dId, 3, model, simMetric, instanceName);
+                return new TokenNGramsWithGlobalWeights(dId, 3, model, simMetric, instanceName, cStats);
             case TOKEN_TRIGRAM_GRAPHS:
-                return new TokenNGramGraphs(dId, 3, model, simMetric, instanceName);
+                return new TokenNGramGraphs(dId, 3, model, simMetric, instanceName, cStats);
             case TOKEN_UNIGRAMS:
-                return new TokenNGrams(dId, 1, model, simMetric, instanceName);
+                return new TokenNGrams(dId, 1, model, simMetric, instanceName, cStats);
             case TOKEN_UNIGRAMS_TF_IDF:
-                return new TokenNGramsWithGlobalWeights(dId, 1, model, simMetric, instanceName);
+                return new TokenNGramsWithGlobalWeights(dId, 1, model, simMetric, instanceName, cStats);
             case TOKEN_UNIGRAM_GRAPHS:
-                return new TokenNGramGraphs(dId, 1, model, simMetric, instanceName);
+                return new TokenNGramGraphs(dId, 1, model, simMetric, instanceName, cStats);
             default:
                 return null;
         }
     }
-
-    public static void resetGlobalValues(int datasetId, RepresentationModel model) {
-        switch (model) {
-            case CHARACTER_BIGRAMS_TF_IDF:
-            case CHARACTER_FOURGRAMS_TF_IDF:
-            case CHARACTER_TRIGRAMS_TF_IDF:
-                CharacterNGramsWithGlobalWeights.resetGlobalValues(datasetId);
-                break;
-            case TOKEN_BIGRAMS_TF_IDF:
-            case TOKEN_TRIGRAMS_TF_IDF:
-            case TOKEN_UNIGRAMS_TF_IDF:
-                TokenNGramsWithGlobalWeights.resetGlobalValues(datasetId);
-                break;
-            case CHARACTER_BIGRAMS:
-            case CHARACTER_TRIGRAMS:
-            case CHARACTER_FOURGRAMS:
-                CharacterNGrams.resetGlobalValues(datasetId);
-                break;
-            case CHARACTER_BIGRAM_GRAPHS:
-            case CHARACTER_TRIGRAM_GRAPHS:
-            case CHARACTER_FOURGRAM_GRAPHS:
-                CharacterNGramGraphs.resetGlobalValues(datasetId);
-                break;
-            case TOKEN_BIGRAMS:
-            case TOKEN_TRIGRAMS:
-            case TOKEN_UNIGRAMS:
-                TokenNGrams.resetGlobalValues(datasetId);
-                break;
-            case TOKEN_BIGRAM_GRAPHS:
-            case TOKEN_TRIGRAM_GRAPHS:
-            case TOKEN_UNIGRAM_GRAPHS:
-                TokenNGramGraphs.resetGlobalValues(datasetId);
-                break;
-            default:
-                ;
-        }
-    }
 }
@@ -347,6 +347,7 @@ public class Main {
         long time9 = System.currentTimeMillis();
 
         final EquivalenceCluster[] entityClusters = entityClusteringMethod.getDuplicates(simPairs);
+        simPairs.close();
 
         long time10 = System.currentTimeMillis();
 
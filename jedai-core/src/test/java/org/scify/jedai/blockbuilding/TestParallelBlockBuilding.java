@@ -0,0 +1,77 @@
+/*
+ * Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scify.jedai.blockbuilding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.ResultsVerifier;
+
+/**
+ *
+ * @author G.A.P. II
+ */
+public class TestParallelBlockBuilding {
+
+    // the blocks of Standard Blocking over Abt-Buy
+    private final static int BASELINE_SIZE = 2132;
+    private final static long BASELINE_CHECKSUM = 537477551L;
+
+    private static List<String> getSortedBlocks(List<String> blockStrings) {
+        final List<String> sortedBlocks = new ArrayList<>(blockStrings);
+        Collections.sort(sortedBlocks);
+        return sortedBlocks;
+    }
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        final ResultsVerifier verifier = new ResultsVerifier();
+        String[] datasetsD1 = {"abtProfiles", "dblpProfiles", "amazonProfiles"};
+        String[] datasetsD2 = {"buyProfiles", "acmProfiles", "gpProfiles"};
+        for (int i = 0; i < datasetsD1.length; i++) {
+            System.out.println("\n\n\n\nCurrent dataset\t:\t" + datasetsD1[i] + "-" + datasetsD2[i]);
+
+            List<EntityProfile> profiles1 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + datasetsD1[i]);
+            List<EntityProfile> profiles2 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + datasetsD2[i]);
+
+            final AbstractBlockBuilding[] methods = {new StandardBlocking(), new QGramsBlocking(), new ExtendedQGramsBlocking(),
+                new SuffixArraysBlocking(), new ExtendedSuffixArraysBlocking()};
+            for (AbstractBlockBuilding method : methods) {
+                System.out.println("\n\nCurrent blocking method\t:\t" + method.getMethodName());
+
+                double time1 = System.currentTimeMillis();
+                List<String> sequentialBlocks = ResultsVerifier.getBlockStrings(method.getBlocks(profiles1, profiles2));
+                double time2 = System.currentTimeMillis();
+
+                method.setNoOfThreads(ResultsVerifier.getNoOfThreads());
+                List<String> parallelBlocks = ResultsVerifier.getBlockStrings(method.getBlocks(profiles1, profiles2));
+                double time3 = System.currentTimeMillis();
+
+                System.out.println("Sequential time\t:\t" + (time2 - time1));
+                System.out.println("Parallel time (" + method.getNoOfThreads() + " threads)\t:\t" + (time3 - time2));
+                verifier.verifyIdentical("Identical blocks", getSortedBlocks(sequentialBlocks), getSortedBlocks(parallelBlocks));
+                verifier.verifyIdentical("Identical block order", sequentialBlocks, parallelBlocks);
+                if (i == 0 && method.getClass() == StandardBlocking.class) {
+                    verifier.verifyBaseline("Blocks", sequentialBlocks, BASELINE_SIZE, BASELINE_CHECKSUM);
+                }
+            }
+        }
+        verifier.exit();
+    }
+}
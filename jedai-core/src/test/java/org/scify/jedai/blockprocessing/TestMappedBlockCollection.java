@@ -0,0 +1,70 @@
+/*
+ * Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scify.jedai.blockprocessing;
+
+import java.io.File;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+import org.scify.jedai.blockbuilding.StandardBlocking;
+import org.scify.jedai.blockprocessing.blockcleaning.BlockFiltering;
+import org.scify.jedai.blockprocessing.comparisoncleaning.WeightedEdgePruning;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datareader.blockreader.MappedBlockCollection;
+import org.scify.jedai.datawriter.BlockCollectionWriter;
+import org.scify.jedai.utilities.ResultsVerifier;
+
+/**
+ *
+ * @author G.A.P. II
+ */
+public class TestMappedBlockCollection {
+
+    // the comparisons retained from Abt-Buy by Block Filtering and Weighted Edge Pruning
+    private final static int BASELINE_SIZE = 53193;
+    private final static long BASELINE_CHECKSUM = 2347533906L;
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        List<EntityProfile> profiles1 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + "abtProfiles");
+        List<EntityProfile> profiles2 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + "buyProfiles");
+
+        final List<AbstractBlock> blocks = new StandardBlocking().getBlocks(profiles1, profiles2);
+        final String blocksPath = System.getProperty("java.io.tmpdir") + File.separator + "abtBuyBlocks.bin";
+        new BlockCollectionWriter(blocks).writeBlocks(blocksPath);
+        System.out.println("Binary file size\t:\t" + new File(blocksPath).length());
+
+        final ResultsVerifier verifier = new ResultsVerifier();
+        double time1 = System.currentTimeMillis();
+        try (MappedBlockCollection mappedBlocks = new MappedBlockCollection(blocksPath)) {
+            double time2 = System.currentTimeMillis();
+            System.out.println("Loading time\t:\t" + (time2 - time1));
+            verifier.verifyIdentical("Identical blocks", ResultsVerifier.getBlockStrings(blocks), ResultsVerifier.getBlockStrings(mappedBlocks));
+
+            final List<AbstractBlock> filteredBlocks = new BlockFiltering().refineBlocks(blocks);
+            final List<AbstractBlock> filteredMappedBlocks = new BlockFiltering().refineBlocks(mappedBlocks);
+            verifier.verifyIdentical("Identical filtered blocks", ResultsVerifier.getBlockStrings(filteredBlocks), ResultsVerifier.getBlockStrings(filteredMappedBlocks));
+
+            final List<String> prunedComparisons = ResultsVerifier.getSortedComparisons(new WeightedEdgePruning().refineBlocks(filteredBlocks));
+            final List<String> prunedMappedComparisons = ResultsVerifier.getSortedComparisons(new WeightedEdgePruning().refineBlocks(filteredMappedBlocks));
+            verifier.verifyIdentical("Identical pruned comparisons", prunedComparisons, prunedMappedComparisons);
+            verifier.verifyBaseline("Pruned comparisons", prunedMappedComparisons, BASELINE_SIZE, BASELINE_CHECKSUM);
+        }
+        new File(blocksPath).delete();
+        verifier.exit();
+    }
+}
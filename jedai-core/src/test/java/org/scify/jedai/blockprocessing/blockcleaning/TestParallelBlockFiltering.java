@@ -0,0 +1,90 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.blockprocessing.blockcleaning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.log4j.BasicConfigurator;
+import org.scify.jedai.blockbuilding.StandardBlocking;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.utilities.ResultsVerifier;
+
+/**
+ * Checks that Block Filtering retains the same blocks in the same order with
+ * one and with multiple threads. The synthetic blocks have few distinct
+ * cardinalities, so that most of them are ties, whose order should be that of
+ * the input.
+ *
+ * @author G.A.P. II
+ */
+public class TestParallelBlockFiltering {
+
+    private final static int NO_OF_BLOCKS = 50000;
+    private final static int NO_OF_ENTITIES = 10000;
+
+    // the blocks retained from the synthetic ones
+    private final static int BASELINE_SIZE = 45379;
+    private final static long BASELINE_CHECKSUM = 1059377149L;
+
+    private static List<AbstractBlock> getSyntheticBlocks() {
+        final Random random = new Random(42);
+        final List<AbstractBlock> blocks = new ArrayList<>();
+        for (int i = 0; i < NO_OF_BLOCKS; i++) {
+            final int[] entities = new int[2 + random.nextInt(4)];
+            for (int j = 0; j < entities.length; j++) {
+                entities[j] = random.nextInt(NO_OF_ENTITIES);
+            }
+            blocks.add(new UnilateralBlock(entities));
+        }
+        return blocks;
+    }
+
+    private static List<String> verifyIdenticalOutput(ResultsVerifier verifier, String name, List<AbstractBlock> blocks, int noOfThreads) {
+        final List<AbstractBlock> sequentialInput = new ArrayList<>(blocks);
+        final List<String> sequentialBlocks = ResultsVerifier.getBlockStrings(new BlockFiltering().refineBlocks(sequentialInput));
+
+        final List<AbstractBlock> parallelInput = new ArrayList<>(blocks);
+        final BlockFiltering parallelFiltering = new BlockFiltering();
+        parallelFiltering.setNoOfThreads(noOfThreads);
+        final List<String> parallelBlocks = ResultsVerifier.getBlockStrings(parallelFiltering.refineBlocks(parallelInput));
+
+        System.out.println("\n\nCurrent blocks\t:\t" + name);
+        System.out.println("Retained blocks\t:\t" + sequentialBlocks.size());
+        // the input blocks are sorted in place, so their order reveals how ties were broken
+        verifier.verifyIdentical("Identical order of sorted blocks (" + noOfThreads + " threads)",
+                ResultsVerifier.getBlockStrings(sequentialInput), ResultsVerifier.getBlockStrings(parallelInput));
+        verifier.verifyIdentical("Identical retained blocks (" + noOfThreads + " threads)", sequentialBlocks, parallelBlocks);
+        return sequentialBlocks;
+    }
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        final int noOfThreads = ResultsVerifier.getNoOfThreads();
+        final ResultsVerifier verifier = new ResultsVerifier();
+        final List<String> syntheticBlocks = verifyIdenticalOutput(verifier, "synthetic", getSyntheticBlocks(), noOfThreads);
+        verifier.verifyBaseline("Retained synthetic blocks", syntheticBlocks, BASELINE_SIZE, BASELINE_CHECKSUM);
+
+        List<EntityProfile> profiles1 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + "dblpProfiles");
+        List<EntityProfile> profiles2 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + "acmProfiles");
+        verifyIdenticalOutput(verifier, "dblp-acm", new StandardBlocking().getBlocks(profiles1, profiles2), noOfThreads);
+
+        verifier.exit();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.scify.jedai.blockprocessing.comparisoncleaning;
+
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+import org.scify.jedai.blockbuilding.StandardBlocking;
+import org.scify.jedai.blockprocessing.blockcleaning.BlockFiltering;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.utilities.ResultsVerifier;
+import org.scify.jedai.utilities.enumerations.WeightingScheme;
+
+/**
+ *
+ * @author G.A.P. II
+ */
+public class TestParallelMetablocking {
+
+    // the comparisons retained from Cora by every method with JS weights, in the order of getMethods
+    private final static int[] BASELINE_SIZES = {184249, 13252, 228809, 152057, 16801, 9099};
+    private final static long[] BASELINE_CHECKSUMS = {1445575593L, 2136341583L, 1821750375L, 2973456616L, 2143689360L, 1951984487L};
+
+    private static AbstractMetablocking[] getMethods(WeightingScheme wScheme) {
+        return new AbstractMetablocking[]{new WeightedEdgePruning(wScheme), new CardinalityEdgePruning(wScheme), new WeightedNodePruning(wScheme),
+            new ReciprocalWeightedNodePruning(wScheme), new CardinalityNodePruning(wScheme),
+            new ReciprocalCardinalityNodePruning(wScheme)};
+    }
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        List<EntityProfile> profiles = ResultsVerifier.getProfiles(ResultsVerifier.DIRTY_ER_DIRECTORY + "coraProfiles");
+        final List<AbstractBlock> blocks = new BlockFiltering().refineBlocks(new StandardBlocking().getBlocks(profiles));
+        System.out.println("Input blocks\t:\t" + blocks.size());
+
+        final ResultsVerifier verifier = new ResultsVerifier();
+        int noOfThreads = ResultsVerifier.getNoOfThreads();
+        for (WeightingScheme wScheme : WeightingScheme.values()) {
+            final AbstractMetablocking[] sequentialMethods = getMethods(wScheme);
+            final AbstractMetablocking[] parallelMethods = getMethods(wScheme);
+            for (int i = 0; i < sequentialMethods.length; i++) {
+                System.out.println("\n\nCurrent method\t:\t" + sequentialMethods[i].getMethodName() + " (" + wScheme + ")");
+
+                double time1 = System.currentTimeMillis();
+                List<String> sequentialComparisons = ResultsVerifier.getSortedComparisons(sequentialMethods[i].refineBlocks(blocks));
+                double time2 = System.currentTimeMillis();
+
+                parallelMethods[i].setNoOfThreads(noOfThreads);
+                List<String> parallelComparisons = ResultsVerifier.getSortedComparisons(parallelMethods[i].refineBlocks(blocks));
+                double time3 = System.currentTimeMillis();
+
+                System.out.println("Retained comparisons\t:\t" + sequentialComparisons.size());
+                System.out.println("Sequential time\t:\t" + (time2 - time1));
+                System.out.println("Parallel time (" + noOfThreads + " threads)\t:\t" + (time3 - time2));
+                verifier.verifyIdentical("Identical comparisons", sequentialComparisons, parallelComparisons);
+                if (wScheme.equals(WeightingScheme.JS)) {
+                    verifier.verifyBaseline("Retained comparisons", sequentialComparisons, BASELINE_SIZES[i], BASELINE_CHECKSUMS[i]);
+                }
+            }
+        }
+        verifier.exit();
+    }
+}
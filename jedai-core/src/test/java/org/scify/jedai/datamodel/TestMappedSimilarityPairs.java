@@ -0,0 +1,137 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.datamodel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+import org.scify.jedai.entitymatching.ProfileMatcher;
+import org.scify.jedai.utilities.ResultsVerifier;
+import org.scify.jedai.utilities.enumerations.RepresentationModel;
+import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+
+/**
+ *
+ * @author G.A.P. II
+ */
+public class TestMappedSimilarityPairs {
+
+    // the similarities of Profile Matcher with token unigrams over Abt-Buy, stored as doubles
+    private final static int BASELINE_SIZE = 21860;
+    private final static long BASELINE_CHECKSUM = 3933923162L;
+
+    private static ProfileMatcher getMatcher(boolean floatSimilarities) {
+        final RepresentationModel model = RepresentationModel.TOKEN_UNIGRAMS;
+        final ProfileMatcher matcher = new ProfileMatcher(model, SimilarityMetric.getModelDefaultSimMetric(model));
+        matcher.setFloatSimilarities(floatSimilarities);
+        return matcher;
+    }
+
+    private static boolean areIdentical(SimilarityPairs pairs1, SimilarityPairs pairs2) {
+        return pairs1.getMaxEntityId1() == pairs2.getMaxEntityId1()
+                && pairs1.getMaxEntityId2() == pairs2.getMaxEntityId2()
+                && ResultsVerifier.getPairStrings(pairs1).equals(ResultsVerifier.getPairStrings(pairs2));
+    }
+
+    private static boolean haveIdenticalIterators(SimilarityPairs pairs1, SimilarityPairs pairs2) {
+        final Iterator<Comparison> iterator1 = pairs1.getPairIterator();
+        final Iterator<Comparison> iterator2 = pairs2.getPairIterator();
+        while (iterator1.hasNext() && iterator2.hasNext()) {
+            final Comparison comparison1 = iterator1.next();
+            final Comparison comparison2 = iterator2.next();
+            if (comparison1.getEntityId1() != comparison2.getEntityId1()
+                    || comparison1.getEntityId2() != comparison2.getEntityId2()
+                    || comparison1.getUtilityMeasure() != comparison2.getUtilityMeasure()) {
+                return false;
+            }
+        }
+        return !iterator1.hasNext() && !iterator2.hasNext();
+    }
+
+    private static SimilarityPairs serializeAndRead(SimilarityPairs pairs) throws IOException, ClassNotFoundException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(pairs);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (SimilarityPairs) input.readObject();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        BasicConfigurator.configure();
+
+        List<EntityProfile> profiles1 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + "abtProfiles");
+        List<EntityProfile> profiles2 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + "buyProfiles");
+        final List<AbstractBlock> blocks = ResultsVerifier.getPrunedBlocks(profiles1, profiles2);
+
+        final ResultsVerifier verifier = new ResultsVerifier();
+        for (boolean floatSimilarities : new boolean[]{false, true}) {
+            System.out.println("\n\nFloat similarities\t:\t" + floatSimilarities);
+
+            try (SimilarityPairs memoryPairs = getMatcher(floatSimilarities).executeComparisons(blocks, profiles1, profiles2)) {
+                if (!floatSimilarities) {
+                    verifier.verifyBaseline("Similarities", ResultsVerifier.getPairStrings(memoryPairs), BASELINE_SIZE, BASELINE_CHECKSUM);
+                }
+
+                final ProfileMatcher mappedMatcher = getMatcher(floatSimilarities);
+                mappedMatcher.setMaxInMemoryBytes(0); // forces the memory-mapped pairs
+                final SimilarityPairs mappedPairs = mappedMatcher.executeComparisons(blocks, profiles1, profiles2);
+
+                final File mappedFile = ((MappedSimilarityPairs) mappedPairs).getMappedFile();
+                System.out.println("Memory-mapped pairs\t:\t" + mappedPairs.getNoOfPairs());
+                verifier.verify("Same precision in mapped pairs", mappedPairs.hasFloatSimilarities() == floatSimilarities);
+                verifier.verify("Identical pairs", areIdentical(memoryPairs, mappedPairs));
+                verifier.verify("Identical iterators", haveIdenticalIterators(memoryPairs, mappedPairs));
+
+                mappedPairs.close();
+                verifier.verify("Mapped file deleted", !mappedFile.exists());
+
+                final File pairsFile = File.createTempFile("jedai-test-pairs", ".bin");
+                try {
+                    try (SimilarityPairs filePairs = new MappedSimilarityPairs(memoryPairs.isCleanCleanER(), pairsFile, floatSimilarities)) {
+                        memoryPairs.forEachPair(filePairs);
+                    }
+
+                    try (SimilarityPairs openedPairs = MappedSimilarityPairs.open(pairsFile)) {
+                        verifier.verify("Identical reopened pairs", areIdentical(memoryPairs, openedPairs));
+                        final SimilarityPairs deserializedPairs = serializeAndRead(openedPairs);
+                        verifier.verify("In-memory deserialized pairs", !(deserializedPairs instanceof MappedSimilarityPairs));
+                        verifier.verify("Identical deserialized pairs", areIdentical(memoryPairs, deserializedPairs));
+                    }
+                    verifier.verify("Reopened file kept", 0 < pairsFile.length());
+
+                    boolean refused = false;
+                    try {
+                        new MappedSimilarityPairs(memoryPairs.isCleanCleanER(), pairsFile).close();
+                    } catch (IllegalArgumentException ex) {
+                        refused = true;
+                    }
+                    verifier.verify("Existing file refused", refused);
+                } finally {
+                    pairsFile.delete();
+                }
+            }
+        }
+        verifier.exit();
+    }
+}
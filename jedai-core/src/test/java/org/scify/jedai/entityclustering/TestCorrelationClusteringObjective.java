@@ -0,0 +1,106 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.entityclustering;
+
+import org.scify.jedai.datamodel.EquivalenceCluster;
+import org.scify.jedai.datamodel.SimilarityPairs;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.apache.log4j.BasicConfigurator;
+
+/**
+ * Checks that the objective function accumulated from the gains of the local
+ * search equals the one recomputed from the final clustering.
+ *
+ * @author G.A.P. II
+ */
+public class TestCorrelationClusteringObjective {
+
+    private static Set<String> getClusters(EquivalenceCluster[] clusters) {
+        final Set<String> clusterStrings = new HashSet<>();
+        for (EquivalenceCluster cluster : clusters) {
+            final int[] entityIds = cluster.getEntityIdsD1().toArray();
+            Arrays.sort(entityIds);
+            clusterStrings.add(Arrays.toString(entityIds));
+        }
+        return clusterStrings;
+    }
+
+    private static boolean verifyObjective(CorrelationClustering clustering) {
+        System.out.println("Accumulated objective\t:\t" + clustering.getObjectiveValue());
+        System.out.println("Recomputed objective\t:\t" + clustering.getOF());
+        return clustering.getObjectiveValue() == clustering.getOF();
+    }
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        // two cliques of similar entities, plus entity 6, which is initially
+        // clustered with the first clique through a neutral edge, although it
+        // is not similar to two of its members
+        final SimilarityPairs simPairs = new SimilarityPairs(false, 10, false);
+        simPairs.addComparison(0, 1, 0.9);
+        simPairs.addComparison(0, 2, 0.9);
+        simPairs.addComparison(1, 2, 0.9);
+        simPairs.addComparison(3, 4, 0.9);
+        simPairs.addComparison(3, 5, 0.9);
+        simPairs.addComparison(4, 5, 0.9);
+        simPairs.addComparison(0, 6, 0.6);
+        simPairs.addComparison(1, 6, 0.1);
+        simPairs.addComparison(2, 6, 0.1);
+        simPairs.addComparison(6, 7, 0.3);
+
+        // the optimum places every similar pair and no non-similar pair in the same cluster
+        final Set<String> optimalClusters = new HashSet<>(Arrays.asList("[0, 1, 2]", "[3, 4, 5]", "[6, 7]"));
+        final long optimalObjective = 26;
+
+        boolean correct = true;
+        for (int i = 0; i < 10; i++) {
+            final CorrelationClustering clustering = new CorrelationClustering();
+            final Set<String> clusters = getClusters(clustering.getDuplicates(simPairs));
+            System.out.println("Clusters\t:\t" + clusters);
+            correct &= verifyObjective(clustering);
+            correct &= clustering.getObjectiveValue() == optimalObjective;
+            correct &= clusters.equals(optimalClusters);
+        }
+
+        // a random similarity graph, so that many moves are applied
+        final Random random = new Random(42);
+        final SimilarityPairs randomPairs = new SimilarityPairs(false, 5000, false);
+        for (int i = 0; i < 5000; i++) {
+            int entityId1 = random.nextInt(500);
+            int entityId2 = random.nextInt(500);
+            if (entityId1 != entityId2) {
+                randomPairs.addComparison(entityId1, entityId2, random.nextDouble());
+            }
+        }
+
+        final CorrelationClustering clustering = new CorrelationClustering();
+        clustering.getDuplicates(randomPairs);
+        correct &= verifyObjective(clustering);
+
+        simPairs.close();
+        randomPairs.close();
+        if (!correct) {
+            System.err.println("The local search does not reach the expected objective!");
+            System.exit(-1);
+        }
+        System.out.println("The local search reaches the expected objective");
+    }
+}
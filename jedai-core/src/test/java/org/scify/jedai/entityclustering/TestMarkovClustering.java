@@ -0,0 +1,80 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.entityclustering;
+
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.EquivalenceCluster;
+import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.datareader.groundtruthreader.GtSerializationReader;
+import org.scify.jedai.datareader.groundtruthreader.IGroundTruthReader;
+import org.scify.jedai.entitymatching.ProfileMatcher;
+import org.scify.jedai.utilities.ClustersPerformance;
+import org.scify.jedai.utilities.ResultsVerifier;
+import org.scify.jedai.utilities.datastructures.AbstractDuplicatePropagation;
+import org.scify.jedai.utilities.datastructures.UnilateralDuplicatePropagation;
+import org.scify.jedai.utilities.enumerations.RepresentationModel;
+import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+
+/**
+ *
+ * @author G.A.P. II
+ */
+public class TestMarkovClustering {
+
+    // the clusters of Cora with a similarity threshold of 0.9, over the similarities of token unigrams
+    private final static int BASELINE_SIZE = 230;
+    private final static long BASELINE_CHECKSUM = 3156386358L;
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        List<EntityProfile> profiles = ResultsVerifier.getProfiles(ResultsVerifier.DIRTY_ER_DIRECTORY + "coraProfiles");
+        IGroundTruthReader gtReader = new GtSerializationReader(ResultsVerifier.DIRTY_ER_DIRECTORY + "coraIdDuplicates");
+        final AbstractDuplicatePropagation duplicatePropagation = new UnilateralDuplicatePropagation(gtReader.getDuplicatePairs(profiles));
+        System.out.println("Existing Duplicates\t:\t" + duplicatePropagation.getDuplicates().size());
+
+        final List<AbstractBlock> blocks = ResultsVerifier.getPrunedBlocks(profiles, null);
+        final ResultsVerifier verifier = new ResultsVerifier();
+        try (SimilarityPairs simPairs = new ProfileMatcher(RepresentationModel.TOKEN_UNIGRAMS, SimilarityMetric.getModelDefaultSimMetric(RepresentationModel.TOKEN_UNIGRAMS)).executeComparisons(blocks, profiles)) {
+            final MarkovClustering markovClustering = new MarkovClustering();
+            markovClustering.setSimilarityThreshold(0.9);
+            List<String> sequentialClusters = null;
+            for (int noOfThreads : new int[]{1, ResultsVerifier.getNoOfThreads()}) {
+                markovClustering.setNoOfThreads(noOfThreads);
+
+                double time1 = System.currentTimeMillis();
+                final EquivalenceCluster[] clusters = markovClustering.getDuplicates(simPairs);
+                double time2 = System.currentTimeMillis();
+
+                final ClustersPerformance clp = new ClustersPerformance(clusters, duplicatePropagation);
+                clp.setStatistics();
+                clp.printStatistics(time2 - time1, markovClustering.getMethodName() + " (" + noOfThreads + " threads)", markovClustering.getMethodConfiguration());
+
+                final List<String> clusterStrings = ResultsVerifier.getClusterStrings(clusters);
+                if (sequentialClusters == null) {
+                    sequentialClusters = clusterStrings;
+                    verifier.verifyBaseline("Clusters", clusterStrings, BASELINE_SIZE, BASELINE_CHECKSUM);
+                } else {
+                    verifier.verifyIdentical("Identical clusters (" + noOfThreads + " threads)", sequentialClusters, clusterStrings);
+                }
+            }
+        }
+        verifier.exit();
+    }
+}
@@ -73,9 +73,10 @@ public class TestAllMethods {
             
             for (RepresentationModel model : RepresentationModel.values()) {
                 IEntityMatching pm = new ProfileMatcher(model, SimilarityMetric.getModelDefaultSimMetric(model));
-                SimilarityPairs simPairs = pm.executeComparisons(blocks, profiles);
-                for (int i = 0; i < 10; i++) {
-                    System.out.println(simPairs.getEntityIds1()[i] + "\t\t" + simPairs.getEntityIds2()[i] + "\t\t" + simPairs.getSimilarities()[i]);
+                try (SimilarityPairs simPairs = pm.executeComparisons(blocks, profiles)) {
+                    for (int i = 0; i < 10; i++) {
+                        System.out.println(simPairs.getEntityId1(i) + "\t\t" + simPairs.getEntityId2(i) + "\t\t" + simPairs.getSimilarity(i));
+                    }
                 }
             }
         }
@@ -74,10 +74,10 @@ public class TestGroupLinkage {
                 if (model.equals(RepresentationModel.CHARACTER_BIGRAMS)) {
                     GroupLinkage gp = new GroupLinkage(0.1, model, SimilarityMetric.getModelDefaultSimMetric(model));
                     gp.setSimilarityThreshold(0.1);
-                    SimilarityPairs simPairs = gp.executeComparisons(blocks, profiles1);//
-                    
-                    for (int i = 0; i < simPairs.getNoOfComparisons(); i++) {
-                        System.out.println(simPairs.getEntityIds1()[i] + "\t\t" + simPairs.getEntityIds2()[i] + "\t\t" + simPairs.getSimilarities()[i]);
+                    try (SimilarityPairs simPairs = gp.executeComparisons(blocks, profiles1)) {
+                        for (int i = 0; i < simPairs.getNoOfComparisons(); i++) {
+                            System.out.println(simPairs.getEntityId1(i) + "\t\t" + simPairs.getEntityId2(i) + "\t\t" + simPairs.getSimilarity(i));
+                        }
                     }
                 }
 
@@ -0,0 +1,74 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.entitymatching;
+
+import java.util.List;
+import org.apache.log4j.BasicConfigurator;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.utilities.ResultsVerifier;
+import org.scify.jedai.utilities.enumerations.RepresentationModel;
+import org.scify.jedai.utilities.enumerations.SimilarityMetric;
+
+/**
+ *
+ * @author G.A.P. II
+ */
+public class TestParallelMatching {
+
+    // the similarities of Profile Matcher with token unigrams over Abt-Buy
+    private final static int BASELINE_SIZE = 21860;
+    private final static long BASELINE_CHECKSUM = 3933923162L;
+
+    public static void main(String[] args) {
+        BasicConfigurator.configure();
+
+        List<EntityProfile> profiles1 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + "abtProfiles");
+        List<EntityProfile> profiles2 = ResultsVerifier.getProfiles(ResultsVerifier.CLEAN_CLEAN_ER_DIRECTORY + "buyProfiles");
+        final List<AbstractBlock> blocks = ResultsVerifier.getPrunedBlocks(profiles1, profiles2);
+
+        final ResultsVerifier verifier = new ResultsVerifier();
+        final RepresentationModel[] models = {RepresentationModel.TOKEN_UNIGRAMS, RepresentationModel.TOKEN_BIGRAMS_TF_IDF,
+            RepresentationModel.CHARACTER_TRIGRAMS, RepresentationModel.CHARACTER_FOURGRAMS_TF_IDF};
+        for (RepresentationModel model : models) {
+            final AbstractEntityMatching[] methods = {new ProfileMatcher(model, SimilarityMetric.getModelDefaultSimMetric(model)),
+                new GroupLinkage(0.1, model, SimilarityMetric.getModelDefaultSimMetric(model))};
+            for (AbstractEntityMatching method : methods) {
+                System.out.println("\n\nCurrent method\t:\t" + method.getMethodName() + "\t" + method.getMethodConfiguration());
+
+                double time1 = System.currentTimeMillis();
+                try (SimilarityPairs sequentialPairs = method.executeComparisons(blocks, profiles1, profiles2)) {
+                    double time2 = System.currentTimeMillis();
+
+                    method.setNoOfThreads(ResultsVerifier.getNoOfThreads());
+                    try (SimilarityPairs parallelPairs = method.executeComparisons(blocks, profiles1, profiles2)) {
+                        double time3 = System.currentTimeMillis();
+
+                        System.out.println("Sequential time\t:\t" + (time2 - time1));
+                        System.out.println("Parallel time (" + method.getNoOfThreads() + " threads)\t:\t" + (time3 - time2));
+                        final List<String> sequentialSimilarities = ResultsVerifier.getPairStrings(sequentialPairs);
+                        verifier.verifyIdentical("Identical similarities", sequentialSimilarities, ResultsVerifier.getPairStrings(parallelPairs));
+                        if (method instanceof ProfileMatcher && model.equals(RepresentationModel.TOKEN_UNIGRAMS)) {
+                            verifier.verifyBaseline("Similarities", sequentialSimilarities, BASELINE_SIZE, BASELINE_CHECKSUM);
+                        }
+                    }
+                }
+            }
+        }
+        verifier.exit();
+    }
+}
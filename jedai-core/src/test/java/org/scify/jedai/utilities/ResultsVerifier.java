@@ -0,0 +1,166 @@
+/*
+* Copyright [2016-2018] [George Papadakis (gpapadis@yahoo.gr)]
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+ */
+package org.scify.jedai.utilities;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.scify.jedai.blockbuilding.StandardBlocking;
+import org.scify.jedai.blockprocessing.blockcleaning.BlockFiltering;
+import org.scify.jedai.blockprocessing.comparisoncleaning.CardinalityNodePruning;
+import org.scify.jedai.datamodel.AbstractBlock;
+import org.scify.jedai.datamodel.BilateralBlock;
+import org.scify.jedai.datamodel.EntityProfile;
+import org.scify.jedai.datamodel.EquivalenceCluster;
+import org.scify.jedai.datamodel.SimilarityPairs;
+import org.scify.jedai.datamodel.UnilateralBlock;
+import org.scify.jedai.datareader.entityreader.EntitySerializationReader;
+
+/**
+ * The common fixture of the tests that compare the output of a method with
+ * one and with multiple threads, or with the output stored in a baseline.
+ * Every output is converted into a list of strings, whose size and CRC32
+ * checksum form the baseline. Similarities are rounded to six decimals, so
+ * that the baselines do not depend on the last bits of floating-point
+ * arithmetic.
+ *
+ * The outcome of every check is printed; exit terminates the test with a
+ * non-zero status if any of them failed.
+ *
+ * @author G.A.P. II
+ */
+public class ResultsVerifier {
+
+    public final static String CLEAN_CLEAN_ER_DIRECTORY = "data" + File.separator + "cleanCleanErDatasets" + File.separator;
+    public final static String DIRTY_ER_DIRECTORY = "data" + File.separator + "dirtyErDatasets" + File.separator;
+
+    private boolean correct;
+
+    public ResultsVerifier() {
+        correct = true;
+    }
+
+    public static List<String> getBlockStrings(List<AbstractBlock> blocks) {
+        final List<String> blockStrings = new ArrayList<>();
+        for (AbstractBlock block : blocks) {
+            if (block instanceof UnilateralBlock) {
+                blockStrings.add(Arrays.toString(((UnilateralBlock) block).getEntities()));
+            } else if (block instanceof BilateralBlock) {
+                final BilateralBlock bilateralBlock = (BilateralBlock) block;
+                blockStrings.add(Arrays.toString(bilateralBlock.getIndex1Entities()) + "-" + Arrays.toString(bilateralBlock.getIndex2Entities()));
+            } else {
+                block.forEachComparison((entityId1, entityId2) -> blockStrings.add(entityId1 + "-" + entityId2));
+            }
+        }
+        return blockStrings;
+    }
+
+    public static long getChecksum(List<String> values) {
+        final CRC32 checksum = new CRC32();
+        for (String value : values) {
+            checksum.update(value.getBytes(StandardCharsets.UTF_8));
+            checksum.update('\n');
+        }
+        return checksum.getValue();
+    }
+
+    public static List<String> getClusterStrings(EquivalenceCluster[] clusters) {
+        final List<String> clusterStrings = new ArrayList<>();
+        for (EquivalenceCluster cluster : clusters) {
+            final int[] entityIds1 = cluster.getEntityIdsD1().toArray();
+            final int[] entityIds2 = cluster.getEntityIdsD2().toArray();
+            Arrays.sort(entityIds1);
+            Arrays.sort(entityIds2);
+            clusterStrings.add(Arrays.toString(entityIds1) + "-" + Arrays.toString(entityIds2));
+        }
+        Collections.sort(clusterStrings);
+        return clusterStrings;
+    }
+
+    public static List<String> getPairStrings(SimilarityPairs pairs) {
+        final List<String> pairStrings = new ArrayList<>();
+        pairs.forEachPair((entityId1, entityId2, similarity) -> pairStrings.add(entityId1 + "-" + entityId2 + ":" + Math.round(1000000 * similarity)));
+        return pairStrings;
+    }
+
+    /**
+     * Returns the number of threads to compare with a single one; at least
+     * four, so that the partitioning is exercised on any machine.
+     */
+    public static int getNoOfThreads() {
+        return Math.max(4, ParallelProcessing.getDefaultNoOfThreads());
+    }
+
+    public static List<EntityProfile> getProfiles(String filePath) {
+        final List<EntityProfile> profiles = new EntitySerializationReader(filePath).getEntityProfiles();
+        System.out.println("Input Entity Profiles\t:\t" + profiles.size());
+        return profiles;
+    }
+
+    /**
+     * Returns the comparisons of the given blocks in lexicographical order.
+     */
+    public static List<String> getSortedComparisons(List<AbstractBlock> blocks) {
+        final List<String> comparisons = new ArrayList<>();
+        for (AbstractBlock block : blocks) {
+            block.forEachComparison((entityId1, entityId2) -> comparisons.add(entityId1 + "-" + entityId2));
+        }
+        Collections.sort(comparisons);
+        return comparisons;
+    }
+
+    /**
+     * Returns the blocks of Standard Blocking, Block Filtering and Cardinality
+     * Node Pruning, i.e., the blocking workflow of the tests for entity
+     * matching and clustering.
+     */
+    public static List<AbstractBlock> getPrunedBlocks(List<EntityProfile> profiles1, List<EntityProfile> profiles2) {
+        List<AbstractBlock> blocks = new StandardBlocking().getBlocks(profiles1, profiles2);
+        blocks = new BlockFiltering().refineBlocks(blocks);
+        return new CardinalityNodePruning().refineBlocks(blocks);
+    }
+
+    public void exit() {
+        if (!correct) {
+            System.err.println("At least one check failed!");
+            System.exit(-1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    public boolean isCorrect() {
+        return correct;
+    }
+
+    public void verify(String description, boolean result) {
+        System.out.println(description + "\t:\t" + result);
+        correct &= result;
+    }
+
+    public void verifyBaseline(String description, List<String> values, int expectedSize, long expectedChecksum) {
+        final long checksum = getChecksum(values);
+        System.out.println(description + " (size, checksum)\t:\t" + values.size() + ", " + checksum);
+        verify("Identical to baseline", values.size() == expectedSize && checksum == expectedChecksum);
+    }
+
+    public void verifyIdentical(String description, List<String> values1, List<String> values2) {
+        verify(description, values1.equals(values2));
+    }
+}